@@ -26,26 +26,37 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
 import edu.mit.isos.context.Location;
 import edu.mit.isos.context.Node;
 import edu.mit.isos.context.Resource;
+import edu.mit.isos.context.ResourceContext;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.Scenario;
-import edu.mit.isos.element.Element;
+import edu.mit.isos.element.DefaultElement;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.element.ElementStore;
 import edu.mit.isos.hla.ISOSambassador;
+import edu.mit.isos.sim.AsyncListenerQueue;
+import edu.mit.isos.sim.ParallelExecutor;
+import edu.mit.isos.sim.SimulationSnapshot;
+import edu.mit.isos.sim.SimulationSnapshot.ElementSnapshot;
+import edu.mit.isos.sim.SimulationSnapshot.ExchangeImbalance;
 import edu.mit.isos.sim.SimulationTimeEvent;
 import edu.mit.isos.sim.SimulationTimeListener;
 import edu.mit.isos.sim.Simulator;
-import edu.mit.isos.state.ResourceExchanging;
-import edu.mit.isos.state.ResourceTransforming;
-import edu.mit.isos.state.ResourceTransporting;
 
 /**
  * A default class common to both HLA and non-HLA (Null) federates. Defines three 
@@ -68,6 +79,13 @@ public abstract class DefaultFederate {
 	// Simulation and output options.
 	private boolean replicationOutputs = true;
 	private boolean retainReplicationOutputs = false;
+	private int parallelism = 1;
+	private int threads = 1;
+	private ParallelExecutor executor;
+	private boolean asyncOutputs = false;
+	private boolean storedContents = false, offHeapContents = false;
+	private final int outputCapacity = 1024;
+	private final int outputBatchSize = 64;
 	private final int numIterations;
 	private final int numReplications;
 	private final int stepsPerYear = 1000;
@@ -114,21 +132,30 @@ public abstract class DefaultFederate {
 	public abstract ISOSambassador getAmbassador() throws RTIexception;
 	
 	/**
-	 * Executes this federate's simulation.
+	 * Executes this federate's simulation. Replications execute serially 
+	 * with one reused simulator unless the parallelism is larger than one, 
+	 * in which case each replication builds its own scenario and simulator 
+	 * and executes on a bounded pool. Replications bind the resource context 
+	 * current when this method is called, so they are unaffected by later 
+	 * changes to {@link ResourceFactory#impl}. Nodes and locations are 
+	 * immutable and shared between replication scenarios. The summary file 
+	 * lists replications in order. If the number of threads is larger than 
+	 * one, element phases execute on a parallel executor which is shut down 
+	 * after the last replication.
 	 *
 	 * @param initTimeout milliseconds to wait before initialize activity
 	 * @param simulationDuration the simulation duration
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 * @throws RTIexception Signals that an RTI exception has occurred.
 	 */
-	public void execute(long initTimeout, double simulationDuration) 
+	public void execute(final long initTimeout, final double simulationDuration) 
 			throws IOException, RTIexception {
 		Path dirPath = Paths.get(outputDir);
 		if(!dirPath.toFile().exists()) {
 			dirPath.toFile().mkdir();
 		}
 		
-		String testName = numReplications+"rep"
+		final String testName = numReplications+"rep"
 				+numIterations+"itr"
 				+timeStep+"stp";
 		
@@ -149,123 +176,293 @@ public abstract class DefaultFederate {
 		summaryWriter.write(String.format("%6s%20s%20s%20s\n",
 				"Run","Total Time (ms)","Init Time (ms)","Exec Time (ms)"));
 		summaryWriter.flush();
-
-		final Simulator sim = new Simulator(buildScenario(stepsPerYear));;
 		
-		for(int i = 0; i < numReplications; i++) {
-			Path currentOutputDirPath = Paths.get(outputDir,testName,
-					new Integer(i+1).toString());
-			if(!currentOutputDirPath.toFile().exists()) {
-				currentOutputDirPath.toFile().mkdir();
-			}
+		// element phases of all replications share one executor
+		if(threads > 1) {
+			executor = new ParallelExecutor(threads);
+		}
+		try {
+			if(parallelism <= 1) {
+				final Simulator sim = new Simulator(createScenario());
 			
-			final Map<ElementImpl, BufferedWriter> elementWriters = 
-					new HashMap<ElementImpl, BufferedWriter>();
-			if(replicationOutputs || i == 1) {
-				for(ElementImpl e : sim.getScenario().getElements()) {
-					Path elementPath = Paths.get(outputDir,testName,
-							new Integer(i+1).toString(),e.getName() + ".txt");
-					if(!elementPath.toFile().exists()) {
-						elementPath.toFile().createNewFile();
+				for(int i = 0; i < numReplications; i++) {
+					long[] times = replicate(sim, i, testName, initTimeout, simulationDuration);
+					summaryWriter.write(String.format("%6d%20d%20d%20d\n",(i+1),times[0], times[1], times[2]));
+					summaryWriter.flush();
+				}
+			} else {
+				final ResourceContext context = ResourceContext.current();
+				ExecutorService pool = Executors.newFixedThreadPool(
+						Math.min(parallelism, Math.max(1, numReplications)));
+				try {
+					List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+					for(int i = 0; i < numReplications; i++) {
+						final int replication = i;
+						futures.add(pool.submit(new Callable<long[]>() {
+							@Override
+							public long[] call() throws Exception {
+								ResourceContext previous = ResourceContext.bind(context);
+								try {
+									return replicate(new Simulator(createScenario()), 
+											replication, testName, initTimeout, simulationDuration);
+								} finally {
+									ResourceContext.bind(previous);
+								}
+							}
+						}));
 					}
-					BufferedWriter writer = Files.newBufferedWriter(
-							elementPath, Charset.defaultCharset(), 
-							StandardOpenOption.WRITE);
-					writer.write(String.format(
-							"%6s%10s%10s%10s%10s%60s%60s%60s%60s%60s%60s%60s\n", 
-							"Time", "Element", "State", "Location", "Parent", "Contents", 
-							"Consumed", "Produced", "Input", "Output", "Sent", "Received"));
-					elementWriters.put(e, writer);
+					for(int i = 0; i < numReplications; i++) {
+						long[] times;
+						try {
+							times = futures.get(i).get();
+						} catch(InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new IOException("Interrupted while executing replications.", e);
+						} catch(ExecutionException e) {
+							if(e.getCause() instanceof IOException) {
+								throw (IOException) e.getCause();
+							} else if(e.getCause() instanceof RTIexception) {
+								throw (RTIexception) e.getCause();
+							} else if(e.getCause() instanceof RuntimeException) {
+								throw (RuntimeException) e.getCause();
+							} else if(e.getCause() instanceof Error) {
+								throw (Error) e.getCause();
+							}
+							throw new IllegalStateException(e.getCause());
+						}
+						summaryWriter.write(String.format("%6d%20d%20d%20d\n",(i+1),times[0], times[1], times[2]));
+						summaryWriter.flush();
+					}
+				} finally {
+					pool.shutdownNow();
 				}
 			}
-			
-			Path warningPath = Paths.get(outputDir,testName,
-					new Integer(i+1).toString(),federateName+"-warnings.txt");
-			if(!warningPath.toFile().exists()) {
-				warningPath.toFile().createNewFile();
+		} finally {
+			if(executor != null) {
+				executor.shutdown();
+				executor = null;
 			}
-			final BufferedWriter warningWriter = Files.newBufferedWriter(warningPath, 
-					Charset.defaultCharset(), StandardOpenOption.WRITE);
-			warningWriter.write(String.format("%6s%10s%20s%60s%60s\n",
-					"Time","Type","Unit(s)","Error","% Error"));
-			
-			final ISOSambassador amb = getAmbassador();
-			
-			SimulationTimeListener listener = new SimulationTimeListener() {
-				@Override
-				public void timeAdvanced(SimulationTimeEvent event) {
-					for(ElementImpl e : elementWriters.keySet()) {
+		}
+		
+		summaryWriter.close();
+	}
+	
+	/**
+	 * Gets the executor for element phases of the current execution.
+	 *
+	 * @return the executor, or null if phases run sequentially
+	 */
+	protected ParallelExecutor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Gets the federate name.
+	 *
+	 * @return the federate name
+	 */
+	public String getFederateName() {
+		return federateName;
+	}
+	
+	/**
+	 * Builds this federate's scenario and, if contents are stored, 
+	 * binds all default elements to one new element store.
+	 *
+	 * @return the scenario
+	 */
+	private Scenario createScenario() {
+		Scenario scenario = buildScenario(stepsPerYear);
+		if(storedContents) {
+			int capacity = Math.max(1, scenario.getElements().size());
+			ElementStore store = offHeapContents ? ElementStore.offHeap(capacity) 
+					: ElementStore.onHeap(capacity);
+			for(ElementImpl e : scenario.getElements()) {
+				if(e instanceof DefaultElement) {
+					((DefaultElement) e).store(store);
+				}
+			}
+		}
+		return scenario;
+	}
+	
+	/**
+	 * Checks if replication outputs are written asynchronously.
+	 *
+	 * @return true, if outputs are written asynchronously
+	 */
+	public boolean isAsyncOutputs() {
+		return asyncOutputs;
+	}
+	
+	/**
+	 * Gets the maximum number of concurrent replications.
+	 *
+	 * @return the parallelism
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Gets the number of worker threads for element phases.
+	 *
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * Executes one replication and writes its per-replication outputs.
+	 *
+	 * @param sim the simulator
+	 * @param i the zero-based replication index
+	 * @param testName the test name
+	 * @param initTimeout milliseconds to wait before initialize activity
+	 * @param simulationDuration the simulation duration
+	 * @return the total, initialization, and execution times (ms)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws RTIexception Signals that an RTI exception has occurred.
+	 */
+	private long[] replicate(final Simulator sim, int i, String testName, 
+			long initTimeout, double simulationDuration) 
+					throws IOException, RTIexception {
+		Path currentOutputDirPath = Paths.get(outputDir,testName,
+				new Integer(i+1).toString());
+		if(!currentOutputDirPath.toFile().exists()) {
+			currentOutputDirPath.toFile().mkdir();
+		}
+		
+		final Map<String, BufferedWriter> elementWriters = 
+				new HashMap<String, BufferedWriter>();
+		if(replicationOutputs || i == 1) {
+			for(ElementImpl e : sim.getScenario().getElements()) {
+				Path elementPath = Paths.get(outputDir,testName,
+						new Integer(i+1).toString(),e.getName() + ".txt");
+				if(!elementPath.toFile().exists()) {
+					elementPath.toFile().createNewFile();
+				}
+				BufferedWriter writer = Files.newBufferedWriter(
+						elementPath, Charset.defaultCharset(), 
+						StandardOpenOption.WRITE);
+				writer.write(String.format(
+						"%6s%10s%10s%10s%10s%60s%60s%60s%60s%60s%60s%60s\n", 
+						"Time", "Element", "State", "Location", "Parent", "Contents", 
+						"Consumed", "Produced", "Input", "Output", "Sent", "Received"));
+				elementWriters.put(e.getName(), writer);
+			}
+		}
+		
+		Path warningPath = Paths.get(outputDir,testName,
+				new Integer(i+1).toString(),federateName+"-warnings.txt");
+		if(!warningPath.toFile().exists()) {
+			warningPath.toFile().createNewFile();
+		}
+		final BufferedWriter warningWriter = Files.newBufferedWriter(warningPath, 
+				Charset.defaultCharset(), StandardOpenOption.WRITE);
+		warningWriter.write(String.format("%6s%10s%20s%60s%60s\n",
+				"Time","Type","Unit(s)","Error","% Error"));
+		
+		final ISOSambassador amb = getAmbassador();
+		sim.setExecutor(executor);
+		
+		final SimulationTimeListener outputListener = new SimulationTimeListener() {
+			@Override
+			public void timeAdvanced(SimulationTimeEvent event) {
+				SimulationSnapshot snapshot = (SimulationSnapshot) event;
+				for(ElementSnapshot e : snapshot.getElements()) {
+					if(!elementWriters.containsKey(e.getName())) {
+						continue;
+					}
+					try {
+						elementWriters.get(e.getName()).write(String.format(
+								"%6d%10s%10s%10s%10s%60s%60s%60s%60s%60s%60s%60s\n", 
+								event.getTime(), 
+								e.getName(),
+								e.getState(),
+								e.getLocation(), 
+								e.getParentName(),
+								e.getContents(), 
+								(e.getConsumed() != null)?e.getConsumed():"NaN", 
+								(e.getProduced() != null)?e.getProduced():"NaN", 
+								(e.getInput() != null)?e.getInput():"NaN", 
+								(e.getOutput() != null)?e.getOutput():"NaN", 
+								(e.getSent() != null)?e.getSent():"NaN", 
+								(e.getReceived() != null)?e.getReceived():"NaN"));
+					} catch (IOException e1) {
+						e1.printStackTrace();
+					}
+				}
+				for(Location l : snapshot.getNetFlows().keySet()) {
+					Resource netFlow = snapshot.getNetFlows().get(l);
+					if(!netFlow.isZero()) {
 						try {
-							elementWriters.get(e).write(String.format(
-									"%6d%10s%10s%10s%10s%60s%60s%60s%60s%60s%60s%60s\n", 
+							warningWriter.write(String.format("%6d%10s%20s%60s%60s\n",
 									event.getTime(), 
-									e.getName(),
-									e.getState(),
-									e.getLocation(), 
-									e.getParent().getName(),
-									e.getContents(), 
-									(e.getState() instanceof ResourceTransforming)?((ResourceTransforming)e.getState()).getConsumed(e, event.getDuration()):"NaN", 
-									(e.getState() instanceof ResourceTransforming)?((ResourceTransforming)e.getState()).getProduced(e, event.getDuration()):"NaN", 
-									(e.getState() instanceof ResourceTransporting)?((ResourceTransporting)e.getState()).getInput(e, event.getDuration()):"NaN", 
-									(e.getState() instanceof ResourceTransporting)?((ResourceTransporting)e.getState()).getOutput(e, event.getDuration()):"NaN", 
-									(e.getState() instanceof ResourceExchanging)?((ResourceExchanging)e.getState()).getSent(e, event.getDuration()):"NaN", 
-									(e.getState() instanceof ResourceExchanging)?((ResourceExchanging)e.getState()).getReceived(e, event.getDuration()):"NaN"));
-						} catch (IOException e1) {
-							e1.printStackTrace();
+									"Net Flow", l.toString(), 
+									netFlow, "NaN"));
+						} catch (IOException e) {
+							logger.error(e);
+							e.printStackTrace();
 						}
 					}
-					for(Location l : sim.getScenario().getLocations()) {
-						Resource netFlow = ResourceFactory.create();
-						for(ElementImpl element : sim.getScenario().getElements()) {
-							netFlow = netFlow.add(element.getNetFlow(l, event.getDuration()));
-						}
-						if(!netFlow.isZero()) {
-							try {
-								warningWriter.write(String.format("%6d%10s%20s%60s%60s\n",
-										event.getTime(), 
-										"Net Flow", l.toString(), 
-										netFlow, "NaN"));
-							} catch (IOException e) {
-								logger.error(e);
-								e.printStackTrace();
-							}
-						}
-					}
-					for(Element e1 : sim.getScenario().getElements()) {
-						for(Element e2 : amb.getElements()) {
-							Resource r12 = e1.getNetExchange(e2, event.getDuration());
-							Resource r21 = e2.getNetExchange(e1, event.getDuration());
-							if(!r12.add(r21).isZero()) {
-								try {
-									warningWriter.write(String.format("%6d%10s%20s%60s%60s\n",
-											event.getTime(), 
-											"Exchange", e1.getName() + "<->" + e2.getName(), 
-											r12.add(r21), r12.add(r21).absoluteValue().safeDivide(r12.absoluteValue())));
-								} catch (IOException e) {
-									logger.error(e);
-									e.printStackTrace();
-								}
-							}
-						}
+				}
+				for(ExchangeImbalance x : snapshot.getImbalances()) {
+					Resource r12 = x.getExchange12();
+					Resource r21 = x.getExchange21();
+					try {
+						warningWriter.write(String.format("%6d%10s%20s%60s%60s\n",
+								event.getTime(), 
+								"Exchange", x.getName1() + "<->" + x.getName2(), 
+								r12.add(r21), r12.add(r21).absoluteValue().safeDivide(r12.absoluteValue())));
+					} catch (IOException e) {
+						logger.error(e);
+						e.printStackTrace();
 					}
 				}
+			}
+		};
+		
+		// capture snapshots on the simulation thread and write them 
+		// either directly or on the consumer thread of a queue
+		final AsyncListenerQueue queue;
+		SimulationTimeListener listener;
+		if(asyncOutputs) {
+			queue = new AsyncListenerQueue(outputCapacity, outputBatchSize, 
+					AsyncListenerQueue.Backpressure.BLOCK);
+			queue.setExchangePeers(amb);
+			queue.addSimulationTimeListener(outputListener);
+			queue.start();
+			listener = queue;
+		} else {
+			queue = null;
+			listener = new SimulationTimeListener() {
+				@Override
+				public void timeAdvanced(SimulationTimeEvent event) {
+					outputListener.timeAdvanced(SimulationSnapshot.capture(
+							event, sim.getScenario(), amb.getElements()));
+				}
 			};
-			
-			sim.addSimulationTimeListener(listener);
-			
-			String fomPath = "isos-app.xml";
+		}
+		
+		sim.addSimulationTimeListener(listener);
+		
+		String fomPath = "isos-app.xml";
 
-			amb.connect("ISOS Test " + (i+1), fomPath, federateName, "Test");
-			
-			// wait for other federates to join
-			if(initTimeout > 0) {
-				try {
-					Thread.sleep(initTimeout);
-				} catch (InterruptedException e) {
-					logger.error(e);
-				}
+		amb.connect("ISOS Test " + (i+1), fomPath, federateName, "Test");
+		
+		// wait for other federates to join
+		if(initTimeout > 0) {
+			try {
+				Thread.sleep(initTimeout);
+			} catch (InterruptedException e) {
+				logger.error(e);
 			}
-			
+		}
+		
+		long initTime, execTime;
+		try {
 			long initStartTime = new Date().getTime();
 			sim.initialize(amb, federateName, timeStep, numIterations);
 			long initEndTime = new Date().getTime();
@@ -274,17 +471,22 @@ public abstract class DefaultFederate {
 			sim.execute(amb, federateName, (int) (simulationDuration*stepsPerYear), 
 					timeStep, numIterations);
 			long execEndTime = new Date().getTime();
-			long initTime = initEndTime - initStartTime;
-			long execTime = execEndTime - execStartTime;
-			long totalTime = initTime + execTime;
-			
-			logger.info("Simulation completed in " + totalTime + " ms");
-			summaryWriter.write(String.format("%6d%20d%20d%20d\n",(i+1),totalTime, initTime, execTime));
-			summaryWriter.flush();
+			initTime = initEndTime - initStartTime;
+			execTime = execEndTime - execStartTime;
+		} finally {
+			// drain and stop the output queue and release the writers 
+			// even if the simulation fails
+			if(queue != null) {
+				try {
+					queue.close();
+				} catch (InterruptedException e) {
+					logger.error(e);
+				}
+			}
 			
-			for(Element e : elementWriters.keySet()) {
-				elementWriters.get(e).close();
-				Path elementPath = Paths.get(outputDir,testName,new Integer(i+1).toString(),e.getName() + ".txt");
+			for(String name : elementWriters.keySet()) {
+				elementWriters.get(name).close();
+				Path elementPath = Paths.get(outputDir,testName,new Integer(i+1).toString(),name + ".txt");
 				if(i >= 1 && elementPath.toFile().exists() && !retainReplicationOutputs) {
 					elementPath.toFile().delete();
 				}
@@ -293,11 +495,68 @@ public abstract class DefaultFederate {
 			warningWriter.close();
 			
 			sim.removeSimulationTimeListener(listener);
-			
-			amb.disconnect("ISOS Test " + (i+1));
 		}
+		long totalTime = initTime + execTime;
 		
-		summaryWriter.close();
+		logger.info("Simulation completed in " + totalTime + " ms");
+		
+		amb.disconnect("ISOS Test " + (i+1));
+		
+		return new long[]{totalTime, initTime, execTime};
+	}
+	
+	/**
+	 * Sets whether replication outputs are written asynchronously. Snapshots 
+	 * of each time step are captured on the simulation thread and written 
+	 * by a consumer thread, which blocks the simulation only when 
+	 * {@code outputCapacity} snapshots are waiting.
+	 *
+	 * @param asyncOutputs true, to write outputs asynchronously
+	 */
+	public void setAsyncOutputs(boolean asyncOutputs) {
+		this.asyncOutputs = asyncOutputs;
+	}
+	
+	/**
+	 * Sets whether element contents are kept in a struct-of-arrays 
+	 * element store, which the simulator sweeps in bulk each time step.
+	 *
+	 * @param storedContents true, to store element contents
+	 * @param offHeapContents true, to back the store with direct buffers
+	 */
+	public void setStoredContents(boolean storedContents, boolean offHeapContents) {
+		this.storedContents = storedContents;
+		this.offHeapContents = offHeapContents;
+	}
+	
+	/**
+	 * Sets the maximum number of concurrent replications. Concurrent 
+	 * replications join separate federations, so HLA federates must 
+	 * use the same parallelism as their peers.
+	 *
+	 * @param parallelism the parallelism, or 1 to execute replications serially
+	 */
+	public void setParallelism(int parallelism) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least one.");
+		}
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Sets the number of worker threads for element phases. Tick and tock 
+	 * phases execute on a parallel executor shared by all replications; 
+	 * ambassadors which support it also iterate elements on the executor.
+	 *
+	 * @param threads the number of threads, or 1 to execute phases sequentially
+	 */
+	public void setThreads(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException(
+					"Threads must be at least one.");
+		}
+		this.threads = threads;
 	}
 	
 	/**
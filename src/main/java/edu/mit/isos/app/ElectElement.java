@@ -15,6 +15,7 @@
  */
 package edu.mit.isos.app;
 
+import edu.mit.isos.context.Resource;
 import edu.mit.isos.element.Element;
 
 /**
@@ -33,6 +34,14 @@ public interface ElectElement extends Element {
 	 */
 	public double getPetrolReceived();
 	
+	/**
+	 * Gets the quantity of petroleum received from the petroleum system as 
+	 * a resource, which keeps the number format of the resource implementation.
+	 *
+	 * @return the petroleum received
+	 */
+	public Resource getPetrolReceivedResource();
+	
 	/**
 	 * Gets the quantity of electricity sent to the petroleum system.
 	 *
@@ -37,7 +37,7 @@ import edu.mit.isos.app.water.WaterFederate;
  * Automates the batch execution of federates for performance analysis.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public class FederateController {
@@ -78,16 +78,31 @@ public class FederateController {
 		multiThread(roles, dir, 2, 20, 250, 30.0);
 		*/
 		
-		// singleThread(dir, 5, 100, 1000, 30.0);
-		/*
-		for(int itr : new int[]{1, 2, 4, 10, 20, 50}) {
-			singleThread(dir, itr, 20, 1000, 30.0);
-		}
-		for(int stp : new int[]{100, 250, 500, 2500, 10000}) {
-			singleThread(dir, 10, 20, stp, 30.0);
+		// singleThread(dir, 5, 100, 1000, 30.0, Runtime.getRuntime().availableProcessors());
+		// singleThread(dir, 5, 100, 1000, 30.0, 1, Runtime.getRuntime().availableProcessors());
+		// sweep(dir);
+	}
+	
+	/**
+	 * Launches the sweep of single-threaded simulations over iterations 
+	 * and time steps using null federates. Completed points are skipped.
+	 *
+	 * @param dir the output directory
+	 */
+	public static void sweep(String dir) {
+		ParameterSweep sweep = new ParameterSweep(dir);
+		sweep.addGrid(new int[]{1, 2, 4, 10, 20, 50}, new long[]{1000}, 
+				new int[]{20}, new double[]{30.0}, null);
+		sweep.addGrid(new int[]{10}, new long[]{100, 250, 500, 2500, 10000}, 
+				new int[]{20}, new double[]{30.0}, null);
+		sweep.addGrid(new int[]{2}, new long[]{250}, 
+				new int[]{20}, new double[]{30.0}, null);
+		try {
+			sweep.execute();
+		} catch (IOException e) {
+			logger.error(e);
+			e.printStackTrace();
 		}
-		singleThread(dir, 2, 20, 250, 30.0);
-		*/
 	}
 	
 	/**
@@ -100,8 +115,45 @@ public class FederateController {
 	 * @param dur the simulation execution duration
 	 */
 	public static void singleThread(String dir, int itr, final int rep, final long stp, final double dur) {
+		singleThread(dir, itr, rep, stp, dur, 1);
+	}
+	
+	/**
+	 * Launches a single-federate simulation using a null federate with 
+	 * replications executing concurrently on a bounded pool.
+	 *
+	 * @param dir the output directory
+	 * @param itr the number of iterations per time step
+	 * @param rep the number of simulation execution replications
+	 * @param stp the time step duration
+	 * @param dur the simulation execution duration
+	 * @param par the maximum number of concurrent replications
+	 */
+	public static void singleThread(String dir, int itr, final int rep, 
+			final long stp, final double dur, int par) {
+		singleThread(dir, itr, rep, stp, dur, par, 1);
+	}
+	
+	/**
+	 * Launches a single-federate simulation using a null federate with 
+	 * replications executing concurrently on a bounded pool and element 
+	 * phases executing on a parallel executor.
+	 *
+	 * @param dir the output directory
+	 * @param itr the number of iterations per time step
+	 * @param rep the number of simulation execution replications
+	 * @param stp the time step duration
+	 * @param dur the simulation execution duration
+	 * @param par the maximum number of concurrent replications
+	 * @param threads the number of worker threads for element phases
+	 */
+	public static void singleThread(String dir, int itr, final int rep, 
+			final long stp, final double dur, int par, int threads) {
 		try {
-			new NullFederate(dir, itr, rep, stp).execute(0, dur);
+			NullFederate federate = new NullFederate(dir, itr, rep, stp);
+			federate.setParallelism(par);
+			federate.setThreads(threads);
+			federate.execute(0, dur);
 		} catch (RTIexception | IOException e) {
 			logger.error(e);
 			e.printStackTrace();
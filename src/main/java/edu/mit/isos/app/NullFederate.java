@@ -137,7 +137,9 @@ public class NullFederate extends DefaultFederate {
 	 */
 	@Override
 	public ISOSambassador getAmbassador() throws RTIexception {
-		return new ISOSnullAmbassador();
+		ISOSnullAmbassador amb = new ISOSnullAmbassador();
+		amb.setExecutor(getExecutor());
+		return amb;
 	}
 
 }
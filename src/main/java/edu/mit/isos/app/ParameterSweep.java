@@ -0,0 +1,566 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.app;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import edu.mit.isos.context.ResourceContext;
+
+/**
+ * Executes a declarative sweep of simulation points over iterations, 
+ * time step, duration, replications, and scenario parameters. Points are 
+ * added as full-factorial grids or Latin hypercube samples and execute 
+ * concurrently on a work-stealing pool. Each point writes its outputs to 
+ * the usual {@code <rep>rep<itr>itr<stp>stp} directory (below a 
+ * {@code dur<duration>} subdirectory and a subdirectory named by its 
+ * scenario parameters, if any), and points 
+ * whose summary file already lists all replications are skipped so a 
+ * partially completed sweep resumes where it stopped. After execution, 
+ * the summaries of all points are consolidated into one results table.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class ParameterSweep {
+	protected static Logger logger = Logger.getLogger(ParameterSweep.class);
+	
+	private final String dir;
+	private final FederateFactory factory;
+	private final List<Point> points = new ArrayList<Point>();
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Instantiates a new parameter sweep of null federates. 
+	 * Scenario parameters are not supported.
+	 *
+	 * @param dir the output directory
+	 */
+	public ParameterSweep(String dir) {
+		this(dir, new FederateFactory() {
+			@Override
+			public DefaultFederate createFederate(String outputDir, Point point) {
+				if(!point.getParameters().isEmpty()) {
+					throw new IllegalArgumentException(
+							"Null federates do not support scenario parameters.");
+				}
+				return new NullFederate(outputDir, point.getIterations(), 
+						point.getReplications(), point.getTimeStep());
+			}
+		});
+	}
+	
+	/**
+	 * Instantiates a new parameter sweep.
+	 *
+	 * @param dir the output directory
+	 * @param factory the factory to create the federate of each point
+	 */
+	public ParameterSweep(String dir, FederateFactory factory) {
+		this.dir = dir;
+		this.factory = factory;
+	}
+	
+	/**
+	 * Adds the full-factorial grid of points over all combinations 
+	 * of the given values.
+	 *
+	 * @param iterations the numbers of iterations per time step
+	 * @param timeSteps the time step durations
+	 * @param replications the numbers of replications
+	 * @param durations the simulation durations
+	 * @param parameters the scenario parameter values by name, or null
+	 */
+	public void addGrid(int[] iterations, long[] timeSteps, int[] replications, 
+			double[] durations, Map<String, double[]> parameters) {
+		List<Map<String, Double>> combinations = new ArrayList<Map<String, Double>>();
+		combinations.add(new TreeMap<String, Double>());
+		if(parameters != null) {
+			for(String name : new TreeSet<String>(parameters.keySet())) {
+				List<Map<String, Double>> expanded = new ArrayList<Map<String, Double>>();
+				for(Map<String, Double> combination : combinations) {
+					for(double value : parameters.get(name)) {
+						Map<String, Double> next = new TreeMap<String, Double>(combination);
+						next.put(name, value);
+						expanded.add(next);
+					}
+				}
+				combinations = expanded;
+			}
+		}
+		for(int itr : iterations) {
+			for(long stp : timeSteps) {
+				for(int rep : replications) {
+					for(double dur : durations) {
+						for(Map<String, Double> combination : combinations) {
+							addPoint(new Point(itr, stp, rep, dur, combination));
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds Latin hypercube samples of points. Each range is divided into 
+	 * as many equal strata as samples and each stratum is sampled once; 
+	 * integer values are rounded. Ranges with equal bounds are fixed.
+	 *
+	 * @param samples the number of samples
+	 * @param iterations the bounds of the number of iterations per time step
+	 * @param timeSteps the bounds of the time step duration
+	 * @param replications the bounds of the number of replications
+	 * @param durations the bounds of the simulation duration
+	 * @param parameters the bounds of scenario parameters by name, or null
+	 * @param random the random number generator
+	 */
+	public void addLatinHypercube(int samples, double[] iterations, double[] timeSteps, 
+			double[] replications, double[] durations, 
+			Map<String, double[]> parameters, Random random) {
+		if(samples < 1) {
+			throw new IllegalArgumentException(
+					"Number of samples must be at least one.");
+		}
+		double[] itr = sample(samples, iterations, random);
+		double[] stp = sample(samples, timeSteps, random);
+		double[] rep = sample(samples, replications, random);
+		double[] dur = sample(samples, durations, random);
+		Map<String, double[]> values = new TreeMap<String, double[]>();
+		if(parameters != null) {
+			for(String name : new TreeSet<String>(parameters.keySet())) {
+				values.put(name, sample(samples, parameters.get(name), random));
+			}
+		}
+		for(int i = 0; i < samples; i++) {
+			Map<String, Double> combination = new TreeMap<String, Double>();
+			for(String name : values.keySet()) {
+				combination.put(name, values.get(name)[i]);
+			}
+			addPoint(new Point((int) Math.round(itr[i]), Math.round(stp[i]), 
+					(int) Math.round(rep[i]), dur[i], combination));
+		}
+	}
+	
+	/**
+	 * Adds a point. Points equal to an existing point are ignored.
+	 *
+	 * @param point the point
+	 */
+	public void addPoint(Point point) {
+		if(!points.contains(point)) {
+			points.add(point);
+		}
+	}
+	
+	/**
+	 * Executes all points not yet completed and writes the consolidated 
+	 * results table to {@code sweep-results.txt} in the output directory.
+	 *
+	 * @return the path of the results table
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public Path execute() throws IOException {
+		Path dirPath = Paths.get(dir);
+		if(!dirPath.toFile().exists()) {
+			dirPath.toFile().mkdirs();
+		}
+		
+		final ResourceContext context = ResourceContext.current();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		int skipped = 0;
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(final Point point : points) {
+				final DefaultFederate federate = factory.createFederate(
+						point.getOutputDir(dir), point);
+				if(isCompleted(point, federate)) {
+					skipped++;
+					continue;
+				}
+				futures.add(pool.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						ResourceContext previous = ResourceContext.bind(context);
+						try {
+							logger.info("Executing sweep point " + point + ".");
+							federate.execute(0, point.getDuration());
+						} finally {
+							ResourceContext.bind(previous);
+						}
+						return null;
+					}
+				}));
+			}
+			logger.info("Skipped " + skipped + " completed sweep points.");
+			for(Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while executing sweep.", e);
+				} catch(ExecutionException e) {
+					if(e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException("Failed to execute sweep point.", e.getCause());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return writeResults();
+	}
+	
+	/**
+	 * Gets the maximum number of concurrent points.
+	 *
+	 * @return the parallelism
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Gets the points of this sweep.
+	 *
+	 * @return the points
+	 */
+	public List<Point> getPoints() {
+		return Collections.unmodifiableList(points);
+	}
+	
+	/**
+	 * Gets the path of a point's summary file.
+	 *
+	 * @param point the point
+	 * @param federate the federate executing the point
+	 * @return the summary path
+	 */
+	private Path getSummaryPath(Point point, DefaultFederate federate) {
+		return Paths.get(point.getOutputDir(dir), point.getTestName(), 
+				federate.getFederateName() + "-summary.txt");
+	}
+	
+	/**
+	 * Checks if a point's summary file lists all of its replications.
+	 *
+	 * @param point the point
+	 * @param federate the federate executing the point
+	 * @return true, if the point is completed
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private boolean isCompleted(Point point, DefaultFederate federate) 
+			throws IOException {
+		Path summaryPath = getSummaryPath(point, federate);
+		return summaryPath.toFile().exists() 
+				&& readSummary(summaryPath).size() >= point.getReplications();
+	}
+	
+	/**
+	 * Reads the total, initialization, and execution times 
+	 * of each replication from a summary file.
+	 *
+	 * @param summaryPath the summary path
+	 * @return the times of each replication
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static List<long[]> readSummary(Path summaryPath) throws IOException {
+		List<long[]> times = new ArrayList<long[]>();
+		for(String line : Files.readAllLines(summaryPath, Charset.defaultCharset())) {
+			String[] fields = line.trim().split("\\s+");
+			if(fields.length != 4) {
+				continue;
+			}
+			try {
+				times.add(new long[]{Long.parseLong(fields[1]), 
+						Long.parseLong(fields[2]), Long.parseLong(fields[3])});
+			} catch(NumberFormatException e) {
+				// skip header
+			}
+		}
+		return times;
+	}
+	
+	/**
+	 * Draws Latin hypercube samples of one dimension.
+	 *
+	 * @param samples the number of samples
+	 * @param bounds the lower and upper bounds
+	 * @param random the random number generator
+	 * @return the samples in random order
+	 */
+	private static double[] sample(int samples, double[] bounds, Random random) {
+		if(bounds.length != 2 || bounds[1] < bounds[0]) {
+			throw new IllegalArgumentException("Invalid bounds.");
+		}
+		List<Integer> strata = new ArrayList<Integer>();
+		for(int i = 0; i < samples; i++) {
+			strata.add(i);
+		}
+		Collections.shuffle(strata, random);
+		double[] values = new double[samples];
+		for(int i = 0; i < samples; i++) {
+			values[i] = bounds[0] + (bounds[1] - bounds[0])
+					*(strata.get(i) + random.nextDouble())/samples;
+		}
+		return values;
+	}
+	
+	/**
+	 * Sets the maximum number of concurrent points.
+	 *
+	 * @param parallelism the parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least one.");
+		}
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Writes the consolidated results table with the mean times 
+	 * and the standard deviation of total time of each point.
+	 *
+	 * @return the path of the results table
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private Path writeResults() throws IOException {
+		Set<String> names = new TreeSet<String>();
+		for(Point point : points) {
+			names.addAll(point.getParameters().keySet());
+		}
+		
+		Path resultsPath = Paths.get(dir, "sweep-results.txt");
+		BufferedWriter writer = Files.newBufferedWriter(
+				resultsPath, Charset.defaultCharset());
+		try {
+			writer.write(String.format("%6s%10s%6s%10s", "Itr", "Stp", "Rep", "Dur"));
+			for(String name : names) {
+				writer.write(String.format("%20s", name));
+			}
+			writer.write(String.format("%6s%20s%20s%20s%20s\n", "Runs", 
+					"Total Time (ms)", "Init Time (ms)", "Exec Time (ms)", "Total Std (ms)"));
+			for(Point point : points) {
+				DefaultFederate federate = factory.createFederate(
+						point.getOutputDir(dir), point);
+				Path summaryPath = getSummaryPath(point, federate);
+				List<long[]> times = summaryPath.toFile().exists() 
+						? readSummary(summaryPath) : new ArrayList<long[]>();
+				double[] mean = new double[3];
+				for(long[] t : times) {
+					for(int i = 0; i < mean.length; i++) {
+						mean[i] += t[i]/(double) times.size();
+					}
+				}
+				double variance = 0;
+				for(long[] t : times) {
+					variance += Math.pow(t[0] - mean[0], 2)/Math.max(1, times.size() - 1);
+				}
+				writer.write(String.format("%6d%10d%6d%10.3f", point.getIterations(), 
+						point.getTimeStep(), point.getReplications(), point.getDuration()));
+				for(String name : names) {
+					writer.write(String.format("%20s", point.getParameters().containsKey(name) 
+							? point.getParameters().get(name) : "NaN"));
+				}
+				writer.write(String.format("%6d%20.1f%20.1f%20.1f%20.1f\n", times.size(), 
+						mean[0], mean[1], mean[2], Math.sqrt(variance)));
+			}
+		} finally {
+			writer.close();
+		}
+		logger.info("Wrote results of " + points.size() 
+				+ " sweep points to " + resultsPath + ".");
+		return resultsPath;
+	}
+	
+	/**
+	 * A factory for creating the federate which executes a sweep point.
+	 */
+	public static interface FederateFactory {
+		
+		/**
+		 * Creates a federate for a point, applying its scenario parameters.
+		 *
+		 * @param outputDir the output directory of the point
+		 * @param point the point
+		 * @return the federate
+		 */
+		public DefaultFederate createFederate(String outputDir, Point point);
+	}
+	
+	/**
+	 * An immutable point of a parameter sweep.
+	 */
+	public static final class Point {
+		private final int iterations;
+		private final long timeStep;
+		private final int replications;
+		private final double duration;
+		private final Map<String, Double> parameters;
+		
+		/**
+		 * Instantiates a new point.
+		 *
+		 * @param iterations the number of iterations per time step
+		 * @param timeStep the time step duration
+		 * @param replications the number of replications
+		 * @param duration the simulation duration
+		 * @param parameters the scenario parameter values by name
+		 */
+		public Point(int iterations, long timeStep, int replications, 
+				double duration, Map<String, Double> parameters) {
+			if(iterations < 1 || timeStep < 1 || replications < 1 || duration <= 0) {
+				throw new IllegalArgumentException("Invalid sweep point.");
+			}
+			this.iterations = iterations;
+			this.timeStep = timeStep;
+			this.replications = replications;
+			this.duration = duration;
+			this.parameters = Collections.unmodifiableMap(
+					new TreeMap<String, Double>(parameters));
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) {
+				return true;
+			}
+			if(!(o instanceof Point)) {
+				return false;
+			}
+			Point p = (Point) o;
+			return p.iterations == iterations && p.timeStep == timeStep 
+					&& p.replications == replications && p.duration == duration 
+					&& p.parameters.equals(parameters);
+		}
+		
+		/**
+		 * Gets the simulation duration.
+		 *
+		 * @return the duration
+		 */
+		public double getDuration() {
+			return duration;
+		}
+		
+		/**
+		 * Gets the number of iterations per time step.
+		 *
+		 * @return the iterations
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+		
+		/**
+		 * Gets the output directory of this point, below a subdirectory 
+		 * named by its simulation duration and a subdirectory named by its 
+		 * scenario parameters if it has any.
+		 *
+		 * @param dir the sweep output directory
+		 * @return the output directory
+		 */
+		public String getOutputDir(String dir) {
+			Path durationDir = Paths.get(dir, "dur" + duration);
+			if(parameters.isEmpty()) {
+				return durationDir.toString();
+			}
+			StringBuilder name = new StringBuilder();
+			for(String key : parameters.keySet()) {
+				name.append(name.length() == 0 ? "" : "_")
+						.append(key).append(parameters.get(key));
+			}
+			return durationDir.resolve(name.toString()).toString();
+		}
+		
+		/**
+		 * Gets the scenario parameter values by name.
+		 *
+		 * @return the parameters
+		 */
+		public Map<String, Double> getParameters() {
+			return parameters;
+		}
+		
+		/**
+		 * Gets the number of replications.
+		 *
+		 * @return the replications
+		 */
+		public int getReplications() {
+			return replications;
+		}
+		
+		/**
+		 * Gets the test name of this point's output directory.
+		 *
+		 * @return the test name
+		 */
+		public String getTestName() {
+			return replications+"rep"+iterations+"itr"+timeStep+"stp";
+		}
+		
+		/**
+		 * Gets the time step duration.
+		 *
+		 * @return the time step
+		 */
+		public long getTimeStep() {
+			return timeStep;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return getTestName().hashCode() + 31*parameters.hashCode();
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Point(" + iterations + ", " + timeStep + ", " 
+					+ replications + ", " + duration + ", " + parameters + ")";
+		}
+	}
+}
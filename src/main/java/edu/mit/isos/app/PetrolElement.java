@@ -15,6 +15,7 @@
  */
 package edu.mit.isos.app;
 
+import edu.mit.isos.context.Resource;
 import edu.mit.isos.element.Element;
 
 /**
@@ -33,6 +34,14 @@ public interface PetrolElement extends Element {
 	 */
 	public double getElectReceived();
 	
+	/**
+	 * Gets the quantity of electricity received from the electricity system as 
+	 * a resource, which keeps the number format of the resource implementation.
+	 *
+	 * @return the electricity received
+	 */
+	public Resource getElectReceivedResource();
+	
 	/**
 	 * Gets the quantity of petroleum sent to the electricity system.
 	 *
@@ -15,6 +15,7 @@
  */
 package edu.mit.isos.app;
 
+import edu.mit.isos.context.Resource;
 import edu.mit.isos.element.Element;
 
 /**
@@ -33,6 +34,14 @@ public interface SocialElement extends Element {
 	 */
 	public double getElectReceived();
 	
+	/**
+	 * Gets the quantity of electricity received from the electricity system as 
+	 * a resource, which keeps the number format of the resource implementation.
+	 *
+	 * @return the electricity received
+	 */
+	public Resource getElectReceivedResource();
+	
 	/**
 	 * Gets the quantity of petroleum received from the petroleum system.
 	 *
@@ -40,10 +49,26 @@ public interface SocialElement extends Element {
 	 */
 	public double getPetrolReceived();
 	
+	/**
+	 * Gets the quantity of petroleum received from the petroleum system as 
+	 * a resource, which keeps the number format of the resource implementation.
+	 *
+	 * @return the petroleum received
+	 */
+	public Resource getPetrolReceivedResource();
+	
 	/**
 	 * Gets the quantity of water received from the water system.
 	 *
 	 * @return the quantity of water received
 	 */
 	public double getWaterReceived();
+	
+	/**
+	 * Gets the quantity of water received from the water system as a 
+	 * resource, which keeps the number format of the resource implementation.
+	 *
+	 * @return the water received
+	 */
+	public Resource getWaterReceivedResource();
 }
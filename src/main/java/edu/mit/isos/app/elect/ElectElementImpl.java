@@ -20,6 +20,8 @@ import edu.mit.isos.app.PetrolElement;
 import edu.mit.isos.app.SocialElement;
 import edu.mit.isos.app.WaterElement;
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.Resource;
+import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.element.DefaultElement;
 
 /**
@@ -88,6 +90,17 @@ public class ElectElementImpl extends DefaultElement implements ElectElement {
 		return 0;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.app.ElectElement#getPetrolReceivedResource()
+	 */
+	@Override
+	public Resource getPetrolReceivedResource() {
+		if(getState() instanceof ElectElementState) {
+			return ((ElectElementState)getState()).getPetrolReceivedResource();
+		}
+		return ResourceFactory.create();
+	}
+	
 	/**
 	 * Sets the petroleum system customer element for electricity.
 	 *
@@ -15,20 +15,26 @@
  */
 package edu.mit.isos.app.elect;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import edu.mit.isos.app.PetrolElement;
 import edu.mit.isos.app.SocialElement;
 import edu.mit.isos.app.WaterElement;
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceMatrix;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.sim.Checkpoint;
+import edu.mit.isos.state.Checkpointing;
 import edu.mit.isos.state.DefaultState;
+import edu.mit.isos.state.IntervalUpdating;
 import edu.mit.isos.state.ResourceExchanging;
+import edu.mit.isos.state.ResourceIterating;
 
 /**
  * Operational state for an electricity system element. Generates electricity 
@@ -39,7 +45,7 @@ import edu.mit.isos.state.ResourceExchanging;
  * @version 0.1.0
  * @since 0.1.0
  */
-public class ElectElementState extends DefaultState implements ResourceExchanging {
+public class ElectElementState extends DefaultState implements Checkpointing, ResourceExchanging, ResourceIterating, IntervalUpdating {
 	private ResourceMatrix tfMatrix = new ResourceMatrix();
 	private Resource solarCapacity = ResourceFactory.create();
 	
@@ -47,10 +53,17 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	protected PetrolElement petrolCustomer = null;
 	protected SocialElement socialCustomer = null;
 	protected WaterElement waterCustomer = null;
-	private double petrolReceived, nextPetrolReceived;
-	private double electSentSocial, nextElectSentSocial;
-	private double electSentWater, nextElectSentWater;
-	private double electSentPetrol, nextElectSentPetrol;
+	private Resource petrolReceived = ResourceFactory.create(), 
+			nextPetrolReceived = ResourceFactory.create();
+	private Resource electSentSocial = ResourceFactory.create(), 
+			nextElectSentSocial = ResourceFactory.create();
+	private Resource electSentWater = ResourceFactory.create(), 
+			nextElectSentWater = ResourceFactory.create();
+	private Resource electSentPetrol = ResourceFactory.create(), 
+			nextElectSentPetrol = ResourceFactory.create();
+	private long duration;
+	private double demandRate, previousDemandRate;
+	private long demandDuration, previousDemandDuration;
 	
 	/**
 	 * Instantiates a new electricity system element state.
@@ -92,6 +105,31 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void getCheckpoint(ByteBuffer buffer) {
+		buffer.putLong(duration).putDouble(demandRate)
+				.putDouble(previousDemandRate).putLong(demandDuration)
+				.putLong(previousDemandDuration);
+		Checkpoint.putResource(buffer, petrolReceived);
+		Checkpoint.putResource(buffer, electSentSocial);
+		Checkpoint.putResource(buffer, electSentWater);
+		Checkpoint.putResource(buffer, electSentPetrol);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpointSize()
+	 */
+	@Override
+	public int getCheckpointSize() {
+		return 5*8 + Checkpoint.getResourceSize(petrolReceived) 
+				+ Checkpoint.getResourceSize(electSentSocial) 
+				+ Checkpoint.getResourceSize(electSentWater) 
+				+ Checkpoint.getResourceSize(electSentPetrol);
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#getConsumed(edu.mit.isos.element.ElementImpl, long)
 	 */
@@ -108,7 +146,7 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	 * @return the electricity sent
 	 */
 	public double getElectSentToPetrol() {
-		return electSentPetrol;
+		return electSentPetrol.getQuantity(ResourceType.ELECTRICITY);
 	}
 	
 	/**
@@ -117,7 +155,7 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	 * @return the electricity sent
 	 */
 	public double getElectSentToSocial() {
-		return electSentSocial;
+		return electSentSocial.getQuantity(ResourceType.ELECTRICITY);
 	}
 	
 	/**
@@ -126,32 +164,86 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	 * @return the electricity sent
 	 */
 	public double getElectSentToWater() {
-		return electSentWater;
+		return electSentWater.getQuantity(ResourceType.ELECTRICITY);
 	}
 	
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.state.DefaultState#getNetExchange(edu.mit.isos.element.ElementImpl, edu.mit.isos.element.Element, long)
+	 * @see edu.mit.isos.state.IntervalUpdating#getIntervalEndTime(edu.mit.isos.element.ElementImpl, long)
 	 */
 	@Override
-	public Resource getNetExchange(ElementImpl element1, Element element2,
-			long duration) {
-		Resource netExchange = super.getNetExchange(element1, element2, duration);
-		netExchange = netExchange.add(getSentTo(element1, element2, duration))
-				.subtract(getReceivedFrom(element1, element2, duration));
+	public long getIntervalEndTime(ElementImpl element, long time) {
+		// oil consumption is linear in production unless truncated by 
+		// solar capacity, so the interval ends when demand may fall to it
+		double solar = solarCapacity.getQuantity(ResourceType.ELECTRICITY);
+		if(solar == 0) {
+			return Long.MAX_VALUE;
+		}
+		if(demandDuration == 0 || previousDemandDuration == 0 
+				|| demandRate <= solar) {
+			return time;
+		}
+		// demand follows populations growing or decaying exponentially, so 
+		// demand which has not decreased continues to do so and decreasing 
+		// demand stays above the linear projection of its last change
+		if(demandRate >= previousDemandRate) {
+			return Long.MAX_VALUE;
+		}
+		double slope = (demandRate - previousDemandRate)
+				/((demandDuration + previousDemandDuration)/2d);
+		return time - demandDuration/2 
+				+ (long) Math.floor((solar - demandRate)/slope);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterate(double[], int)
+	 */
+	@Override
+	public void getIterate(double[] iterate, int offset) {
+		iterate[offset] = petrolReceived.getQuantity(ResourceType.OIL);
+		iterate[offset + 1] = electSentSocial.getQuantity(ResourceType.ELECTRICITY);
+		iterate[offset + 2] = electSentWater.getQuantity(ResourceType.ELECTRICITY);
+		iterate[offset + 3] = electSentPetrol.getQuantity(ResourceType.ELECTRICITY);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterateSize()
+	 */
+	@Override
+	public int getIterateSize() {
+		return 4;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#isIterateNonNegative(int)
+	 */
+	@Override
+	public boolean isIterateNonNegative(int index) {
+		return index == 0; // oil received is truncated at zero
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.DefaultState#getNetExchange(edu.mit.isos.element.ElementImpl, edu.mit.isos.element.Element, long, edu.mit.isos.context.MutableResource)
+	 */
+	@Override
+	public MutableResource getNetExchange(ElementImpl element1, Element element2,
+			long duration, MutableResource netExchange) {
+		super.getNetExchange(element1, element2, duration, netExchange);
+		netExchange.addInPlace(getSentTo(element1, element2, duration))
+				.subtractInPlace(getReceivedFrom(element1, element2, duration));
 		return netExchange;
 	}
 
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.state.DefaultState#getNetFlow(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Location, long)
+	 * @see edu.mit.isos.state.DefaultState#getNetFlow(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Location, long, edu.mit.isos.context.MutableResource)
 	 */
 	@Override
-	public Resource getNetFlow(ElementImpl element, Location location, 
-			long duration) {
-		Resource netFlow = super.getNetFlow(element, location, duration);
+	public MutableResource getNetFlow(ElementImpl element, Location location, 
+			long duration, MutableResource netFlow) {
+		super.getNetFlow(element, location, duration, netFlow);
 		if(location.isStatic() && location.getOrigin().equals(
 				element.getLocation().getOrigin())) {
-			netFlow = netFlow.subtract(getSent(element, duration))
-					.add(getReceived(element, duration));
+			netFlow.subtractInPlace(getSent(element, duration))
+					.addInPlace(getReceived(element, duration));
 		}
 		return netFlow;
 	}
@@ -162,6 +254,15 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	 * @return the petroleum received
 	 */
 	public double getPetrolReceived() {
+		return petrolReceived.getQuantity(ResourceType.OIL);
+	}
+	
+	/**
+	 * Gets the quantity of petroleum received as a resource.
+	 *
+	 * @return the petroleum received
+	 */
+	public Resource getPetrolReceivedResource() {
 		return petrolReceived;
 	}
 
@@ -187,7 +288,7 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	@Override
 	public Resource getReceivedFrom(ElementImpl element1, Element element2, 
 			long duration) {
-		Resource received = ResourceFactory.create();
+		Resource received = resourceContext.create();
 		if(element2 != null && element2.equals(petrolSupplier)) {
 			received = received.add(getReceived(element1, duration).get(ResourceType.OIL));
 		}
@@ -199,7 +300,7 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	 */
 	@Override
 	public Resource getSent(ElementImpl element, long duration) {
-		Resource sent = ResourceFactory.create();
+		Resource sent = resourceContext.create();
 		for(Element customer : Arrays.asList(socialCustomer, petrolCustomer, waterCustomer)) {
 			sent = sent.add(getSentTo(element, customer, duration));
 		}
@@ -211,18 +312,15 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	 */
 	@Override
 	public Resource getSentTo(ElementImpl element1, Element element2, long duration) {
-		Resource sent = ResourceFactory.create();
+		Resource sent = resourceContext.create();
 		if(element2 != null && element2.equals(socialCustomer)) {
-			sent = sent.add(ResourceFactory.create(
-					ResourceType.ELECTRICITY, electSentSocial));
+			sent = sent.add(electSentSocial);
 		}
 		if(element2 != null && element2.equals(petrolCustomer)) {
-			sent = sent.add(ResourceFactory.create(
-					ResourceType.ELECTRICITY, electSentPetrol));
+			sent = sent.add(electSentPetrol);
 		}
 		if(element2 != null && element2.equals(waterCustomer)) {
-			sent = sent.add(ResourceFactory.create(
-					ResourceType.ELECTRICITY, electSentWater));
+			sent = sent.add(electSentWater);
 		}
 		return sent;
 	}
@@ -233,7 +331,13 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	@Override
 	public void initialize(ElementImpl element, long initialTime) {
 		super.initialize(element, initialTime);
-		petrolReceived = nextPetrolReceived = 0;
+		petrolReceived = nextPetrolReceived = resourceContext.create();
+		electSentSocial = nextElectSentSocial = resourceContext.create();
+		electSentWater = nextElectSentWater = resourceContext.create();
+		electSentPetrol = nextElectSentPetrol = resourceContext.create();
+		duration = 0;
+		demandRate = previousDemandRate = 0;
+		demandDuration = previousDemandDuration = 0;
 		petrolSupplier = null;
 		petrolCustomer = null;
 		socialCustomer = null;
@@ -246,11 +350,15 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 	@Override
 	public void iterateTick(ElementImpl element, long duration) {
 		super.iterateTick(element, duration);
+		this.duration = duration;
 		nextPetrolReceived = getReceived(element, duration)
-				.getQuantity(ResourceType.OIL);
-		nextElectSentSocial = socialCustomer==null?0:socialCustomer.getElectReceived();
-		nextElectSentWater = waterCustomer==null?0:waterCustomer.getElectReceived();
-		nextElectSentPetrol = petrolCustomer==null?0:petrolCustomer.getElectReceived();
+				.get(ResourceType.OIL);
+		nextElectSentSocial = socialCustomer==null?resourceContext.create():
+			socialCustomer.getElectReceivedResource();
+		nextElectSentWater = waterCustomer==null?resourceContext.create():
+			waterCustomer.getElectReceivedResource();
+		nextElectSentPetrol = petrolCustomer==null?resourceContext.create():
+			petrolCustomer.getElectReceivedResource();
 	}
 	
 	/* (non-Javadoc)
@@ -265,18 +373,54 @@ public class ElectElementState extends DefaultState implements ResourceExchangin
 		electSentPetrol = nextElectSentPetrol;
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#setCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void setCheckpoint(ByteBuffer buffer) {
+		duration = buffer.getLong();
+		demandRate = buffer.getDouble();
+		previousDemandRate = buffer.getDouble();
+		demandDuration = buffer.getLong();
+		previousDemandDuration = buffer.getLong();
+		petrolReceived = nextPetrolReceived = Checkpoint.getResource(buffer);
+		electSentSocial = nextElectSentSocial = Checkpoint.getResource(buffer);
+		electSentWater = nextElectSentWater = Checkpoint.getResource(buffer);
+		electSentPetrol = nextElectSentPetrol = Checkpoint.getResource(buffer);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#setIterate(double[], int)
+	 */
+	@Override
+	public void setIterate(double[] iterate, int offset) {
+		petrolReceived = setQuantity(petrolReceived, 
+				ResourceType.OIL, iterate[offset]);
+		electSentSocial = setQuantity(electSentSocial, 
+				ResourceType.ELECTRICITY, iterate[offset + 1]);
+		electSentWater = setQuantity(electSentWater, 
+				ResourceType.ELECTRICITY, iterate[offset + 2]);
+		electSentPetrol = setQuantity(electSentPetrol, 
+				ResourceType.ELECTRICITY, iterate[offset + 3]);
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#tick(edu.mit.isos.element.ElementImpl, long)
 	 */
 	@Override
 	public void tick(ElementImpl element, long duration) {
 		super.tick(element, duration);
+		previousDemandRate = demandRate;
+		previousDemandDuration = demandDuration;
+		demandRate = electSentSocial.add(electSentWater).add(electSentPetrol)
+				.getQuantity(ResourceType.ELECTRICITY)/duration;
+		demandDuration = duration;
 		for(Element customer : Arrays.asList(socialCustomer, petrolCustomer, waterCustomer)) {
 			exchange(element, customer, getSentTo(element, customer, duration), 
-					ResourceFactory.create());
+					resourceContext.create());
 		}
 		for(Element supplier : Arrays.asList(petrolSupplier)) {
-			exchange(element, supplier, ResourceFactory.create(), 
+			exchange(element, supplier, resourceContext.create(), 
 					getReceivedFrom(element, supplier, duration));
 		}
 	}
@@ -26,22 +26,38 @@ import edu.mit.isos.app.WaterElement;
 import edu.mit.isos.app.elect.ElectElementImpl;
 import edu.mit.isos.app.petrol.PetrolElementImpl;
 import edu.mit.isos.app.social.SocialElementImpl;
+import edu.mit.isos.app.water.WaterController;
 import edu.mit.isos.app.water.WaterElementImpl;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
 import edu.mit.isos.hla.ISOSambassador;
+import edu.mit.isos.sim.GaussSeidelScheduler;
 
 /**
  * Default ambassador implementation for HLA or non-HLA federates. 
  * Contains methods to attempt to set up supplier and customer links for 
- * a local element based on co-location with remote elements.
+ * a local element based on co-location with remote elements. Suppliers 
+ * read quantities received by their customers, so each customer link 
+ * is recorded as a dependency for iteration scheduling. Controllers 
+ * read from and write into their controlled elements, so each 
+ * controlled element is recorded as a dependency in both directions.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador implements ISOSambassador {
 	protected static Logger logger = Logger.getLogger(ISOSdefaultAmbassador.class);
+	private final GaussSeidelScheduler scheduler = new GaussSeidelScheduler();
+	
+	/**
+	 * Gets the scheduler recording dependencies between linked elements.
+	 *
+	 * @return the scheduler
+	 */
+	protected GaussSeidelScheduler getScheduler() {
+		return scheduler;
+	}
 		
 	/**
 	 * Attempts to set up co-located supplier and customer links 
@@ -61,6 +77,7 @@ public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador imple
 				petrol = (PetrolElement) element;
 				elect.setPetrolSupplier(petrol);
 				elect.setCustomer(petrol);
+				scheduler.addDependency(elect, petrol);
 				break;
 			}
 		}
@@ -69,6 +86,7 @@ public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador imple
 					&& elect.getLocation().equals(element.getLocation())) {
 				social = (SocialElement) element;
 				elect.setCustomer(social);
+				scheduler.addDependency(elect, social);
 				break;
 			}
 		}
@@ -77,6 +95,7 @@ public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador imple
 					&& elect.getLocation().equals(element.getLocation())) {
 				water = (WaterElement) element;
 				elect.setCustomer(water);
+				scheduler.addDependency(elect, water);
 				break;
 			}
 		}
@@ -110,6 +129,9 @@ public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador imple
 		if(element instanceof WaterElementImpl) {
 			return setUpWater((WaterElementImpl)element);
 		}
+		if(element instanceof WaterController) {
+			return setUpWaterController((WaterController)element);
+		}
 		return true; // nothing to set up
 	}
 	
@@ -129,6 +151,7 @@ public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador imple
 					&& petrol.getLocation().equals(element.getLocation())) {
 				elect = (ElectElement) element;
 				petrol.setCustomer(elect);
+				scheduler.addDependency(petrol, elect);
 				petrol.setElectSupplier(elect);
 				break;
 			}
@@ -138,6 +161,7 @@ public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador imple
 					&& petrol.getLocation().equals(element.getLocation())) {
 				social = (SocialElement) element;
 				petrol.setCustomer(social);
+				scheduler.addDependency(petrol, social);
 				break;
 			}
 		}
@@ -218,6 +242,7 @@ public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador imple
 					&& water.getLocation().equals(element.getLocation())) {
 				social = (SocialElement) element;
 				water.setCustomer(social);
+				scheduler.addDependency(water, social);
 				break;
 			}
 		}
@@ -228,4 +253,21 @@ public abstract class ISOSdefaultAmbassador extends NullFederateAmbassador imple
 
 		return elect != null && social != null;
 	}
+	
+	/**
+	 * Sets up dependencies for a local water controller. The controller 
+	 * reads the states of its controlled elements (e.g. water sent by 
+	 * systems) and writes their production and distribution quantities, 
+	 * so it is scheduled in the same component as its controlled elements.
+	 *
+	 * @param controller the water controller
+	 * @return true, if successful
+	 */
+	protected boolean setUpWaterController(WaterController controller) {
+		for(ElementImpl element : controller.getControlledElements()) {
+			scheduler.addDependency(controller, element);
+			scheduler.addDependency(element, controller);
+		}
+		return true;
+	}
 }
\ No newline at end of file
@@ -34,6 +34,7 @@ import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.hla.ISOSelement;
 import edu.mit.isos.sim.SimEntity;
+import edu.mit.isos.state.ResourceIterating;
 
 /**
  * ISOSelectElement is the HLA object class implementing the {@link ElectElement} 
@@ -43,7 +44,7 @@ import edu.mit.isos.sim.SimEntity;
  * @version 0.1.0
  * @since 0.1.0
  */
-public class ISOSelectElement extends ISOSelement implements ElectElement {
+public class ISOSelectElement extends ISOSelement implements ElectElement, ResourceIterating {
 	private static Logger logger = Logger.getLogger(ISOSelectElement.class);
 	public static final String CLASS_NAME = "HLAobjectRoot.Element.ElectElement";
 	public static final String NAME_ATTRIBUTE = "Name",
@@ -206,6 +207,33 @@ public class ISOSelectElement extends ISOSelement implements ElectElement {
 		return exchange;
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterate(double[], int)
+	 */
+	@Override
+	public void getIterate(double[] iterate, int offset) {
+		iterate[offset] = petrolReceived.getValue();
+		iterate[offset + 1] = electSentToSocial.getValue();
+		iterate[offset + 2] = electSentToWater.getValue();
+		iterate[offset + 3] = electSentToPetrol.getValue();
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterateSize()
+	 */
+	@Override
+	public int getIterateSize() {
+		return 4;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#isIterateNonNegative(int)
+	 */
+	@Override
+	public boolean isIterateNonNegative(int index) {
+		return index == 0; // oil received is truncated at zero
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.sips.hla.HLAobject#getObjectClassName()
 	 */
@@ -222,6 +250,11 @@ public class ISOSelectElement extends ISOSelement implements ElectElement {
 		return petrolReceived.getValue();
 	}
 
+	@Override
+	public Resource getPetrolReceivedResource() {
+		return ResourceFactory.create(ResourceType.OIL, petrolReceived.getValue());
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.fss.hla.HLAobject#setAttributes(java.lang.Object)
 	 */
@@ -241,6 +274,17 @@ public class ISOSelectElement extends ISOSelement implements ElectElement {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#setIterate(double[], int)
+	 */
+	@Override
+	public void setIterate(double[] iterate, int offset) {
+		petrolReceived.setValue(iterate[offset]);
+		electSentToSocial.setValue(iterate[offset + 1]);
+		electSentToWater.setValue(iterate[offset + 2]);
+		electSentToPetrol.setValue(iterate[offset + 3]);
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.fss.hla.HLAobject#toString()
 	 */
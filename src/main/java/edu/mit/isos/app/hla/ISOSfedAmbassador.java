@@ -57,6 +57,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
@@ -70,6 +71,8 @@ import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
 import edu.mit.isos.hla.ISOSambassador;
 import edu.mit.isos.hla.ISOSelement;
+import edu.mit.isos.sim.AndersonAccelerator;
+import edu.mit.isos.sim.ConvergenceMonitor;
 import edu.mit.isos.sim.SimEntity;
 
 /**
@@ -89,6 +92,8 @@ public class ISOSfedAmbassador extends ISOSdefaultAmbassador implements ISOSamba
 	private HLAfloat64Interval lookaheadInterval, timeStepDuration;
 	private int numIterations;
 	private long timeStep;
+	private ConvergenceMonitor monitor;
+	private AndersonAccelerator accelerator;
 	private volatile AtomicBoolean timeConstrained = new AtomicBoolean(false);
 	private volatile AtomicBoolean timeRegulating = new AtomicBoolean(false);
 	private Map<String, Boolean> syncRegSuccess = 
@@ -119,15 +124,42 @@ public class ISOSfedAmbassador extends ISOSdefaultAmbassador implements ISOSamba
 	}
 	
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.hla.ISOSambassador#advance()
+	 * @see edu.mit.isos.hla.ISOSambassador#advance(long, java.util.Set)
 	 */
-	public void advance() {
-		for(int i = 0; i < numIterations; i++) {
-			for(SimEntity entity : localObjects.keySet()) {
+	public void advance(long duration, Set<? extends ElementImpl> active) {
+		if(duration != timeStep) {
+			// federation time advances in lock-step by a fixed time step
+			throw new IllegalArgumentException("Time step duration " 
+					+ duration + " differs from federation time step " 
+					+ timeStep + ".");
+		}
+		int maxIterations = numIterations;
+		HLAfloat64Interval iterationDuration = timeStepDuration;
+		if(monitor != null) {
+			// measure published instances (local and remote) so that all 
+			// federates measure the same quantities and stop together
+			monitor.beginStep(Collections.<ElementImpl>emptySet(), 
+					objectInstanceHandleMap.values());
+			maxIterations = monitor.getMaxIterations();
+			iterationDuration = timeFactory.makeInterval(
+					timeStep/((double)maxIterations));
+		}
+		if(accelerator != null) {
+			accelerator.beginStep(active);
+		}
+		HLAfloat64Time endTime = timeFactory.makeTime(
+				logicalTime.getValue() + timeStep);
+		for(int i = 0; i < maxIterations; i++) {
+			for(SimEntity entity : active) {
 				entity.iterateTick(timeStep);
 			}
-			for(SimEntity entity : localObjects.keySet()) {
+			for(SimEntity entity : active) {
 				entity.iterateTock();
+			}
+			if(accelerator != null && i + 1 < maxIterations) {
+				accelerator.accelerate();
+			}
+			for(SimEntity entity : localObjects.keySet()) {
 				if(localObjects.get(entity) != null) {
 					localObjects.get(entity).setAttributes(entity);
 					try {
@@ -137,26 +169,55 @@ public class ISOSfedAmbassador extends ISOSdefaultAmbassador implements ISOSamba
 					}
 				}
 			}
-			try {
-				HLAfloat64Time nextTime = logicalTime.add(timeStepDuration);
-				logger.debug("Requesting time advance to initial time " + nextTime);
-				rtiAmbassador.timeAdvanceRequest(nextTime);
-			} catch (RTIexception e) {
-				logger.error(e);
-			}
-			
-			logger.debug("Waiting for time advance grant.");
-			while(!timeAdvanceGranted.get()) {
+			if(i + 1 < maxIterations) {
 				try {
-					rtiAmbassador.evokeMultipleCallbacks(0,5);
+					advanceTime(logicalTime.add(iterationDuration));
 				} catch (RTIexception e) {
 					logger.error(e);
 				}
+			} else {
+				advanceTime(endTime);
+			}
+			
+			// federates agree on convergence because they measure the 
+			// same published instances after the time advance grant
+			if(monitor != null && monitor.endIteration()) {
+				if(i + 1 < maxIterations) {
+					// advance the remainder of the step in one request
+					advanceTime(endTime);
+				}
+				break;
 			}
-			timeAdvanceGranted.set(false);
+		}
+		if(monitor != null) {
+			monitor.endStep();
 		}
 	}
 	
+	/**
+	 * Requests a time advance and waits for the grant.
+	 *
+	 * @param nextTime the requested time
+	 */
+	private void advanceTime(HLAfloat64Time nextTime) {
+		try {
+			logger.debug("Requesting time advance to time " + nextTime);
+			rtiAmbassador.timeAdvanceRequest(nextTime);
+		} catch (RTIexception e) {
+			logger.error(e);
+		}
+		
+		logger.debug("Waiting for time advance grant.");
+		while(!timeAdvanceGranted.get()) {
+			try {
+				rtiAmbassador.evokeMultipleCallbacks(0,5);
+			} catch (RTIexception e) {
+				logger.error(e);
+			}
+		}
+		timeAdvanceGranted.set(false);
+	}
+	
 	/* (non-Javadoc)
 	 * @see hla.rti1516e.NullFederateAmbassador#announceSynchronizationPoint(java.lang.String, byte[])
 	 */
@@ -332,6 +393,25 @@ public class ISOSfedAmbassador extends ISOSdefaultAmbassador implements ISOSamba
 	public Collection<Element> getElements() {
 		return new HashSet<Element>(objectInstanceHandleMap.values());
 	}
+	
+	/**
+	 * Gets the accelerator for iterations.
+	 *
+	 * @return the accelerator, or null if iterations are not accelerated
+	 */
+	public AndersonAccelerator getAccelerator() {
+		return accelerator;
+	}
+	
+	/**
+	 * Gets the convergence monitor.
+	 *
+	 * @return the convergence monitor, or null if each time step 
+	 * performs a fixed number of iterations
+	 */
+	public ConvergenceMonitor getConvergenceMonitor() {
+		return monitor;
+	}
 
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.hla.ISOSambassador#initialize(edu.mit.isos.context.Scenario, int, long)
@@ -586,6 +666,31 @@ public class ISOSfedAmbassador extends ISOSdefaultAmbassador implements ISOSamba
 		}
 	}
 
+	/**
+	 * Sets the accelerator for iterations. Accelerated quantities are 
+	 * published to other federates. The last iteration of each time step 
+	 * is not accelerated so committed quantities remain consistent 
+	 * between elements.
+	 *
+	 * @param accelerator the accelerator, or null to not accelerate iterations
+	 */
+	public void setAccelerator(AndersonAccelerator accelerator) {
+		this.accelerator = accelerator;
+	}
+
+	/**
+	 * Sets the convergence monitor to stop iterating each time step once
+	 * exchanged quantities have settled. Time advances continue for the
+	 * fixed number of iterations to remain in lock-step with other
+	 * federates, but local elements are no longer iterated or updated.
+	 *
+	 * @param monitor the convergence monitor, or null to perform
+	 * a fixed number of iterations
+	 */
+	public void setConvergenceMonitor(ConvergenceMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	/* (non-Javadoc)
 	 * @see hla.rti1516e.NullFederateAmbassador#synchronizationPointRegistrationFailed(java.lang.String, hla.rti1516e.SynchronizationPointFailureReason)
 	 */
@@ -713,4 +818,4 @@ public class ISOSfedAmbassador extends ISOSdefaultAmbassador implements ISOSamba
 				+ logicalTime.getValue() + ".");
 		timeRegulating.set(true);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -16,6 +16,7 @@
 package edu.mit.isos.app.hla;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -25,33 +26,59 @@ import edu.mit.isos.context.Scenario;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
 import edu.mit.isos.hla.ISOSambassador;
+import edu.mit.isos.sim.AndersonAccelerator;
+import edu.mit.isos.sim.ChangeTracker;
+import edu.mit.isos.sim.ConvergenceMonitor;
+import edu.mit.isos.sim.ParallelExecutor;
 import edu.mit.isos.sim.SimEntity;
 
 /**
  * Ambassador implementation for non-HLA federates. Aggregates locally-defined objects.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public class ISOSnullAmbassador extends ISOSdefaultAmbassador implements ISOSambassador {
 	protected static Logger logger = Logger.getLogger(ISOSnullAmbassador.class);
 	private int numIterations;
-	private long timeStep;
 	private final Set<ElementImpl> localObjects = new HashSet<ElementImpl>();
+	private ParallelExecutor executor;
+	private ConvergenceMonitor monitor;
+	private boolean gaussSeidel = false;
+	private AndersonAccelerator accelerator;
+	private ChangeTracker tracker;
 	
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.hla.ISOSambassador#advance()
+	 * @see edu.mit.isos.hla.ISOSambassador#advance(long, java.util.Set)
 	 */
-	public void advance() {
-		for(int i = 0; i < numIterations; i++) {
-			for(SimEntity entity : localObjects) {
-				entity.iterateTick(timeStep);
+	public void advance(long duration, Set<? extends ElementImpl> active) {
+		int maxIterations = numIterations;
+		if(monitor != null) {
+			monitor.beginStep(active, Collections.<Element>emptySet());
+			maxIterations = monitor.getMaxIterations();
+		}
+		if(accelerator != null) {
+			accelerator.beginStep(active);
+		}
+		if(tracker != null) {
+			tracker.beginStep();
+		}
+		for(int i = 0; i < maxIterations; i++) {
+			iterate(duration, active);
+			if(monitor != null && monitor.endIteration()) {
+				break;
 			}
-			for(SimEntity entity : localObjects) {
-				entity.iterateTock();
+			if(accelerator != null && i + 1 < maxIterations) {
+				accelerator.accelerate();
+			}
+			if(tracker != null) {
+				tracker.endIteration();
 			}
 		}
+		if(monitor != null) {
+			monitor.endStep();
+		}
 	}
 	
 	/* (non-Javadoc)
@@ -74,19 +101,155 @@ public class ISOSnullAmbassador extends ISOSdefaultAmbassador implements ISOSamb
 		return new HashSet<Element>(localObjects);
 	}
 	
+	/**
+	 * Gets the accelerator for iterations.
+	 *
+	 * @return the accelerator, or null if iterations are not accelerated
+	 */
+	public AndersonAccelerator getAccelerator() {
+		return accelerator;
+	}
+	
+	/**
+	 * Gets the change tracker.
+	 *
+	 * @return the change tracker, or null if all elements update 
+	 * in every iteration
+	 */
+	public ChangeTracker getChangeTracker() {
+		return tracker;
+	}
+	
+	/**
+	 * Gets the convergence monitor.
+	 *
+	 * @return the convergence monitor, or null if each time step 
+	 * performs a fixed number of iterations
+	 */
+	public ConvergenceMonitor getConvergenceMonitor() {
+		return monitor;
+	}
+	
+	/**
+	 * Gets the executor for iteration phases.
+	 *
+	 * @return the executor, or null if phases run sequentially
+	 */
+	public ParallelExecutor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Checks if iterations run in Gauss-Seidel order.
+	 *
+	 * @return true, if iterations run in Gauss-Seidel order
+	 */
+	public boolean isGaussSeidel() {
+		return gaussSeidel;
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.hla.ISOSambassador#initialize(edu.mit.isos.context.Scenario, int, long)
 	 */
 	public void initialize(Scenario scenario, int numIterations, long timeStep) {
 		this.numIterations = numIterations;
-		this.timeStep = timeStep;
 		
 		logger.debug("Registering object instantiations.");
 		localObjects.addAll(scenario.getElements());
 
 		logger.debug("Setting up object links.");
+		getScheduler().clear();
 		for(ElementImpl entity : localObjects) {
 			setUpElement(entity);
 		}
+		getScheduler().schedule(scenario.getElements());
+		if(tracker != null) {
+			tracker.initialize(scenario.getElements(), getScheduler());
+		}
+	}
+	
+	/**
+	 * Performs one iteration of active local objects.
+	 *
+	 * @param duration the time step duration
+	 * @param active the active local objects
+	 */
+	private void iterate(long duration, Set<? extends ElementImpl> active) {
+		if(gaussSeidel) {
+			getScheduler().iterate(duration, active);
+			return;
+		}
+		Collection<? extends SimEntity> updated = active;
+		if(tracker != null) {
+			updated = tracker.getDirty(active);
+		}
+		if(executor != null) {
+			executor.iterateTick(updated, duration);
+			executor.iterateTock(active);
+		} else {
+			for(SimEntity entity : updated) {
+				entity.iterateTick(duration);
+			}
+			for(SimEntity entity : active) {
+				entity.iterateTock();
+			}
+		}
+	}
+	
+	/**
+	 * Sets the accelerator for iterations. The last iteration of each 
+	 * time step is not accelerated so committed quantities remain 
+	 * consistent between elements.
+	 *
+	 * @param accelerator the accelerator, or null to not accelerate iterations
+	 */
+	public void setAccelerator(AndersonAccelerator accelerator) {
+		this.accelerator = accelerator;
+	}
+	
+	/**
+	 * Sets the change tracker to skip iterative state updates of elements 
+	 * whose inputs are unchanged. All elements still commit each iteration. 
+	 * The tracker must be set before initialization and does not apply to 
+	 * Gauss-Seidel iterations.
+	 *
+	 * @param tracker the change tracker, or null to update all elements 
+	 * in every iteration
+	 */
+	public void setChangeTracker(ChangeTracker tracker) {
+		this.tracker = tracker;
+	}
+	
+	/**
+	 * Sets the convergence monitor to stop iterating each time step once 
+	 * exchanged quantities have settled. The monitor's iteration bounds 
+	 * replace the fixed number of iterations.
+	 *
+	 * @param monitor the convergence monitor, or null to perform 
+	 * a fixed number of iterations
+	 */
+	public void setConvergenceMonitor(ConvergenceMonitor monitor) {
+		this.monitor = monitor;
+	}
+	
+	/**
+	 * Sets the executor for iteration phases.
+	 *
+	 * @param executor the executor, or null to run phases sequentially
+	 */
+	public void setExecutor(ParallelExecutor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Sets whether iterations run in Gauss-Seidel order, updating and 
+	 * committing each element in dependency order so later elements 
+	 * read values from the same iteration. Gauss-Seidel iterations run 
+	 * sequentially regardless of the executor.
+	 *
+	 * @param gaussSeidel true, to run iterations in Gauss-Seidel order
+	 */
+	public void setGaussSeidel(boolean gaussSeidel) {
+		this.gaussSeidel = gaussSeidel;
 	}
 }
\ No newline at end of file
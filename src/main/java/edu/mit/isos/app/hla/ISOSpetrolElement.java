@@ -33,6 +33,7 @@ import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.hla.ISOSelement;
 import edu.mit.isos.sim.SimEntity;
+import edu.mit.isos.state.ResourceIterating;
 
 /**
  * ISOSpetrolElement is the HLA object class implementing the {@link PetrolElement} 
@@ -42,7 +43,7 @@ import edu.mit.isos.sim.SimEntity;
  * @version 0.1.0
  * @since 0.1.0
  */
-public class ISOSpetrolElement extends ISOSelement implements PetrolElement {
+public class ISOSpetrolElement extends ISOSelement implements PetrolElement, ResourceIterating {
 	private static Logger logger = Logger.getLogger(ISOSpetrolElement.class);
 	public static final String CLASS_NAME = "HLAobjectRoot.Element.PetrolElement";
 	public static final String NAME_ATTRIBUTE = "Name",
@@ -152,6 +153,11 @@ public class ISOSpetrolElement extends ISOSelement implements PetrolElement {
 		return electReceived.getValue();
 	}
 
+	@Override
+	public Resource getElectReceivedResource() {
+		return ResourceFactory.create(ResourceType.ELECTRICITY, electReceived.getValue());
+	}
+
 	@Override
 	public Resource getNetExchange(Element element, long duration) {
 		Resource exchange = ResourceFactory.create();
@@ -168,6 +174,32 @@ public class ISOSpetrolElement extends ISOSelement implements PetrolElement {
 		return exchange;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterate(double[], int)
+	 */
+	@Override
+	public void getIterate(double[] iterate, int offset) {
+		iterate[offset] = electReceived.getValue();
+		iterate[offset + 1] = petrolSentToSocial.getValue();
+		iterate[offset + 2] = petrolSentToElect.getValue();
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterateSize()
+	 */
+	@Override
+	public int getIterateSize() {
+		return 3;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#isIterateNonNegative(int)
+	 */
+	@Override
+	public boolean isIterateNonNegative(int index) {
+		return index == 2; // oil sent mirrors oil received by electricity
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.sips.hla.HLAobject#getObjectClassName()
 	 */
@@ -204,6 +236,16 @@ public class ISOSpetrolElement extends ISOSelement implements PetrolElement {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#setIterate(double[], int)
+	 */
+	@Override
+	public void setIterate(double[] iterate, int offset) {
+		electReceived.setValue(iterate[offset]);
+		petrolSentToSocial.setValue(iterate[offset + 1]);
+		petrolSentToElect.setValue(iterate[offset + 2]);
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.fss.hla.HLAobject#toString()
 	 */
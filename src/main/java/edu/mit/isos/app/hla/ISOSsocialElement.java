@@ -34,6 +34,7 @@ import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.hla.ISOSelement;
 import edu.mit.isos.sim.SimEntity;
+import edu.mit.isos.state.ResourceIterating;
 
 /**
  * ISOSsocialElement is the HLA object class implementing the {@link SocialElement} 
@@ -43,7 +44,7 @@ import edu.mit.isos.sim.SimEntity;
  * @version 0.1.0
  * @since 0.1.0
  */
-public class ISOSsocialElement extends ISOSelement implements SocialElement {
+public class ISOSsocialElement extends ISOSelement implements SocialElement, ResourceIterating {
 	private static Logger logger = Logger.getLogger(ISOSsocialElement.class);
 	public static final String CLASS_NAME = "HLAobjectRoot.Element.SocialElement";
 	public static final String NAME_ATTRIBUTE = "Name",
@@ -153,6 +154,11 @@ public class ISOSsocialElement extends ISOSelement implements SocialElement {
 		return electReceived.getValue();
 	}
 
+	@Override
+	public Resource getElectReceivedResource() {
+		return ResourceFactory.create(ResourceType.ELECTRICITY, electReceived.getValue());
+	}
+
 	@Override
 	public Resource getNetExchange(Element element, long duration) {
 		Resource exchange = ResourceFactory.create();
@@ -171,6 +177,32 @@ public class ISOSsocialElement extends ISOSelement implements SocialElement {
 		return exchange;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterate(double[], int)
+	 */
+	@Override
+	public void getIterate(double[] iterate, int offset) {
+		iterate[offset] = electReceived.getValue();
+		iterate[offset + 1] = petrolReceived.getValue();
+		iterate[offset + 2] = waterReceived.getValue();
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterateSize()
+	 */
+	@Override
+	public int getIterateSize() {
+		return 3;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#isIterateNonNegative(int)
+	 */
+	@Override
+	public boolean isIterateNonNegative(int index) {
+		return false;
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.sips.hla.HLAobject#getObjectClassName()
 	 */
@@ -184,11 +216,21 @@ public class ISOSsocialElement extends ISOSelement implements SocialElement {
 		return petrolReceived.getValue();
 	}
 
+	@Override
+	public Resource getPetrolReceivedResource() {
+		return ResourceFactory.create(ResourceType.OIL, petrolReceived.getValue());
+	}
+
 	@Override
 	public double getWaterReceived() {
 		return waterReceived.getValue();
 	}
 
+	@Override
+	public Resource getWaterReceivedResource() {
+		return ResourceFactory.create(ResourceType.WATER, waterReceived.getValue());
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.fss.hla.HLAobject#setAttributes(java.lang.Object)
 	 */
@@ -207,6 +249,16 @@ public class ISOSsocialElement extends ISOSelement implements SocialElement {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#setIterate(double[], int)
+	 */
+	@Override
+	public void setIterate(double[] iterate, int offset) {
+		electReceived.setValue(iterate[offset]);
+		petrolReceived.setValue(iterate[offset + 1]);
+		waterReceived.setValue(iterate[offset + 2]);
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.fss.hla.HLAobject#toString()
 	 */
@@ -33,6 +33,7 @@ import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.hla.ISOSelement;
 import edu.mit.isos.sim.SimEntity;
+import edu.mit.isos.state.ResourceIterating;
 
 /**
  * ISOSwaterElement is the HLA object class implementing the {@link WaterElement} 
@@ -42,7 +43,7 @@ import edu.mit.isos.sim.SimEntity;
  * @version 0.1.0
  * @since 0.1.0
  */
-public class ISOSwaterElement extends ISOSelement implements WaterElement {
+public class ISOSwaterElement extends ISOSelement implements WaterElement, ResourceIterating {
 	private static Logger logger = Logger.getLogger(ISOSwaterElement.class);
 	public static final String CLASS_NAME = "HLAobjectRoot.Element.WaterElement";
 	public static final String NAME_ATTRIBUTE = "Name",
@@ -141,6 +142,11 @@ public class ISOSwaterElement extends ISOSelement implements WaterElement {
 		return electReceived.getValue();
 	}
 
+	@Override
+	public Resource getElectReceivedResource() {
+		return ResourceFactory.create(ResourceType.ELECTRICITY, electReceived.getValue());
+	}
+
 	@Override
 	public Resource getNetExchange(Element element, long duration) {
 		Resource exchange = ResourceFactory.create();
@@ -155,6 +161,31 @@ public class ISOSwaterElement extends ISOSelement implements WaterElement {
 		return exchange;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterate(double[], int)
+	 */
+	@Override
+	public void getIterate(double[] iterate, int offset) {
+		iterate[offset] = electReceived.getValue();
+		iterate[offset + 1] = waterSentToSocial.getValue();
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterateSize()
+	 */
+	@Override
+	public int getIterateSize() {
+		return 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#isIterateNonNegative(int)
+	 */
+	@Override
+	public boolean isIterateNonNegative(int index) {
+		return false;
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.sips.hla.HLAobject#getObjectClassName()
 	 */
@@ -185,6 +216,15 @@ public class ISOSwaterElement extends ISOSelement implements WaterElement {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#setIterate(double[], int)
+	 */
+	@Override
+	public void setIterate(double[] iterate, int offset) {
+		electReceived.setValue(iterate[offset]);
+		waterSentToSocial.setValue(iterate[offset + 1]);
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.fss.hla.HLAobject#toString()
 	 */
@@ -19,6 +19,7 @@ import edu.mit.isos.app.ElectElement;
 import edu.mit.isos.app.PetrolElement;
 import edu.mit.isos.app.SocialElement;
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.DefaultElement;
@@ -62,6 +63,17 @@ public class PetrolElementImpl extends DefaultElement implements PetrolElement {
 		return 0;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.app.PetrolElement#getElectReceivedResource()
+	 */
+	@Override
+	public Resource getElectReceivedResource() {
+		if(getState() instanceof PetrolElementState) {
+			return ((PetrolElementState)getState()).getElectReceivedResource();
+		}
+		return ResourceFactory.create();
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.app.PetrolElement#getPetrolSentToElect()
 	 */
@@ -15,19 +15,25 @@
  */
 package edu.mit.isos.app.petrol;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import edu.mit.isos.app.ElectElement;
 import edu.mit.isos.app.SocialElement;
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceMatrix;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.sim.Checkpoint;
+import edu.mit.isos.state.Checkpointing;
 import edu.mit.isos.state.DefaultState;
+import edu.mit.isos.state.IntervalUpdating;
 import edu.mit.isos.state.ResourceExchanging;
+import edu.mit.isos.state.ResourceIterating;
 
 /**
  * Operational state for a petroleum system element. Produces petroleum to 
@@ -38,15 +44,18 @@ import edu.mit.isos.state.ResourceExchanging;
  * @version 0.1.0
  * @since 0.1.0
  */
-public class PetrolElementState extends DefaultState implements ResourceExchanging {
+public class PetrolElementState extends DefaultState implements Checkpointing, ResourceExchanging, ResourceIterating, IntervalUpdating {
 	private ResourceMatrix tfMatrix = new ResourceMatrix();
 	
 	protected SocialElement socialCustomer = null;
 	protected ElectElement electCustomer = null;
 	protected ElectElement electSupplier = null;
-	private double electReceived, nextElectReceived;
-	private double petrolSentSocial, nextPetrolSentSocial;
-	private double petrolSentElect, nextPetrolSentElect;
+	private Resource electReceived = ResourceFactory.create(), 
+			nextElectReceived = ResourceFactory.create();
+	private Resource petrolSentSocial = ResourceFactory.create(), 
+			nextPetrolSentSocial = ResourceFactory.create();
+	private Resource petrolSentElect = ResourceFactory.create(), 
+			nextPetrolSentElect = ResourceFactory.create();
 	
 	/**
 	 * Instantiates a new petroleum element state.
@@ -85,6 +94,26 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void getCheckpoint(ByteBuffer buffer) {
+		Checkpoint.putResource(buffer, electReceived);
+		Checkpoint.putResource(buffer, petrolSentSocial);
+		Checkpoint.putResource(buffer, petrolSentElect);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpointSize()
+	 */
+	@Override
+	public int getCheckpointSize() {
+		return Checkpoint.getResourceSize(electReceived) 
+				+ Checkpoint.getResourceSize(petrolSentSocial) 
+				+ Checkpoint.getResourceSize(petrolSentElect);
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#getConsumed(edu.mit.isos.element.ElementImpl, long)
 	 */
@@ -99,30 +128,75 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 	 * @return the electricity received
 	 */
 	public double getElectReceived() {
+		return electReceived.getQuantity(ResourceType.ELECTRICITY);
+	}
+	
+	/**
+	 * Gets the electricity received as a resource.
+	 *
+	 * @return the electricity received
+	 */
+	public Resource getElectReceivedResource() {
 		return electReceived;
 	}
 	
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.state.DefaultState#getNetExchange(edu.mit.isos.element.ElementImpl, edu.mit.isos.element.Element, long)
+	 * @see edu.mit.isos.state.IntervalUpdating#getIntervalEndTime(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public long getIntervalEndTime(ElementImpl element, long time) {
+		// contents change linearly with flows settled for the interval
+		return Long.MAX_VALUE;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterate(double[], int)
+	 */
+	@Override
+	public void getIterate(double[] iterate, int offset) {
+		iterate[offset] = electReceived.getQuantity(ResourceType.ELECTRICITY);
+		iterate[offset + 1] = petrolSentSocial.getQuantity(ResourceType.OIL);
+		iterate[offset + 2] = petrolSentElect.getQuantity(ResourceType.OIL);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterateSize()
+	 */
+	@Override
+	public int getIterateSize() {
+		return 3;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#isIterateNonNegative(int)
 	 */
 	@Override
-	public Resource getNetExchange(ElementImpl element1, Element element2,
-			long duration) {
-		Resource netExchange = super.getNetExchange(element1, element2, duration);
-		netExchange = netExchange.add(getSentTo(element1, element2, duration))
-				.subtract(getReceivedFrom(element1, element2, duration));
+	public boolean isIterateNonNegative(int index) {
+		return index == 2; // oil sent mirrors oil received by electricity
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.DefaultState#getNetExchange(edu.mit.isos.element.ElementImpl, edu.mit.isos.element.Element, long, edu.mit.isos.context.MutableResource)
+	 */
+	@Override
+	public MutableResource getNetExchange(ElementImpl element1, Element element2,
+			long duration, MutableResource netExchange) {
+		super.getNetExchange(element1, element2, duration, netExchange);
+		netExchange.addInPlace(getSentTo(element1, element2, duration))
+				.subtractInPlace(getReceivedFrom(element1, element2, duration));
 		return netExchange;
 	}
 	
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.state.DefaultState#getNetFlow(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Location, long)
+	 * @see edu.mit.isos.state.DefaultState#getNetFlow(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Location, long, edu.mit.isos.context.MutableResource)
 	 */
 	@Override
-	public Resource getNetFlow(ElementImpl element, Location location, long duration) {
-		Resource netFlow = super.getNetFlow(element, location, duration);
+	public MutableResource getNetFlow(ElementImpl element, Location location, 
+			long duration, MutableResource netFlow) {
+		super.getNetFlow(element, location, duration, netFlow);
 		if(location.isStatic() && location.getOrigin().equals(element.getLocation().getOrigin())) {
-			netFlow = netFlow.subtract(getSent(element, duration))
-					.add(getReceived(element, duration));
+			netFlow.subtractInPlace(getSent(element, duration))
+					.addInPlace(getReceived(element, duration));
 		}
 		return netFlow;
 	}
@@ -133,7 +207,7 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 	 * @return the petroleum sent
 	 */
 	public double getPetrolSentToElect() {
-		return petrolSentElect;
+		return petrolSentElect.getQuantity(ResourceType.OIL);
 	}
 
 	/**
@@ -142,7 +216,7 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 	 * @return the petroleum sent
 	 */
 	public double getPetrolSentToSocial() {
-		return petrolSentSocial;
+		return petrolSentSocial.getQuantity(ResourceType.OIL);
 	}
 
 	/* (non-Javadoc)
@@ -166,7 +240,7 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 	 */
 	@Override
 	public Resource getReceivedFrom(ElementImpl element1, Element element2, long duration) {
-		Resource received = ResourceFactory.create();
+		Resource received = resourceContext.create();
 		if(element2 != null && element2.equals(electSupplier)) {
 			received = received.add(getReceived(element1, duration).get(ResourceType.ELECTRICITY));
 		}
@@ -186,7 +260,7 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 	 */
 	@Override
 	public Resource getSent(ElementImpl element, long duration) {
-		Resource sent = ResourceFactory.create();
+		Resource sent = resourceContext.create();
 		for(Element customer : Arrays.asList(socialCustomer, electCustomer)) {
 			sent = sent.add(getSentTo(element, customer, duration));
 		}
@@ -198,12 +272,12 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 	 */
 	@Override
 	public Resource getSentTo(ElementImpl element1, Element element2, long duration) {
-		Resource sent = ResourceFactory.create();
+		Resource sent = resourceContext.create();
 		if(element2 != null && element2.equals(socialCustomer)) {
-			sent = sent.add(ResourceFactory.create(ResourceType.OIL, petrolSentSocial));
+			sent = sent.add(petrolSentSocial);
 		}
 		if(element2 != null && element2.equals(electCustomer)) {
-			sent = sent.add(ResourceFactory.create(ResourceType.OIL, petrolSentElect));
+			sent = sent.add(petrolSentElect);
 		}
 		return sent;
 	}
@@ -214,7 +288,9 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 	@Override
 	public void initialize(ElementImpl element, long initialTime) {
 		super.initialize(element, initialTime);
-		electReceived = nextElectReceived = 0;
+		electReceived = nextElectReceived = resourceContext.create();
+		petrolSentSocial = nextPetrolSentSocial = resourceContext.create();
+		petrolSentElect = nextPetrolSentElect = resourceContext.create();
 		electSupplier = null;
 		electCustomer = null;
 		socialCustomer = null;
@@ -227,9 +303,11 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 	public void iterateTick(ElementImpl element, long duration) {
 		super.iterateTick(element, duration);
 		nextElectReceived = getReceived(element, duration)
-				.getQuantity(ResourceType.ELECTRICITY);
-		nextPetrolSentSocial = socialCustomer==null?0:socialCustomer.getPetrolReceived();
-		nextPetrolSentElect = electCustomer==null?0:electCustomer.getPetrolReceived();
+				.get(ResourceType.ELECTRICITY);
+		nextPetrolSentSocial = socialCustomer==null?resourceContext.create():
+			socialCustomer.getPetrolReceivedResource();
+		nextPetrolSentElect = electCustomer==null?resourceContext.create():
+			electCustomer.getPetrolReceivedResource();
 	}
 	
 	/* (non-Javadoc)
@@ -243,6 +321,29 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 		petrolSentElect = nextPetrolSentElect;
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#setCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void setCheckpoint(ByteBuffer buffer) {
+		electReceived = nextElectReceived = Checkpoint.getResource(buffer);
+		petrolSentSocial = nextPetrolSentSocial = Checkpoint.getResource(buffer);
+		petrolSentElect = nextPetrolSentElect = Checkpoint.getResource(buffer);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#setIterate(double[], int)
+	 */
+	@Override
+	public void setIterate(double[] iterate, int offset) {
+		electReceived = setQuantity(electReceived, 
+				ResourceType.ELECTRICITY, iterate[offset]);
+		petrolSentSocial = setQuantity(petrolSentSocial, 
+				ResourceType.OIL, iterate[offset + 1]);
+		petrolSentElect = setQuantity(petrolSentElect, 
+				ResourceType.OIL, iterate[offset + 2]);
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#tick(edu.mit.isos.element.ElementImpl, long)
 	 */
@@ -251,10 +352,10 @@ public class PetrolElementState extends DefaultState implements ResourceExchangi
 		super.tick(element, duration);
 		for(Element customer : Arrays.asList(socialCustomer, electCustomer)) {
 			exchange(element, customer, getSentTo(element, customer, duration), 
-					ResourceFactory.create());
+					resourceContext.create());
 		}
 		for(Element supplier : Arrays.asList(electSupplier)) {
-			exchange(element, supplier, ResourceFactory.create(), 
+			exchange(element, supplier, resourceContext.create(), 
 					getReceivedFrom(element, supplier, duration));
 		}
 	}
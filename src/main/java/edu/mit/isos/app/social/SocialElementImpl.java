@@ -20,6 +20,7 @@ import edu.mit.isos.app.PetrolElement;
 import edu.mit.isos.app.SocialElement;
 import edu.mit.isos.app.WaterElement;
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.DefaultElement;
@@ -100,6 +101,17 @@ public class SocialElementImpl extends DefaultElement implements SocialElement {
 		return 0;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.app.SocialElement#getElectReceivedResource()
+	 */
+	@Override
+	public Resource getElectReceivedResource() {
+		if(getState() instanceof SocialElementState) {
+			return ((SocialElementState)getState()).getElectReceivedResource();
+		}
+		return ResourceFactory.create();
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.app.SocialElement#getPetrolReceived()
 	 */
@@ -111,6 +123,17 @@ public class SocialElementImpl extends DefaultElement implements SocialElement {
 		return 0;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.app.SocialElement#getPetrolReceivedResource()
+	 */
+	@Override
+	public Resource getPetrolReceivedResource() {
+		if(getState() instanceof SocialElementState) {
+			return ((SocialElementState)getState()).getPetrolReceivedResource();
+		}
+		return ResourceFactory.create();
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.app.SocialElement#getWaterReceived()
 	 */
@@ -121,4 +144,15 @@ public class SocialElementImpl extends DefaultElement implements SocialElement {
 		}
 		return 0;
 	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.app.SocialElement#getWaterReceivedResource()
+	 */
+	@Override
+	public Resource getWaterReceivedResource() {
+		if(getState() instanceof SocialElementState) {
+			return ((SocialElementState)getState()).getWaterReceivedResource();
+		}
+		return ResourceFactory.create();
+	}
 }
\ No newline at end of file
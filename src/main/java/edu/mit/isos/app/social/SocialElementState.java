@@ -15,38 +15,55 @@
  */
 package edu.mit.isos.app.social;
 
+import java.nio.ByteBuffer;
+
 import edu.mit.isos.app.ElectElement;
 import edu.mit.isos.app.PetrolElement;
 import edu.mit.isos.app.WaterElement;
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceMatrix;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.sim.Checkpoint;
+import edu.mit.isos.state.Checkpointing;
 import edu.mit.isos.state.DefaultState;
+import edu.mit.isos.state.ErrorEstimating;
+import edu.mit.isos.state.Integrator;
+import edu.mit.isos.state.IntervalUpdating;
 import edu.mit.isos.state.ResourceExchanging;
+import edu.mit.isos.state.ResourceIntegrating;
+import edu.mit.isos.state.ResourceIterating;
 
 /**
  * Operational state for a social system element. Stores population with 
  * logistic growth. Consumes electricity, petroleum, and water based 
- * on per-capita demands.
+ * on per-capita demands. Without an integrator, population grows exactly 
+ * and consumption holds the population at the start of each time step. 
+ * With an integrator, both population growth and consumption of the 
+ * average population over each time step use the integrator.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
-public class SocialElementState extends DefaultState implements ResourceExchanging {
+public class SocialElementState extends DefaultState implements Checkpointing, ErrorEstimating, ResourceExchanging, ResourceIntegrating, ResourceIterating, IntervalUpdating {
 	private ResourceMatrix demandMatrix = new ResourceMatrix();
 	private double growthRate;
+	private Integrator integrator;
 	
 	protected ElectElement electSupplier = null;
 	protected PetrolElement petrolSupplier = null;
 	protected WaterElement waterSupplier = null;
-	private double electReceived, nextElectReceived;
-	private double petrolReceived, nextPetrolReceived;
-	private double waterReceived, nextWaterReceived;
+	private Resource electReceived = ResourceFactory.create(), 
+			nextElectReceived = ResourceFactory.create();
+	private Resource petrolReceived = ResourceFactory.create(), 
+			nextPetrolReceived = ResourceFactory.create();
+	private Resource waterReceived = ResourceFactory.create(), 
+			nextWaterReceived = ResourceFactory.create();
 	
 	/**
 	 * Instantiates a new social system element state.
@@ -89,13 +106,36 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void getCheckpoint(ByteBuffer buffer) {
+		Checkpoint.putResource(buffer, electReceived);
+		Checkpoint.putResource(buffer, petrolReceived);
+		Checkpoint.putResource(buffer, waterReceived);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpointSize()
+	 */
+	@Override
+	public int getCheckpointSize() {
+		return Checkpoint.getResourceSize(electReceived) 
+				+ Checkpoint.getResourceSize(petrolReceived) 
+				+ Checkpoint.getResourceSize(waterReceived);
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#getConsumed(edu.mit.isos.element.ElementImpl, long)
 	 */
 	@Override
 	public Resource getConsumed(ElementImpl element, long duration) {
-		return demandMatrix.multiply(element.getContents().get(ResourceType.PEOPLE))
-				.multiply(duration);
+		Resource people = element.getContents().get(ResourceType.PEOPLE);
+		if(integrator != null) {
+			people = integrator.getAverage(this, element, people, duration);
+		}
+		return demandMatrix.multiply(people).multiply(duration);
 	}
 
 	/**
@@ -104,30 +144,111 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 	 * @return the electricity received
 	 */
 	public double getElectReceived() {
+		return electReceived.getQuantity(ResourceType.ELECTRICITY);
+	}
+	
+	/**
+	 * Gets the electricity received as a resource.
+	 *
+	 * @return the electricity received
+	 */
+	public Resource getElectReceivedResource() {
 		return electReceived;
 	}
 
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.state.DefaultState#getNetExchange(edu.mit.isos.element.ElementImpl, edu.mit.isos.element.Element, long)
+	 * @see edu.mit.isos.state.IntervalUpdating#getIntervalEndTime(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public long getIntervalEndTime(ElementImpl element, long time) {
+		// population growth is closed-form, but consumption is exact over 
+		// any interval only with the exact average population
+		if(growthRate == 0 || integrator == Integrator.EXPONENTIAL) {
+			return Long.MAX_VALUE;
+		}
+		return time;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterate(double[], int)
 	 */
 	@Override
-	public Resource getNetExchange(ElementImpl element1, Element element2,
-			long duration) {
-		Resource netExchange = super.getNetExchange(element1, element2, duration);
-		netExchange = netExchange.add(getSentTo(element1, element2, duration))
-				.subtract(getReceivedFrom(element1, element2, duration));
+	public void getIterate(double[] iterate, int offset) {
+		iterate[offset] = electReceived.getQuantity(ResourceType.ELECTRICITY);
+		iterate[offset + 1] = petrolReceived.getQuantity(ResourceType.OIL);
+		iterate[offset + 2] = waterReceived.getQuantity(ResourceType.WATER);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterateSize()
+	 */
+	@Override
+	public int getIterateSize() {
+		return 3;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#isIterateNonNegative(int)
+	 */
+	@Override
+	public boolean isIterateNonNegative(int index) {
+		return false;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIntegrating#getIntegrator()
+	 */
+	@Override
+	public Integrator getIntegrator() {
+		return integrator;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ErrorEstimating#getLocalError(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public double getLocalError(ElementImpl element, long duration) {
+		if(integrator != null) {
+			// step-doubling of population growth with the integrator
+			Resource people = element.getContents().get(ResourceType.PEOPLE);
+			double full = integrator.integrate(this, element, people, duration)
+					.getQuantity(ResourceType.PEOPLE);
+			Resource half = integrator.integrate(this, element, people, duration/2);
+			double doubled = half.add(integrator.integrate(this, element, 
+					people.add(half), duration - duration/2))
+					.getQuantity(ResourceType.PEOPLE);
+			return Math.abs(doubled - full)/Math.max(1, Math.abs(full));
+		}
+		// population growth is exact, but consumption holds the population
+		// at the start of the step; step-doubling compares one full step
+		// to two half steps, the second with the grown population
+		double full = element.getContents().getQuantity(ResourceType.PEOPLE)*duration;
+		double doubled = full/2*(1 + Math.exp(growthRate*duration/2));
+		return Math.abs(doubled - full)/Math.max(1, Math.abs(full));
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.DefaultState#getNetExchange(edu.mit.isos.element.ElementImpl, edu.mit.isos.element.Element, long, edu.mit.isos.context.MutableResource)
+	 */
+	@Override
+	public MutableResource getNetExchange(ElementImpl element1, Element element2,
+			long duration, MutableResource netExchange) {
+		super.getNetExchange(element1, element2, duration, netExchange);
+		netExchange.addInPlace(getSentTo(element1, element2, duration))
+				.subtractInPlace(getReceivedFrom(element1, element2, duration));
 		return netExchange;
 	}
 	
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.state.DefaultState#getNetFlow(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Location, long)
+	 * @see edu.mit.isos.state.DefaultState#getNetFlow(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Location, long, edu.mit.isos.context.MutableResource)
 	 */
 	@Override
-	public Resource getNetFlow(ElementImpl element, Location location, long duration) {
-		Resource netFlow = super.getNetFlow(element, location, duration);
+	public MutableResource getNetFlow(ElementImpl element, Location location, 
+			long duration, MutableResource netFlow) {
+		super.getNetFlow(element, location, duration, netFlow);
 		if(location.isStatic() && location.getOrigin().equals(element.getLocation().getOrigin())) {
-			netFlow = netFlow.subtract(getSent(element, duration))
-					.add(getReceived(element, duration));
+			netFlow.subtractInPlace(getSent(element, duration))
+					.addInPlace(getReceived(element, duration));
 		}
 		return netFlow;
 	}
@@ -138,6 +259,15 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 	 * @return the petroleum received
 	 */
 	public double getPetrolReceived() {
+		return petrolReceived.getQuantity(ResourceType.OIL);
+	}
+	
+	/**
+	 * Gets the petroleum received as a resource.
+	 *
+	 * @return the petroleum received
+	 */
+	public Resource getPetrolReceivedResource() {
 		return petrolReceived;
 	}
 	
@@ -146,6 +276,10 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 	 */
 	@Override
 	public Resource getProduced(ElementImpl element, long duration) {
+		if(integrator != null) {
+			return integrator.integrate(this, element, 
+					element.getContents().get(ResourceType.PEOPLE), duration);
+		}
 		return element.getContents().get(ResourceType.PEOPLE)
 				.multiply(Math.exp(growthRate*duration)-1);
 	}
@@ -163,7 +297,7 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 	 */
 	@Override
 	public Resource getReceivedFrom(ElementImpl element1, Element element2, long duration) {
-		Resource received = ResourceFactory.create();
+		Resource received = resourceContext.create();
 		if(element2 != null && element2.equals(electSupplier)) {
 			received = received.add(getReceived(element1, duration).get(ResourceType.ELECTRICITY));
 		}
@@ -181,7 +315,7 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 	 */
 	@Override
 	public Resource getSent(ElementImpl element, long duration) {
-		Resource sent = ResourceFactory.create();
+		Resource sent = resourceContext.create();
 		return sent;
 	}
 	
@@ -190,7 +324,7 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 	 */
 	@Override
 	public Resource getSentTo(ElementImpl element1, Element element2, long duration) {
-		Resource sent = ResourceFactory.create();
+		Resource sent = resourceContext.create();
 		return sent;
 	}
 	
@@ -202,12 +336,29 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 		return getProduced(element, duration);
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIntegrating#getStoredRate(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public Resource getStoredRate(ElementImpl element, Resource contents) {
+		return contents.get(ResourceType.PEOPLE).multiply(growthRate);
+	}
+	
 	/**
 	 * Gets the water received.
 	 *
 	 * @return the water received
 	 */
 	public double getWaterReceived() {
+		return waterReceived.getQuantity(ResourceType.WATER);
+	}
+	
+	/**
+	 * Gets the water received as a resource.
+	 *
+	 * @return the water received
+	 */
+	public Resource getWaterReceivedResource() {
 		return waterReceived;
 	}
 
@@ -220,9 +371,9 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 		electSupplier = null;
 		petrolSupplier = null;
 		waterSupplier = null;
-		electReceived = nextElectReceived = 0;
-		petrolReceived = nextPetrolReceived = 0;
-		waterReceived = nextWaterReceived = 0;
+		electReceived = nextElectReceived = resourceContext.create();
+		petrolReceived = nextPetrolReceived = resourceContext.create();
+		waterReceived = nextWaterReceived = resourceContext.create();
 	}
 	
 	/* (non-Javadoc)
@@ -232,11 +383,11 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 	public void iterateTick(ElementImpl element, long duration) {
 		super.iterateTick(element, duration);
 		nextElectReceived = getReceived(element, duration)
-				.getQuantity(ResourceType.ELECTRICITY);
+				.get(ResourceType.ELECTRICITY);
 		nextPetrolReceived = getReceived(element, duration)
-				.getQuantity(ResourceType.OIL);
+				.get(ResourceType.OIL);
 		nextWaterReceived = getReceived(element, duration)
-				.getQuantity(ResourceType.WATER);
+				.get(ResourceType.WATER);
 	}
 
 	/* (non-Javadoc)
@@ -249,4 +400,35 @@ public class SocialElementState extends DefaultState implements ResourceExchangi
 		petrolReceived = nextPetrolReceived;
 		waterReceived = nextWaterReceived;
 	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#setCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void setCheckpoint(ByteBuffer buffer) {
+		electReceived = nextElectReceived = Checkpoint.getResource(buffer);
+		petrolReceived = nextPetrolReceived = Checkpoint.getResource(buffer);
+		waterReceived = nextWaterReceived = Checkpoint.getResource(buffer);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIntegrating#setIntegrator(edu.mit.isos.state.Integrator)
+	 */
+	@Override
+	public void setIntegrator(Integrator integrator) {
+		this.integrator = integrator;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#setIterate(double[], int)
+	 */
+	@Override
+	public void setIterate(double[] iterate, int offset) {
+		electReceived = setQuantity(electReceived, 
+				ResourceType.ELECTRICITY, iterate[offset]);
+		petrolReceived = setQuantity(petrolReceived, 
+				ResourceType.OIL, iterate[offset + 1]);
+		waterReceived = setQuantity(waterReceived, 
+				ResourceType.WATER, iterate[offset + 2]);
+	}
 }
\ No newline at end of file
@@ -15,21 +15,27 @@
  */
 package edu.mit.isos.app.water;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import edu.mit.isos.context.Location;
 import edu.mit.isos.element.DefaultElement;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.sim.SerialEntity;
 
 /**
  * Water controller element to set operational production and 
  * distribution quantities for other elements.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
-public class WaterController extends DefaultElement {
+public class WaterController extends DefaultElement implements SerialEntity {
+	private final List<ElementImpl> elements = new ArrayList<ElementImpl>();
+	
 	/**
 	 * Instantiates a new water controller with a 
 	 * {@link WaterControllerState} operational state.
@@ -41,5 +47,16 @@ public class WaterController extends DefaultElement {
 	public WaterController(String name, Location location, 
 			Collection<? extends ElementImpl> elements) {
 		super(name, location, new WaterControllerState(elements));
+		this.elements.addAll(elements);
+	}
+	
+	/**
+	 * Gets the controlled elements. The controller reads the states of 
+	 * and writes operational quantities into the controlled elements.
+	 *
+	 * @return the controlled elements
+	 */
+	public List<ElementImpl> getControlledElements() {
+		return Collections.unmodifiableList(elements);
 	}
 }
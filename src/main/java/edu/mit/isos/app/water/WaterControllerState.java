@@ -15,7 +15,9 @@
  */
 package edu.mit.isos.app.water;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -35,9 +37,10 @@ import org.apache.commons.math3.optim.linear.SimplexSolver;
 import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
 
 import edu.mit.isos.context.Resource;
-import edu.mit.isos.context.ResourceFactory;
+import edu.mit.isos.context.ResourceContext;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.state.Checkpointing;
 import edu.mit.isos.state.NullState;
 
 /**
@@ -50,8 +53,12 @@ import edu.mit.isos.state.NullState;
  * @version 0.1.0
  * @since 0.1.0
  */
-public class WaterControllerState extends NullState {
+public class WaterControllerState extends NullState implements Checkpointing {
 	private List<ElementImpl> elements = new ArrayList<ElementImpl>();
+	private ResourceContext resourceContext = ResourceContext.current();
+	private long duration;
+	private double[] demandRate, previousDemandRate, liftingRate;
+	private long demandDuration, previousDemandDuration;
 	
 	/**
 	 * Instantiates a new controller state.
@@ -60,6 +67,143 @@ public class WaterControllerState extends NullState {
 	 */
 	public WaterControllerState(Collection<? extends ElementImpl> elements) {
 		this.elements.addAll(elements);
+		demandRate = new double[this.elements.size()];
+		previousDemandRate = new double[this.elements.size()];
+		liftingRate = new double[this.elements.size()];
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void getCheckpoint(ByteBuffer buffer) {
+		buffer.putLong(duration).putLong(demandDuration)
+				.putLong(previousDemandDuration);
+		for(int i = 0; i < elements.size(); i++) {
+			buffer.putDouble(demandRate[i]).putDouble(previousDemandRate[i])
+					.putDouble(liftingRate[i]);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpointSize()
+	 */
+	@Override
+	public int getCheckpointSize() {
+		return 3*8 + 3*8*elements.size();
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#setCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void setCheckpoint(ByteBuffer buffer) {
+		duration = buffer.getLong();
+		demandDuration = buffer.getLong();
+		previousDemandDuration = buffer.getLong();
+		for(int i = 0; i < elements.size(); i++) {
+			demandRate[i] = buffer.getDouble();
+			previousDemandRate[i] = buffer.getDouble();
+			liftingRate[i] = buffer.getDouble();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.NullState#initialize(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public void initialize(ElementImpl element, long initialTime) {
+		super.initialize(element, initialTime);
+		resourceContext = ResourceContext.current();
+		duration = 0;
+		Arrays.fill(demandRate, 0);
+		Arrays.fill(previousDemandRate, 0);
+		Arrays.fill(liftingRate, 0);
+		demandDuration = previousDemandDuration = 0;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.NullState#getIntervalEndTime(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public long getIntervalEndTime(ElementImpl element, long time) {
+		// the optimal production and distribution is linear in demands only 
+		// while the same capacities bind
+		if(duration == 0) {
+			return time;
+		}
+		boolean capacitated = false;
+		for(ElementImpl e : elements) {
+			if(e instanceof WaterPlant && ((WaterPlant)e).isOperating()) {
+				if(!isAtCapacity(((WaterPlant)e).getOperatingState().produced, 
+						((WaterPlant)e).getOperatingState().productionCapacity)) {
+					return time;
+				}
+				capacitated = true;
+			}
+			if(e instanceof WaterPipeline) {
+				if(!isAtCapacity(((WaterPipeline)e).getOperatingState().output, 
+						((WaterPipeline)e).getOperatingState().outputCapacity)) {
+					return time;
+				}
+				capacitated = true;
+			}
+		}
+		if(!capacitated) {
+			return Long.MAX_VALUE;
+		}
+		if(previousDemandDuration == 0) {
+			return time;
+		}
+		// capacities remain at their limit while every system lifts aquifer 
+		// water; demands follow populations growing or decaying 
+		// exponentially, so demand which has not decreased continues to do 
+		// so and decreasing demand stays above the linear projection of its 
+		// last change
+		long endTime = Long.MAX_VALUE;
+		for(int i = 0; i < elements.size(); i++) {
+			if(elements.get(i) instanceof WaterElementImpl
+					&& demandRate[i] < previousDemandRate[i]) {
+				double slope = (demandRate[i] - previousDemandRate[i])
+						/((demandDuration + previousDemandDuration)/2d);
+				endTime = Math.min(endTime, time - demandDuration/2 
+						+ (long) Math.floor(-liftingRate[i]/slope));
+			}
+		}
+		return endTime;
+	}
+	
+	/**
+	 * Checks if a water quantity is at its capacity over the last duration.
+	 *
+	 * @param quantity the quantity
+	 * @param capacity the capacity per unit time
+	 * @return true, if the quantity is at capacity
+	 */
+	private boolean isAtCapacity(Resource quantity, Resource capacity) {
+		double limit = capacity.getQuantity(ResourceType.WATER)*duration;
+		return limit - quantity.getQuantity(ResourceType.WATER) 
+				<= resourceContext.getEpsilon()*Math.max(1, limit);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.NullState#tick(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public void tick(ElementImpl element, long duration) {
+		super.tick(element, duration);
+		for(int i = 0; i < elements.size(); i++) {
+			if(elements.get(i) instanceof WaterElementImpl) {
+				WaterElementImpl e = (WaterElementImpl) elements.get(i);
+				previousDemandRate[i] = demandRate[i];
+				demandRate[i] = ((WaterElementState)e.getState())
+						.getSent(e, duration).getQuantity(ResourceType.WATER)/duration;
+				liftingRate[i] = ((WaterElementState)e.getState())
+						.getProduced(e, duration).getQuantity(ResourceType.WATER)/duration;
+			}
+		}
+		previousDemandDuration = demandDuration;
+		demandDuration = duration;
 	}
 	
 	/* (non-Javadoc)
@@ -67,6 +211,7 @@ public class WaterControllerState extends NullState {
 	 */
 	@Override
 	public void iterateTick(ElementImpl element, long duration) {
+		this.duration = duration;
 		Set<WaterPlant> plants = new HashSet<WaterPlant>();
 		Set<WaterPipeline> pipelines = new HashSet<WaterPipeline>();
 		Set<WaterElementImpl> systems  = new HashSet<WaterElementImpl>();
@@ -140,15 +285,15 @@ public class WaterControllerState extends NullState {
 					new LinearObjectiveFunction(costCoefficients, 0d),
 					new InitialGuess(initialValues));
 			for(WaterElementImpl e : systems) {
-				e.getOperatingState().setProduced(e, ResourceFactory.create(ResourceType.WATER,
+				e.getOperatingState().setProduced(e, resourceContext.create(ResourceType.WATER,
 						output.getPoint()[elements.indexOf(e)]), duration);
 			}
 			for(WaterPlant e : plants) {
-				e.getOperatingState().setProduced(e, ResourceFactory.create(ResourceType.WATER,
+				e.getOperatingState().setProduced(e, resourceContext.create(ResourceType.WATER,
 						output.getPoint()[elements.indexOf(e)]), duration);
 			}
 			for(WaterPipeline e : pipelines) {
-				e.getOperatingState().setOutput(e, ResourceFactory.create(ResourceType.WATER,
+				e.getOperatingState().setOutput(e, resourceContext.create(ResourceType.WATER,
 						output.getPoint()[elements.indexOf(e)]), duration);
 			}
 		} catch(TooManyIterationsException ignore) { 
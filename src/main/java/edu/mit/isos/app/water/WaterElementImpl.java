@@ -19,6 +19,7 @@ import edu.mit.isos.app.ElectElement;
 import edu.mit.isos.app.SocialElement;
 import edu.mit.isos.app.WaterElement;
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.DefaultElement;
@@ -59,6 +60,17 @@ public class WaterElementImpl extends DefaultElement implements WaterElement {
 		return 0;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.app.WaterElement#getElectReceivedResource()
+	 */
+	@Override
+	public Resource getElectReceivedResource() {
+		if(getState() instanceof WaterElementState) {
+			return ((WaterElementState)getState()).getElectReceivedResource();
+		}
+		return ResourceFactory.create();
+	}
+	
 	/**
 	 * Gets the operating state.
 	 *
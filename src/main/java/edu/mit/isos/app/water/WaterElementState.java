@@ -15,19 +15,25 @@
  */
 package edu.mit.isos.app.water;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import edu.mit.isos.app.ElectElement;
 import edu.mit.isos.app.SocialElement;
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceMatrix;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.sim.Checkpoint;
+import edu.mit.isos.state.Checkpointing;
 import edu.mit.isos.state.DefaultState;
+import edu.mit.isos.state.IntervalUpdating;
 import edu.mit.isos.state.ResourceExchanging;
+import edu.mit.isos.state.ResourceIterating;
 
 /**
  * Operational state for a water system element. Produces water with aquifer lifting 
@@ -38,15 +44,17 @@ import edu.mit.isos.state.ResourceExchanging;
  * @version 0.1.0
  * @since 0.1.0
  */
-public class WaterElementState extends DefaultState implements ResourceExchanging {
+public class WaterElementState extends DefaultState implements Checkpointing, ResourceExchanging, ResourceIterating, IntervalUpdating {
 	private ResourceMatrix liftMatrix = new ResourceMatrix();
 	Resource produced = ResourceFactory.create();
 	Resource received = ResourceFactory.create();
 	
 	protected SocialElement socialCustomer = null;
 	protected ElectElement electSupplier = null;
-	private double electReceived, nextElectReceived;
-	private double waterSentSocial, nextWaterSentSocial;
+	private Resource electReceived = ResourceFactory.create(), 
+			nextElectReceived = ResourceFactory.create();
+	private Resource waterSentSocial = ResourceFactory.create(), 
+			nextWaterSentSocial = ResourceFactory.create();
 	
 	/**
 	 * Instantiates a new water element state.
@@ -85,6 +93,24 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void getCheckpoint(ByteBuffer buffer) {
+		Checkpoint.putResource(buffer, electReceived);
+		Checkpoint.putResource(buffer, waterSentSocial);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpointSize()
+	 */
+	@Override
+	public int getCheckpointSize() {
+		return Checkpoint.getResourceSize(electReceived) 
+				+ Checkpoint.getResourceSize(waterSentSocial);
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#getConsumed(edu.mit.isos.element.ElementImpl, long)
 	 */
@@ -99,30 +125,74 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 	 * @return the electricity received
 	 */
 	public double getElectReceived() {
+		return electReceived.getQuantity(ResourceType.ELECTRICITY);
+	}
+	
+	/**
+	 * Gets the electricity received as a resource.
+	 *
+	 * @return the electricity received
+	 */
+	public Resource getElectReceivedResource() {
 		return electReceived;
 	}
 	
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.state.DefaultState#getNetExchange(edu.mit.isos.element.ElementImpl, edu.mit.isos.element.Element, long)
+	 * @see edu.mit.isos.state.IntervalUpdating#getIntervalEndTime(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public long getIntervalEndTime(ElementImpl element, long time) {
+		// contents change linearly with flows settled for the interval
+		return Long.MAX_VALUE;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterate(double[], int)
+	 */
+	@Override
+	public void getIterate(double[] iterate, int offset) {
+		iterate[offset] = electReceived.getQuantity(ResourceType.ELECTRICITY);
+		iterate[offset + 1] = waterSentSocial.getQuantity(ResourceType.WATER);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#getIterateSize()
+	 */
+	@Override
+	public int getIterateSize() {
+		return 2;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#isIterateNonNegative(int)
 	 */
 	@Override
-	public Resource getNetExchange(ElementImpl element1, Element element2,
-			long duration) {
-		Resource netExchange = super.getNetExchange(element1, element2, duration);
-		netExchange = netExchange.add(getSentTo(element1, element2, duration))
-				.subtract(getReceivedFrom(element1, element2, duration));
+	public boolean isIterateNonNegative(int index) {
+		return false;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.DefaultState#getNetExchange(edu.mit.isos.element.ElementImpl, edu.mit.isos.element.Element, long, edu.mit.isos.context.MutableResource)
+	 */
+	@Override
+	public MutableResource getNetExchange(ElementImpl element1, Element element2,
+			long duration, MutableResource netExchange) {
+		super.getNetExchange(element1, element2, duration, netExchange);
+		netExchange.addInPlace(getSentTo(element1, element2, duration))
+				.subtractInPlace(getReceivedFrom(element1, element2, duration));
 		return netExchange;
 	}
 
 	/* (non-Javadoc)
-	 * @see edu.mit.isos.state.DefaultState#getNetFlow(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Location, long)
+	 * @see edu.mit.isos.state.DefaultState#getNetFlow(edu.mit.isos.element.ElementImpl, edu.mit.isos.context.Location, long, edu.mit.isos.context.MutableResource)
 	 */
 	@Override
-	public Resource getNetFlow(ElementImpl element, Location location, long duration) {
-		Resource netFlow = super.getNetFlow(element, location, duration);
+	public MutableResource getNetFlow(ElementImpl element, Location location, 
+			long duration, MutableResource netFlow) {
+		super.getNetFlow(element, location, duration, netFlow);
 		if(location.isStatic() && location.getOrigin().equals(element.getLocation().getOrigin())) {
-			netFlow = netFlow.subtract(getSent(element, duration))
-					.add(getReceived(element, duration));
+			netFlow.subtractInPlace(getSent(element, duration))
+					.addInPlace(getReceived(element, duration));
 		}
 		return netFlow;
 	}
@@ -148,7 +218,7 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 	 */
 	@Override
 	public Resource getReceivedFrom(ElementImpl element1, Element element2, long duration) {
-		Resource received = ResourceFactory.create();
+		Resource received = resourceContext.create();
 		if(element2 != null && element2.equals(electSupplier)) {
 			received = received.add(getReceived(element1, duration).get(ResourceType.ELECTRICITY));
 		}
@@ -168,7 +238,7 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 	 */
 	@Override
 	public Resource getSent(ElementImpl element, long duration) {
-		Resource sent = ResourceFactory.create();
+		Resource sent = resourceContext.create();
 		for(Element customer : Arrays.asList(socialCustomer)) {
 			sent = sent.add(getSentTo(element, customer, duration));
 		}
@@ -180,9 +250,9 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 	 */
 	@Override
 	public Resource getSentTo(ElementImpl element1, Element element2, long duration) {
-		Resource sent = ResourceFactory.create();
+		Resource sent = resourceContext.create();
 		if(element2 != null && element2.equals(socialCustomer)) {
-			sent = sent.add(ResourceFactory.create(ResourceType.WATER, waterSentSocial));
+			sent = sent.add(waterSentSocial);
 		}
 		return sent;
 	}
@@ -193,7 +263,7 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 	 * @return the water sent
 	 */
 	public double getWaterSentToSocial() {
-		return waterSentSocial;
+		return waterSentSocial.getQuantity(ResourceType.WATER);
 	}
 	
 	/* (non-Javadoc)
@@ -202,11 +272,12 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 	@Override
 	public void initialize(ElementImpl element, long initialTime) {
 		super.initialize(element, initialTime);
-		produced = ResourceFactory.create();
-		received = ResourceFactory.create();
+		produced = resourceContext.create();
+		received = resourceContext.create();
 		socialCustomer = null;
 		electSupplier = null;
-		electReceived = nextElectReceived = 0;
+		electReceived = nextElectReceived = resourceContext.create();
+		waterSentSocial = nextWaterSentSocial = resourceContext.create();
 	}
 	
 	/* (non-Javadoc)
@@ -216,8 +287,9 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 	public void iterateTick(ElementImpl element, long duration) {
 		super.iterateTick(element, duration);
 		nextElectReceived = getReceived(element, duration)
-				.getQuantity(ResourceType.ELECTRICITY);
-		nextWaterSentSocial = socialCustomer==null?0:socialCustomer.getWaterReceived();
+				.get(ResourceType.ELECTRICITY);
+		nextWaterSentSocial = socialCustomer==null?resourceContext.create():
+			socialCustomer.getWaterReceivedResource();
 	}
 	
 	/* (non-Javadoc)
@@ -230,6 +302,26 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 		waterSentSocial = nextWaterSentSocial;
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#setCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void setCheckpoint(ByteBuffer buffer) {
+		electReceived = nextElectReceived = Checkpoint.getResource(buffer);
+		waterSentSocial = nextWaterSentSocial = Checkpoint.getResource(buffer);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.ResourceIterating#setIterate(double[], int)
+	 */
+	@Override
+	public void setIterate(double[] iterate, int offset) {
+		electReceived = setQuantity(electReceived, 
+				ResourceType.ELECTRICITY, iterate[offset]);
+		waterSentSocial = setQuantity(waterSentSocial, 
+				ResourceType.WATER, iterate[offset + 1]);
+	}
+	
 	/**
 	 * Method for the controller to set water production.
 	 *
@@ -264,10 +356,10 @@ public class WaterElementState extends DefaultState implements ResourceExchangin
 		super.tick(element, duration);
 		for(Element customer : Arrays.asList(socialCustomer)) {
 			exchange(element, customer, getSentTo(element, customer, duration), 
-					ResourceFactory.create());
+					resourceContext.create());
 		}
 		for(Element supplier : Arrays.asList(electSupplier)) {
-			exchange(element, supplier, ResourceFactory.create(), 
+			exchange(element, supplier, resourceContext.create(), 
 					getReceivedFrom(element, supplier, duration));
 		}
 	}
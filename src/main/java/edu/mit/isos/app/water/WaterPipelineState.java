@@ -1,11 +1,16 @@
 package edu.mit.isos.app.water;
 
+import java.nio.ByteBuffer;
+
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceMatrix;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.sim.Checkpoint;
+import edu.mit.isos.state.Checkpointing;
 import edu.mit.isos.state.DefaultState;
+import edu.mit.isos.state.IntervalUpdating;
 
 /**
  * Operational state for a water pipeline element. Consumes electricity to 
@@ -13,10 +18,10 @@ import edu.mit.isos.state.DefaultState;
  * Desired water output must be set by a controller.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
-public class WaterPipelineState extends DefaultState {
+public class WaterPipelineState extends DefaultState implements Checkpointing, IntervalUpdating {
 	protected Resource outputCapacity;
 	protected double eta = 1;
 	protected ResourceMatrix tpMatrix = new ResourceMatrix();
@@ -39,6 +44,22 @@ public class WaterPipelineState extends DefaultState {
 				ResourceFactory.create(ResourceType.ELECTRICITY, pumpElect));
 	}
 
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void getCheckpoint(ByteBuffer buffer) {
+		Checkpoint.putResource(buffer, output);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpointSize()
+	 */
+	@Override
+	public int getCheckpointSize() {
+		return Checkpoint.getResourceSize(output);
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#getConsumed(edu.mit.isos.element.ElementImpl, long)
 	 */
@@ -56,6 +77,15 @@ public class WaterPipelineState extends DefaultState {
 				.add(tpMatrix.multiply(getOutput(element, duration)));
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.IntervalUpdating#getIntervalEndTime(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public long getIntervalEndTime(ElementImpl element, long time) {
+		// no contents change; flows are settled for the interval
+		return Long.MAX_VALUE;
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#getOutput(edu.mit.isos.element.ElementImpl, long)
 	 */
@@ -73,6 +103,14 @@ public class WaterPipelineState extends DefaultState {
 		output = initialOutput;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#setCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void setCheckpoint(ByteBuffer buffer) {
+		output = Checkpoint.getResource(buffer);
+	}
+	
 	/**
 	 * Method for the controller to set the water output.
 	 *
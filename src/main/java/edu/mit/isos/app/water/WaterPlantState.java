@@ -1,11 +1,16 @@
 package edu.mit.isos.app.water;
 
+import java.nio.ByteBuffer;
+
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.context.ResourceMatrix;
 import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.sim.Checkpoint;
+import edu.mit.isos.state.Checkpointing;
 import edu.mit.isos.state.DefaultState;
+import edu.mit.isos.state.IntervalUpdating;
 
 /**
  * Operational state for a water pipeline element. Consumes electricity to 
@@ -13,10 +18,10 @@ import edu.mit.isos.state.DefaultState;
  * Desired water production must be set by a controller.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
-public class WaterPlantState extends DefaultState {
+public class WaterPlantState extends DefaultState implements Checkpointing, IntervalUpdating {
 	protected Resource productionCapacity;
 	protected ResourceMatrix tfMatrix = new ResourceMatrix();
 	protected Resource produced = ResourceFactory.create();
@@ -36,6 +41,22 @@ public class WaterPlantState extends DefaultState {
 				ResourceFactory.create(ResourceType.ELECTRICITY, desalElect));
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void getCheckpoint(ByteBuffer buffer) {
+		Checkpoint.putResource(buffer, produced);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#getCheckpointSize()
+	 */
+	@Override
+	public int getCheckpointSize() {
+		return Checkpoint.getResourceSize(produced);
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#getConsumed(edu.mit.isos.element.ElementImpl, long)
 	 */
@@ -44,6 +65,15 @@ public class WaterPlantState extends DefaultState {
 		return tfMatrix.multiply(getProduced(element, duration));
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.IntervalUpdating#getIntervalEndTime(edu.mit.isos.element.ElementImpl, long)
+	 */
+	@Override
+	public long getIntervalEndTime(ElementImpl element, long time) {
+		// no contents change; flows are settled for the interval
+		return Long.MAX_VALUE;
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.state.DefaultState#getProduced(edu.mit.isos.element.ElementImpl, long)
 	 */
@@ -61,6 +91,14 @@ public class WaterPlantState extends DefaultState {
 		produced = initialProduced;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.state.Checkpointing#setCheckpoint(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void setCheckpoint(ByteBuffer buffer) {
+		produced = Checkpoint.getResource(buffer);
+	}
+	
 	/**
 	 * Method for the controller to set water production.
 	 *
@@ -27,14 +27,18 @@ import java.math.MathContext;
  * @since 0.1.0
  */
 public class BigDecimalArrayResource extends DefaultResource implements Resource {
-	private static final BigDecimal epsilon = new BigDecimal("1e-12");
-	private static final MathContext context = MathContext.DECIMAL32;
+	private final ResourceContext context;
+	private final MathContext mathContext;
 	private final BigDecimal[] amount = new BigDecimal[ResourceType.values().length];
 	
 	/**
 	 * Instantiates a new empty big decimal array resource.
+	 *
+	 * @param context the resource context
 	 */
-	protected BigDecimalArrayResource() {
+	protected BigDecimalArrayResource(ResourceContext context) {
+		this.context = context;
+		this.mathContext = context.getMathContext();
 		for(int i = 0; i < amount.length; i++) {
 			amount[i] = BigDecimal.ZERO;
 		}
@@ -44,11 +48,13 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 	 * Instantiates a new big decimal array resource
 	 * with a specified amount of a resource type.
 	 *
+	 * @param context the resource context
 	 * @param type the type
 	 * @param amount the amount
 	 */
-	private BigDecimalArrayResource(ResourceType type, BigDecimal amount) {
-		this();
+	BigDecimalArrayResource(ResourceContext context, 
+			ResourceType type, BigDecimal amount) {
+		this(context);
 		this.amount[type.ordinal()] = amount;
 	}
 	
@@ -56,35 +62,54 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 	 * Instantiates a new big decimal array resource 
 	 * with a specified amount of a resource type.
 	 *
+	 * @param context the resource context
 	 * @param type the type
 	 * @param amount the amount
 	 */
-	protected BigDecimalArrayResource(ResourceType type, String amount) {
-		this(type, new BigDecimal(amount, context));
+	protected BigDecimalArrayResource(ResourceContext context, 
+			ResourceType type, String amount) {
+		this(context, type, new BigDecimal(amount, context.getMathContext()));
 	}
 	
 	/**
 	 * Instantiates a new big decimal array resource 
 	 * with specified resource amounts.
 	 *
+	 * @param context the resource context
 	 * @param amounts the amounts
 	 */
-	protected BigDecimalArrayResource(String[] amounts) {
-		this();
+	protected BigDecimalArrayResource(ResourceContext context, String[] amounts) {
+		this(context);
 		if(amounts.length != amount.length) {
 			throw new IllegalArgumentException("Not enough amounts. Expected " 
 					+ amount.length + ", received " + amounts.length + ".");
 		}
 		for(ResourceType t : ResourceType.values()) {
-			amount[t.ordinal()] = new BigDecimal(amounts[t.ordinal()], context);
+			amount[t.ordinal()] = new BigDecimal(amounts[t.ordinal()], mathContext);
+		}
+	}
+	
+	/**
+	 * Instantiates a new big decimal array resource 
+	 * with specified decimal amounts.
+	 *
+	 * @param context the resource context
+	 * @param amounts the amounts
+	 */
+	BigDecimalArrayResource(ResourceContext context, BigDecimal[] amounts) {
+		this(context);
+		if(amounts.length != amount.length) {
+			throw new IllegalArgumentException("Not enough amounts. Expected " 
+					+ amount.length + ", received " + amounts.length + ".");
 		}
+		System.arraycopy(amounts, 0, amount, 0, amount.length);
 	}
 	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.context.Resource#absoluteValue()
 	 */
 	public final Resource absoluteValue() {
-		BigDecimalArrayResource newResource = new BigDecimalArrayResource();
+		BigDecimalArrayResource newResource = new BigDecimalArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
 			newResource.amount[t.ordinal()] = amount[t.ordinal()].abs();
 		}
@@ -95,10 +120,10 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 	 * @see edu.mit.isos.context.Resource#add(edu.mit.isos.context.Resource)
 	 */
 	public BigDecimalArrayResource add(Resource resource) {
-		BigDecimalArrayResource newResource = new BigDecimalArrayResource();
+		BigDecimalArrayResource newResource = new BigDecimalArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
 			newResource.amount[t.ordinal()] = this.amount[t.ordinal()].add(
-					new BigDecimal(resource.getQuantity(t)), context);
+					new BigDecimal(resource.getQuantity(t)), mathContext);
 		}
 		return newResource;
 	}
@@ -107,7 +132,7 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 	 * @see edu.mit.isos.context.Resource#copy()
 	 */
 	public BigDecimalArrayResource copy() {
-		BigDecimalArrayResource newResource = new BigDecimalArrayResource();
+		BigDecimalArrayResource newResource = new BigDecimalArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
 			newResource.amount[t.ordinal()] = this.amount[t.ordinal()];
 		}
@@ -118,7 +143,7 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 	 * @see edu.mit.isos.context.Resource#get(edu.mit.isos.context.ResourceType)
 	 */
 	public BigDecimalArrayResource get(ResourceType type) {
-		return new BigDecimalArrayResource(type, amount[type.ordinal()]);
+		return new BigDecimalArrayResource(context, type, amount[type.ordinal()]);
 	}
 	
 	/* (non-Javadoc)
@@ -129,13 +154,23 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 		return amount[type.ordinal()].doubleValue();
 	}
 	
+	/**
+	 * Gets the decimal amount of a resource type.
+	 *
+	 * @param type the type
+	 * @return the amount
+	 */
+	BigDecimal getDecimal(ResourceType type) {
+		return amount[type.ordinal()];
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.context.Resource#isZero()
 	 */
 	@Override
 	public boolean isZero() {
 		for(ResourceType t : ResourceType.values()) {
-			if(amount[t.ordinal()].abs().compareTo(epsilon) > 0) {
+			if(amount[t.ordinal()].abs().compareTo(context.getDecimalEpsilon()) > 0) {
 				return false;
 			}
 		}
@@ -146,10 +181,10 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 	 * @see edu.mit.isos.context.Resource#multiply(double)
 	 */
 	public BigDecimalArrayResource multiply(double scalar) {
-		BigDecimalArrayResource newResource = new BigDecimalArrayResource();
+		BigDecimalArrayResource newResource = new BigDecimalArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
 			newResource.amount[t.ordinal()] = this.amount[t.ordinal()].multiply(
-					new BigDecimal(scalar, context), context);
+					new BigDecimal(scalar, mathContext), mathContext);
 		}
 		return newResource;
 	}
@@ -161,7 +196,7 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 		BigDecimalArrayResource newResource = copy();
 		for(ResourceType t : ResourceType.values()) {
 			newResource.amount[t.ordinal()] = this.amount[t.ordinal()].multiply(
-					new BigDecimal(resource.getQuantity(t)), context);
+					new BigDecimal(resource.getQuantity(t)), mathContext);
 		}
 		return newResource;
 	}
@@ -170,7 +205,7 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 	 * @see edu.mit.isos.context.Resource#negate()
 	 */
 	public BigDecimalArrayResource negate() {
-		BigDecimalArrayResource newResource = new BigDecimalArrayResource();
+		BigDecimalArrayResource newResource = new BigDecimalArrayResource(context);
 		for(ResourceType type : ResourceType.values()) {
 			newResource.amount[type.ordinal()] = this.amount[type.ordinal()].negate();
 		}
@@ -181,11 +216,14 @@ public class BigDecimalArrayResource extends DefaultResource implements Resource
 	 * @see edu.mit.isos.context.Resource#safeDivide(edu.mit.isos.context.Resource)
 	 */
 	public final Resource safeDivide(Resource resource) {
-		BigDecimalArrayResource newResource = new BigDecimalArrayResource();
+		BigDecimalArrayResource newResource = new BigDecimalArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
-			if(new BigDecimal(resource.getQuantity(t)).abs().compareTo(epsilon)>0) {
+			if(new BigDecimal(resource.getQuantity(t)).abs().compareTo(context.getDecimalEpsilon())>0) {
+				// quotients need not terminate, so unlimited precision rounds
 				newResource.amount[t.ordinal()] = amount[t.ordinal()]
-						.divide(new BigDecimal(resource.getQuantity(t), context));
+						.divide(new BigDecimal(resource.getQuantity(t), mathContext), 
+								mathContext.getPrecision() == 0 
+								? MathContext.DECIMAL128 : mathContext);
 			}
 		}
 		return newResource;
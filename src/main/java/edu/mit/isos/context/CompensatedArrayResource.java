@@ -0,0 +1,329 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+/**
+ * Immutable implementation of the {@link Resource} interface backed by
+ * arrays of primitive {@link double} values which carry a round-off error
+ * term per resource type. Addition and subtraction use Kahan-Babuska
+ * (Neumaier) compensated summation so long sequences of operations remain
+ * balanced to near double precision.
+ * <p>
+ * The error term only survives operations between resources, e.g. element 
+ * contents accumulated over many time steps. Reading a quantity with 
+ * {@link #getQuantity(ResourceType)} rounds it to a single double, so 
+ * quantities that states keep in primitive fields, exchange between 
+ * elements or publish through an ambassador are not compensated and 
+ * exchange or flow checks on them are subject to ordinary round-off.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class CompensatedArrayResource extends DefaultResource implements Resource {
+	private final ResourceContext context;
+	private final double[] amount = new double[ResourceType.values().length];
+	private final double[] error = new double[ResourceType.values().length];
+	
+	/**
+	 * Instantiates a new empty compensated array resource.
+	 *
+	 * @param context the resource context
+	 */
+	protected CompensatedArrayResource(ResourceContext context) {
+		this.context = context;
+	}
+	
+	/**
+	 * Instantiates a new compensated array resource
+	 * with a specified amount of a resource type.
+	 *
+	 * @param context the resource context
+	 * @param type the type
+	 * @param amount the amount
+	 */
+	protected CompensatedArrayResource(ResourceContext context, 
+			ResourceType type, double amount) {
+		this(context);
+		this.amount[type.ordinal()] = amount;
+	}
+	
+	/**
+	 * Instantiates a new compensated array resource
+	 * with a specified amount of a resource type.
+	 *
+	 * @param context the resource context
+	 * @param type the type
+	 * @param amount the amount
+	 */
+	protected CompensatedArrayResource(ResourceContext context, 
+			ResourceType type, String amount) {
+		this(context, type, Double.parseDouble(amount));
+	}
+	
+	/**
+	 * Instantiates a new compensated array resource by copying amounts.
+	 *
+	 * @param context the resource context
+	 * @param amounts the amounts
+	 */
+	protected CompensatedArrayResource(ResourceContext context, double[] amounts) {
+		this(context);
+		if(amounts.length != amount.length) {
+			throw new IllegalArgumentException("Not enough amounts. Expected "
+					+ amount.length + ", received " + amounts.length + ".");
+		}
+		System.arraycopy(amounts, 0, amount, 0, amount.length);
+	}
+	
+	/**
+	 * Instantiates a new compensated array resource.
+	 *
+	 * @param context the resource context
+	 * @param amounts the amounts
+	 */
+	protected CompensatedArrayResource(ResourceContext context, String[] amounts) {
+		this(context);
+		if(amounts.length != amount.length) {
+			throw new IllegalArgumentException("Not enough amounts. Expected "
+					+ amount.length + ", received " + amounts.length + ".");
+		}
+		for(ResourceType t : ResourceType.values()) {
+			amount[t.ordinal()] = Double.parseDouble(amounts[t.ordinal()]);
+		}
+	}
+	
+	/**
+	 * Instantiates a new compensated array resource 
+	 * with specified amounts and round-off errors.
+	 *
+	 * @param context the resource context
+	 * @param amounts the amounts
+	 * @param errors the round-off errors
+	 */
+	CompensatedArrayResource(ResourceContext context, 
+			double[] amounts, double[] errors) {
+		this(context, amounts);
+		if(errors.length != error.length) {
+			throw new IllegalArgumentException("Not enough errors. Expected "
+					+ error.length + ", received " + errors.length + ".");
+		}
+		System.arraycopy(errors, 0, error, 0, error.length);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#absoluteValue()
+	 */
+	public final Resource absoluteValue() {
+		CompensatedArrayResource newResource = new CompensatedArrayResource(context);
+		for(int i = 0; i < amount.length; i++) {
+			double sign = amount[i] + error[i] < 0 ? -1 : 1;
+			newResource.amount[i] = sign*amount[i];
+			newResource.error[i] = sign*error[i];
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#add(edu.mit.isos.context.Resource)
+	 */
+	public CompensatedArrayResource add(Resource resource) {
+		return combine(resource, 1);
+	}
+	
+	/**
+	 * Adds a signed resource using compensated summation.
+	 *
+	 * @param resource the resource
+	 * @param sign the sign of the resource (1 to add, -1 to subtract)
+	 * @return the sum
+	 */
+	private CompensatedArrayResource combine(Resource resource, double sign) {
+		if(resource == ZERO) {
+			return this;
+		}
+		CompensatedArrayResource newResource = new CompensatedArrayResource(context);
+		if(resource instanceof CompensatedArrayResource) {
+			CompensatedArrayResource other = (CompensatedArrayResource) resource;
+			for(int i = 0; i < amount.length; i++) {
+				sum(newResource, i, amount[i], sign*other.amount[i],
+						error[i] + sign*other.error[i]);
+			}
+		} else {
+			for(ResourceType t : ResourceType.values()) {
+				int i = t.ordinal();
+				sum(newResource, i, amount[i], sign*resource.getQuantity(t), error[i]);
+			}
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#copy()
+	 */
+	public CompensatedArrayResource copy() {
+		CompensatedArrayResource newResource = new CompensatedArrayResource(context);
+		System.arraycopy(amount, 0, newResource.amount, 0, amount.length);
+		System.arraycopy(error, 0, newResource.error, 0, error.length);
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#get(edu.mit.isos.context.ResourceType)
+	 */
+	public CompensatedArrayResource get(ResourceType type) {
+		CompensatedArrayResource newResource = new CompensatedArrayResource(context);
+		newResource.amount[type.ordinal()] = amount[type.ordinal()];
+		newResource.error[type.ordinal()] = error[type.ordinal()];
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#getQuantity(edu.mit.isos.context.ResourceType)
+	 */
+	@Override
+	public double getQuantity(ResourceType type) {
+		return amount[type.ordinal()] + error[type.ordinal()];
+	}
+	
+	/**
+	 * Gets the amount of a resource type without its round-off error.
+	 *
+	 * @param type the type
+	 * @return the amount
+	 */
+	double getAmount(ResourceType type) {
+		return amount[type.ordinal()];
+	}
+	
+	/**
+	 * Gets the round-off error of a resource type.
+	 *
+	 * @param type the type
+	 * @return the error
+	 */
+	double getError(ResourceType type) {
+		return error[type.ordinal()];
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#isZero()
+	 */
+	@Override
+	public boolean isZero() {
+		for(int i = 0; i < amount.length; i++) {
+			if(Math.abs(amount[i] + error[i]) > context.getEpsilon()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#multiply(double)
+	 */
+	public CompensatedArrayResource multiply(double scalar) {
+		if(scalar == 1) {
+			return this;
+		}
+		CompensatedArrayResource newResource = new CompensatedArrayResource(context);
+		for(int i = 0; i < amount.length; i++) {
+			newResource.amount[i] = amount[i] * scalar;
+			newResource.error[i] = error[i] * scalar;
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#multiply(edu.mit.isos.context.Resource)
+	 */
+	public CompensatedArrayResource multiply(Resource resource) {
+		CompensatedArrayResource newResource = new CompensatedArrayResource(context);
+		for(ResourceType t : ResourceType.values()) {
+			double quantity = resource.getQuantity(t);
+			newResource.amount[t.ordinal()] = amount[t.ordinal()] * quantity;
+			newResource.error[t.ordinal()] = error[t.ordinal()] * quantity;
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#negate()
+	 */
+	public CompensatedArrayResource negate() {
+		CompensatedArrayResource newResource = new CompensatedArrayResource(context);
+		for(int i = 0; i < amount.length; i++) {
+			newResource.amount[i] = -amount[i];
+			newResource.error[i] = -error[i];
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#safeDivide(edu.mit.isos.context.Resource)
+	 */
+	public final Resource safeDivide(Resource resource) {
+		CompensatedArrayResource newResource = new CompensatedArrayResource(context);
+		for(ResourceType t : ResourceType.values()) {
+			if(Math.abs(resource.getQuantity(t)) > context.getEpsilon()) {
+				newResource.amount[t.ordinal()] = getQuantity(t) / resource.getQuantity(t);
+			}
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.DefaultResource#subtract(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public CompensatedArrayResource subtract(Resource resource) {
+		return combine(resource, -1);
+	}
+	
+	/**
+	 * Sets one lane of a resource to a compensated sum.
+	 *
+	 * @param resource the resource to set
+	 * @param i the lane index
+	 * @param a the first summand
+	 * @param b the second summand
+	 * @param error the accumulated error of both summands
+	 */
+	private static void sum(CompensatedArrayResource resource, int i,
+			double a, double b, double error) {
+		double sum = a + b;
+		if(Math.abs(a) >= Math.abs(b)) {
+			error += (a - sum) + b;
+		} else {
+			error += (b - sum) + a;
+		}
+		resource.amount[i] = sum;
+		resource.error[i] = error;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#swap(edu.mit.isos.context.ResourceType, edu.mit.isos.context.ResourceType)
+	 */
+	public CompensatedArrayResource swap(ResourceType oldType, ResourceType newType) {
+		CompensatedArrayResource newResource = copy();
+		int o = oldType.ordinal(), n = newType.ordinal();
+		newResource.amount[o] = amount[n];
+		newResource.error[o] = error[n];
+		newResource.amount[n] = amount[o];
+		newResource.error[n] = error[o];
+		return newResource;
+	}
+}
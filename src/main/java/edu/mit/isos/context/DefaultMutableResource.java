@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+/**
+ * Default implementation of the {@link MutableResource} interface which
+ * wraps an immutable {@link Resource}. Arithmetic operations delegate to
+ * the wrapped resource to preserve its number format (e.g. for
+ * {@link BigDecimalArrayResource}) at the cost of object allocation.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class DefaultMutableResource implements MutableResource {
+	private final Resource zero;
+	private Resource resource;
+	
+	/**
+	 * Instantiates a new default mutable resource.
+	 *
+	 * @param zero the empty resource of the wrapped implementation
+	 */
+	protected DefaultMutableResource(Resource zero) {
+		this.zero = zero;
+		this.resource = zero;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#addInPlace(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public DefaultMutableResource addInPlace(Resource resource) {
+		this.resource = this.resource.add(resource);
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#addInPlace(edu.mit.isos.context.ResourceType, double)
+	 */
+	@Override
+	public DefaultMutableResource addInPlace(ResourceType type, double amount) {
+		this.resource = this.resource.add(ResourceFactory.create(type, amount));
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#clear()
+	 */
+	@Override
+	public DefaultMutableResource clear() {
+		this.resource = zero;
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#fma(edu.mit.isos.context.Resource, double)
+	 */
+	@Override
+	public DefaultMutableResource fma(Resource resource, double scalar) {
+		this.resource = this.resource.add(resource.multiply(scalar));
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#freeze()
+	 */
+	@Override
+	public Resource freeze() {
+		return resource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#getQuantity(edu.mit.isos.context.ResourceType)
+	 */
+	@Override
+	public double getQuantity(ResourceType type) {
+		return resource.getQuantity(type);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#isZero()
+	 */
+	@Override
+	public boolean isZero() {
+		return resource.isZero();
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#multiplyInPlace(double)
+	 */
+	@Override
+	public DefaultMutableResource multiplyInPlace(double scalar) {
+		this.resource = this.resource.multiply(scalar);
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#subtractInPlace(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public DefaultMutableResource subtractInPlace(Resource resource) {
+		this.resource = this.resource.subtract(resource);
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return resource.toString();
+	}
+}
@@ -44,7 +44,7 @@ public abstract class DefaultResource implements Resource {
 	 * @see edu.mit.isos.context.Resource#subtract(edu.mit.isos.context.Resource)
 	 */
 	@Override
-	public final Resource subtract(Resource resource) {
+	public Resource subtract(Resource resource) {
 		return add(resource.negate());
 	}
 
@@ -83,14 +83,14 @@ public abstract class DefaultResource implements Resource {
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.context.Resource#truncateNegative()
 	 */
-	public final Resource truncateNegative() {
+	public Resource truncateNegative() {
 		return truncate(-1);
 	}
 	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.context.Resource#truncatePositive()
 	 */
-	public final Resource truncatePositive() {
+	public Resource truncatePositive() {
 		return truncate(1);
 	}
 }
@@ -24,13 +24,16 @@ package edu.mit.isos.context;
  * @since 0.1.0
  */
 public class DoubleArrayResource extends DefaultResource implements Resource {
-	private static final double epsilon = 1e-12;
-	private final double[] amount = new double[ResourceType.values().length];
+	private final ResourceContext context;
+	final double[] amount = new double[ResourceType.values().length];
 	
 	/**
 	 * Instantiates a new empty double array resource.
+	 *
+	 * @param context the resource context
 	 */
-	protected DoubleArrayResource() {
+	protected DoubleArrayResource(ResourceContext context) {
+		this.context = context;
 		for(int i = 0; i < amount.length; i++) {
 			amount[i] = 0;
 		}
@@ -40,11 +43,13 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * Instantiates a new double array resource
 	 * with a specified amount of a resource type.
 	 *
+	 * @param context the resource context
 	 * @param type the type
 	 * @param amount the amount
 	 */
-	private DoubleArrayResource(ResourceType type, double amount) {
-		this();
+	protected DoubleArrayResource(ResourceContext context, 
+			ResourceType type, double amount) {
+		this(context);
 		this.amount[type.ordinal()] = amount;
 	}
 	
@@ -52,20 +57,38 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * Instantiates a new double array resource
 	 * with a specified amount of a resource type.
 	 *
+	 * @param context the resource context
 	 * @param type the type
 	 * @param amount the amount
 	 */
-	protected DoubleArrayResource(ResourceType type, String amount) {
-		this(type, Double.parseDouble(amount));
+	protected DoubleArrayResource(ResourceContext context, 
+			ResourceType type, String amount) {
+		this(context, type, Double.parseDouble(amount));
 	}
 	
+	/**
+	 * Instantiates a new double array resource by copying amounts.
+	 *
+	 * @param context the resource context
+	 * @param amounts the amounts
+	 */
+	protected DoubleArrayResource(ResourceContext context, double[] amounts) {
+		this.context = context;
+		if(amounts.length != amount.length) {
+			throw new IllegalArgumentException("Not enough amounts. Expected "
+					+ amount.length + ", received " + amounts.length + ".");
+		}
+		System.arraycopy(amounts, 0, amount, 0, amount.length);
+	}
+
 	/**
 	 * Instantiates a new double array resource.
 	 *
+	 * @param context the resource context
 	 * @param amounts the amounts
 	 */
-	protected DoubleArrayResource(String[] amounts) {
-		this();
+	protected DoubleArrayResource(ResourceContext context, String[] amounts) {
+		this(context);
 		if(amounts.length != amount.length) {
 			throw new IllegalArgumentException("Not enough amounts. Expected " 
 					+ amount.length + ", received " + amounts.length + ".");
@@ -79,7 +102,7 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * @see edu.mit.isos.context.Resource#absoluteValue()
 	 */
 	public final Resource absoluteValue() {
-		DoubleArrayResource newResource = new DoubleArrayResource();
+		DoubleArrayResource newResource = new DoubleArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
 			newResource.amount[t.ordinal()] = Math.abs(amount[t.ordinal()]);
 		}
@@ -90,10 +113,20 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * @see edu.mit.isos.context.Resource#add(edu.mit.isos.context.Resource)
 	 */
 	public DoubleArrayResource add(Resource resource) {
-		DoubleArrayResource newResource = new DoubleArrayResource();
-		for(ResourceType t : ResourceType.values()) {
-			newResource.amount[t.ordinal()] = this.amount[t.ordinal()] 
-					+ resource.getQuantity(t);
+		if(resource == ZERO) {
+			return this;
+		}
+		DoubleArrayResource newResource = new DoubleArrayResource(context);
+		if(resource instanceof DoubleArrayResource) {
+			double[] other = ((DoubleArrayResource) resource).amount;
+			for(int i = 0; i < amount.length; i++) {
+				newResource.amount[i] = this.amount[i] + other[i];
+			}
+		} else {
+			for(ResourceType t : ResourceType.values()) {
+				newResource.amount[t.ordinal()] = this.amount[t.ordinal()] 
+						+ resource.getQuantity(t);
+			}
 		}
 		return newResource;
 	}
@@ -102,7 +135,7 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * @see edu.mit.isos.context.Resource#copy()
 	 */
 	public DoubleArrayResource copy() {
-		DoubleArrayResource newResource = new DoubleArrayResource();
+		DoubleArrayResource newResource = new DoubleArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
 			newResource.amount[t.ordinal()] = this.amount[t.ordinal()];
 		}
@@ -113,7 +146,7 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * @see edu.mit.isos.context.Resource#get(edu.mit.isos.context.ResourceType)
 	 */
 	public DoubleArrayResource get(ResourceType type) {
-		return new DoubleArrayResource(type, amount[type.ordinal()]);
+		return new DoubleArrayResource(context, type, amount[type.ordinal()]);
 	}
 	
 	/* (non-Javadoc)
@@ -130,7 +163,7 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	@Override
 	public boolean isZero() {
 		for(ResourceType t : ResourceType.values()) {
-			if(Math.abs(amount[t.ordinal()]) > epsilon) {
+			if(Math.abs(amount[t.ordinal()]) > context.getEpsilon()) {
 				return false;
 			}
 		}
@@ -141,7 +174,10 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * @see edu.mit.isos.context.Resource#multiply(double)
 	 */
 	public DoubleArrayResource multiply(double scalar) {
-		DoubleArrayResource newResource = new DoubleArrayResource();
+		if(scalar == 1) {
+			return this;
+		}
+		DoubleArrayResource newResource = new DoubleArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
 			newResource.amount[t.ordinal()] = this.amount[t.ordinal()] * scalar;
 		}
@@ -164,7 +200,7 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * @see edu.mit.isos.context.Resource#negate()
 	 */
 	public DoubleArrayResource negate() {
-		DoubleArrayResource newResource = new DoubleArrayResource();
+		DoubleArrayResource newResource = new DoubleArrayResource(context);
 		for(ResourceType type : ResourceType.values()) {
 			newResource.amount[type.ordinal()] = -this.amount[type.ordinal()];
 		}
@@ -175,15 +211,38 @@ public class DoubleArrayResource extends DefaultResource implements Resource {
 	 * @see edu.mit.isos.context.Resource#safeDivide(edu.mit.isos.context.Resource)
 	 */
 	public final Resource safeDivide(Resource resource) {
-		DoubleArrayResource newResource = new DoubleArrayResource();
+		DoubleArrayResource newResource = new DoubleArrayResource(context);
 		for(ResourceType t : ResourceType.values()) {
-			if(Math.abs(resource.getQuantity(t)) > epsilon) {
+			if(Math.abs(resource.getQuantity(t)) > context.getEpsilon()) {
 				newResource.amount[t.ordinal()] = amount[t.ordinal()] / resource.getQuantity(t);
 			}
 		}
 		return newResource;
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.DefaultResource#subtract(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public DoubleArrayResource subtract(Resource resource) {
+		if(resource == ZERO) {
+			return this;
+		}
+		DoubleArrayResource newResource = new DoubleArrayResource(context);
+		if(resource instanceof DoubleArrayResource) {
+			double[] other = ((DoubleArrayResource) resource).amount;
+			for(int i = 0; i < amount.length; i++) {
+				newResource.amount[i] = this.amount[i] - other[i];
+			}
+		} else {
+			for(ResourceType t : ResourceType.values()) {
+				newResource.amount[t.ordinal()] = this.amount[t.ordinal()] 
+						- resource.getQuantity(t);
+			}
+		}
+		return newResource;
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.context.Resource#swap(edu.mit.isos.context.ResourceType, edu.mit.isos.context.ResourceType)
 	 */
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable implementation of the {@link Resource} interface backed by an
+ * array of primitive {@link long} values scaled by a fixed number of decimal
+ * places. Addition, subtraction, and negation are exact and throw an 
+ * {@link ArithmeticException} on overflow; only multiplication and 
+ * division round to the nearest scaled unit. Comparison with zero is 
+ * exact unless the creating context has a non-zero tolerance.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class FixedPointArrayResource extends DefaultResource implements Resource {
+	private static final double maxScaled = 0x1p63;
+	private final ResourceContext context;
+	private final int scale;
+	private final long unit;
+	private final long[] amount = new long[ResourceType.values().length];
+	
+	/**
+	 * Instantiates a new empty fixed point array resource.
+	 *
+	 * @param context the resource context
+	 * @param scale the number of decimal places
+	 */
+	protected FixedPointArrayResource(ResourceContext context, int scale) {
+		if(scale < 0 || scale > 18) {
+			throw new IllegalArgumentException(
+					"Scale must be between 0 and 18, received " + scale + ".");
+		}
+		this.context = context;
+		this.scale = scale;
+		this.unit = BigDecimal.ONE.scaleByPowerOfTen(scale).longValueExact();
+	}
+	
+	/**
+	 * Instantiates a new fixed point array resource
+	 * with a specified amount of a resource type.
+	 *
+	 * @param context the resource context
+	 * @param scale the number of decimal places
+	 * @param type the type
+	 * @param amount the amount
+	 */
+	protected FixedPointArrayResource(ResourceContext context, int scale, 
+			ResourceType type, double amount) {
+		this(context, scale);
+		this.amount[type.ordinal()] = toScaled(amount);
+	}
+	
+	/**
+	 * Instantiates a new fixed point array resource
+	 * with a specified amount of a resource type.
+	 *
+	 * @param context the resource context
+	 * @param scale the number of decimal places
+	 * @param type the type
+	 * @param amount the amount
+	 */
+	protected FixedPointArrayResource(ResourceContext context, int scale, 
+			ResourceType type, String amount) {
+		this(context, scale);
+		this.amount[type.ordinal()] = toScaled(amount);
+	}
+	
+	/**
+	 * Instantiates a new fixed point array resource
+	 * with specified resource amounts.
+	 *
+	 * @param context the resource context
+	 * @param scale the number of decimal places
+	 * @param amounts the amounts
+	 */
+	protected FixedPointArrayResource(ResourceContext context, int scale, double[] amounts) {
+		this(context, scale);
+		if(amounts.length != amount.length) {
+			throw new IllegalArgumentException("Not enough amounts. Expected "
+					+ amount.length + ", received " + amounts.length + ".");
+		}
+		for(int i = 0; i < amount.length; i++) {
+			amount[i] = toScaled(amounts[i]);
+		}
+	}
+	
+	/**
+	 * Instantiates a new fixed point array resource
+	 * with specified resource amounts.
+	 *
+	 * @param context the resource context
+	 * @param scale the number of decimal places
+	 * @param amounts the amounts
+	 */
+	protected FixedPointArrayResource(ResourceContext context, int scale, String[] amounts) {
+		this(context, scale);
+		if(amounts.length != amount.length) {
+			throw new IllegalArgumentException("Not enough amounts. Expected "
+					+ amount.length + ", received " + amounts.length + ".");
+		}
+		for(int i = 0; i < amount.length; i++) {
+			amount[i] = toScaled(amounts[i]);
+		}
+	}
+	
+	/**
+	 * Instantiates a new fixed point array resource
+	 * with specified scaled integer amounts.
+	 *
+	 * @param context the resource context
+	 * @param scale the number of decimal places
+	 * @param scaled the scaled amounts
+	 */
+	FixedPointArrayResource(ResourceContext context, int scale, long[] scaled) {
+		this(context, scale);
+		if(scaled.length != amount.length) {
+			throw new IllegalArgumentException("Not enough amounts. Expected "
+					+ amount.length + ", received " + scaled.length + ".");
+		}
+		System.arraycopy(scaled, 0, amount, 0, amount.length);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#absoluteValue()
+	 */
+	public final Resource absoluteValue() {
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		for(int i = 0; i < amount.length; i++) {
+			newResource.amount[i] = amount[i] < 0
+					? Math.negateExact(amount[i]) : amount[i];
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#add(edu.mit.isos.context.Resource)
+	 */
+	public FixedPointArrayResource add(Resource resource) {
+		if(resource == ZERO) {
+			return this;
+		}
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		if(isSameScale(resource)) {
+			long[] other = ((FixedPointArrayResource) resource).amount;
+			for(int i = 0; i < amount.length; i++) {
+				newResource.amount[i] = Math.addExact(amount[i], other[i]);
+			}
+		} else {
+			for(ResourceType t : ResourceType.values()) {
+				newResource.amount[t.ordinal()] = Math.addExact(amount[t.ordinal()],
+						toScaled(resource.getQuantity(t)));
+			}
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#copy()
+	 */
+	public FixedPointArrayResource copy() {
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		System.arraycopy(amount, 0, newResource.amount, 0, amount.length);
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#get(edu.mit.isos.context.ResourceType)
+	 */
+	public FixedPointArrayResource get(ResourceType type) {
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		newResource.amount[type.ordinal()] = amount[type.ordinal()];
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#getQuantity(edu.mit.isos.context.ResourceType)
+	 */
+	@Override
+	public double getQuantity(ResourceType type) {
+		return (double) amount[type.ordinal()] / unit;
+	}
+	
+	/**
+	 * Gets the scaled integer amount of a resource type.
+	 *
+	 * @param type the type
+	 * @return the scaled amount
+	 */
+	long getScaled(ResourceType type) {
+		return amount[type.ordinal()];
+	}
+	
+	/**
+	 * Gets the number of decimal places of this resource.
+	 *
+	 * @return the scale
+	 */
+	public int getScale() {
+		return scale;
+	}
+	
+	/**
+	 * Checks if a resource is a fixed point resource with the same scale.
+	 *
+	 * @param resource the resource
+	 * @return true, if is same scale
+	 */
+	private boolean isSameScale(Resource resource) {
+		return resource instanceof FixedPointArrayResource
+				&& ((FixedPointArrayResource) resource).scale == scale;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#isZero()
+	 */
+	@Override
+	public boolean isZero() {
+		double tolerance = context.getEpsilon()*unit;
+		for(int i = 0; i < amount.length; i++) {
+			if(amount[i] != 0 && Math.abs((double) amount[i]) > tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#multiply(double)
+	 */
+	public FixedPointArrayResource multiply(double scalar) {
+		if(scalar == 1) {
+			return this;
+		}
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		for(int i = 0; i < amount.length; i++) {
+			newResource.amount[i] = round(amount[i] * scalar);
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#multiply(edu.mit.isos.context.Resource)
+	 */
+	public FixedPointArrayResource multiply(Resource resource) {
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		for(ResourceType t : ResourceType.values()) {
+			newResource.amount[t.ordinal()] = round(amount[t.ordinal()]
+					* resource.getQuantity(t));
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#negate()
+	 */
+	public FixedPointArrayResource negate() {
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		for(int i = 0; i < amount.length; i++) {
+			newResource.amount[i] = Math.negateExact(amount[i]);
+		}
+		return newResource;
+	}
+	
+	/**
+	 * Rounds a scaled value to the nearest unit.
+	 *
+	 * @param scaled the scaled value
+	 * @return the rounded value
+	 */
+	private static long round(double scaled) {
+		if(Double.isNaN(scaled) || Math.abs(scaled) >= maxScaled) {
+			throw new ArithmeticException("Fixed point overflow: " + scaled);
+		}
+		return Math.round(scaled);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#safeDivide(edu.mit.isos.context.Resource)
+	 */
+	public final Resource safeDivide(Resource resource) {
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		for(ResourceType t : ResourceType.values()) {
+			double divisor = resource.getQuantity(t);
+			if(Math.abs(divisor) > context.getEpsilon()) {
+				newResource.amount[t.ordinal()] = round(amount[t.ordinal()] / divisor);
+			}
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.DefaultResource#subtract(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public FixedPointArrayResource subtract(Resource resource) {
+		if(resource == ZERO) {
+			return this;
+		}
+		FixedPointArrayResource newResource = new FixedPointArrayResource(context, scale);
+		if(isSameScale(resource)) {
+			long[] other = ((FixedPointArrayResource) resource).amount;
+			for(int i = 0; i < amount.length; i++) {
+				newResource.amount[i] = Math.subtractExact(amount[i], other[i]);
+			}
+		} else {
+			for(ResourceType t : ResourceType.values()) {
+				newResource.amount[t.ordinal()] = Math.subtractExact(amount[t.ordinal()],
+						toScaled(resource.getQuantity(t)));
+			}
+		}
+		return newResource;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#swap(edu.mit.isos.context.ResourceType, edu.mit.isos.context.ResourceType)
+	 */
+	public FixedPointArrayResource swap(ResourceType oldType, ResourceType newType) {
+		FixedPointArrayResource newResource = copy();
+		long value = newResource.amount[oldType.ordinal()];
+		newResource.amount[oldType.ordinal()] = newResource.amount[newType.ordinal()];
+		newResource.amount[newType.ordinal()] = value;
+		return newResource;
+	}
+	
+	/**
+	 * Converts a quantity to the nearest scaled unit.
+	 *
+	 * @param quantity the quantity
+	 * @return the scaled value
+	 */
+	private long toScaled(double quantity) {
+		return round(quantity * unit);
+	}
+	
+	/**
+	 * Converts a decimal quantity to the nearest scaled unit.
+	 *
+	 * @param quantity the quantity
+	 * @return the scaled value
+	 */
+	private long toScaled(String quantity) {
+		try {
+			return new BigDecimal(quantity).movePointRight(scale)
+					.setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+		} catch(ArithmeticException ex) {
+			throw new ArithmeticException("Fixed point overflow: " + quantity);
+		}
+	}
+}
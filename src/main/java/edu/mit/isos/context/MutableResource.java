@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+/**
+ * A mutable object which accumulates quantities of one or more resource
+ * types in place. Complements the immutable {@link Resource} interface for
+ * computations which would otherwise create many intermediate objects.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public interface MutableResource {
+	
+	/**
+	 * Adds a resource to this resource.
+	 *
+	 * @param resource the resource to add
+	 * @return this resource
+	 */
+	public MutableResource addInPlace(Resource resource);
+	
+	/**
+	 * Adds an amount of a single resource type to this resource.
+	 *
+	 * @param type the type
+	 * @param amount the amount
+	 * @return this resource
+	 */
+	public MutableResource addInPlace(ResourceType type, double amount);
+	
+	/**
+	 * Subtracts a resource from this resource.
+	 *
+	 * @param resource the resource to subtract
+	 * @return this resource
+	 */
+	public MutableResource subtractInPlace(Resource resource);
+	
+	/**
+	 * Adds the product of a resource and a scalar to this resource
+	 * (i.e. fused multiply-add).
+	 *
+	 * @param resource the resource
+	 * @param scalar the scalar
+	 * @return this resource
+	 */
+	public MutableResource fma(Resource resource, double scalar);
+	
+	/**
+	 * Multiplies this resource by a scalar.
+	 *
+	 * @param scalar the scalar
+	 * @return this resource
+	 */
+	public MutableResource multiplyInPlace(double scalar);
+	
+	/**
+	 * Resets all quantities in this resource to zero.
+	 *
+	 * @return this resource
+	 */
+	public MutableResource clear();
+	
+	/**
+	 * Gets the quantity of a single resource type.
+	 *
+	 * @param type the type
+	 * @return the quantity
+	 */
+	public double getQuantity(ResourceType type);
+	
+	/**
+	 * Checks if this resource has zero quantity.
+	 *
+	 * @return true, if is zero
+	 */
+	public boolean isZero();
+	
+	/**
+	 * Copies the current quantities of this resource
+	 * to a new immutable resource.
+	 *
+	 * @return the immutable resource
+	 */
+	public Resource freeze();
+}
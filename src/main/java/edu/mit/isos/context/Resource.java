@@ -24,6 +24,9 @@ package edu.mit.isos.context;
  */
 public interface Resource {
 	
+	/** The canonical resource with zero quantity of all resource types. */
+	public static final Resource ZERO = new ZeroResource();
+	
 	/**
 	 * Adds a resource and returns the sum.
 	 *
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+
+/**
+ * Implementation of the {@link MutableResource} interface backed by an
+ * array of primitive {@link double} values. Arithmetic operations do not
+ * allocate new objects. Frozen resources are {@link DoubleArrayResource}
+ * objects.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public final class ResourceAccumulator implements MutableResource {
+	private final ResourceContext context;
+	final double[] amount = new double[ResourceType.values().length];
+	
+	/**
+	 * Instantiates a new empty resource accumulator.
+	 *
+	 * @param context the resource context
+	 */
+	public ResourceAccumulator(ResourceContext context) {
+		this.context = context;
+	}
+	
+	/**
+	 * Instantiates a new resource accumulator
+	 * with the quantities of a resource.
+	 *
+	 * @param context the resource context
+	 * @param resource the resource
+	 */
+	public ResourceAccumulator(ResourceContext context, Resource resource) {
+		this(context);
+		addInPlace(resource);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#addInPlace(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public ResourceAccumulator addInPlace(Resource resource) {
+		if(resource == Resource.ZERO) {
+			return this;
+		} else if(resource instanceof DoubleArrayResource) {
+			double[] other = ((DoubleArrayResource) resource).amount;
+			for(int i = 0; i < amount.length; i++) {
+				amount[i] += other[i];
+			}
+		} else {
+			for(ResourceType t : ResourceType.values()) {
+				amount[t.ordinal()] += resource.getQuantity(t);
+			}
+		}
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#addInPlace(edu.mit.isos.context.ResourceType, double)
+	 */
+	@Override
+	public ResourceAccumulator addInPlace(ResourceType type, double amount) {
+		this.amount[type.ordinal()] += amount;
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#clear()
+	 */
+	@Override
+	public ResourceAccumulator clear() {
+		for(int i = 0; i < amount.length; i++) {
+			amount[i] = 0;
+		}
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#fma(edu.mit.isos.context.Resource, double)
+	 */
+	@Override
+	public ResourceAccumulator fma(Resource resource, double scalar) {
+		if(resource == Resource.ZERO) {
+			return this;
+		} else if(resource instanceof DoubleArrayResource) {
+			double[] other = ((DoubleArrayResource) resource).amount;
+			for(int i = 0; i < amount.length; i++) {
+				amount[i] += other[i] * scalar;
+			}
+		} else {
+			for(ResourceType t : ResourceType.values()) {
+				amount[t.ordinal()] += resource.getQuantity(t) * scalar;
+			}
+		}
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#freeze()
+	 */
+	@Override
+	public DoubleArrayResource freeze() {
+		return new DoubleArrayResource(context, amount);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#getQuantity(edu.mit.isos.context.ResourceType)
+	 */
+	@Override
+	public double getQuantity(ResourceType type) {
+		return amount[type.ordinal()];
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#isZero()
+	 */
+	@Override
+	public boolean isZero() {
+		for(int i = 0; i < amount.length; i++) {
+			if(Math.abs(amount[i]) > context.getEpsilon()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#multiplyInPlace(double)
+	 */
+	@Override
+	public ResourceAccumulator multiplyInPlace(double scalar) {
+		for(int i = 0; i < amount.length; i++) {
+			amount[i] *= scalar;
+		}
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.MutableResource#subtractInPlace(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public ResourceAccumulator subtractInPlace(Resource resource) {
+		if(resource == Resource.ZERO) {
+			return this;
+		} else if(resource instanceof DoubleArrayResource) {
+			double[] other = ((DoubleArrayResource) resource).amount;
+			for(int i = 0; i < amount.length; i++) {
+				amount[i] -= other[i];
+			}
+		} else {
+			for(ResourceType t : ResourceType.values()) {
+				amount[t.ordinal()] -= resource.getQuantity(t);
+			}
+		}
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		NumberFormat format = new DecimalFormat("#.############");
+		StringBuilder b = new StringBuilder().append("[");
+		for(int i = 0; i < amount.length; i++) {
+			b.append(format.format(amount[i]));
+			if(i < amount.length - 1) {
+				b.append(", ");
+			}
+		}
+		return b.append("]").toString();
+	}
+}
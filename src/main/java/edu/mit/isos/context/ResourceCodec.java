@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import edu.mit.isos.context.ResourceFactory.Impl;
+
+/**
+ * Encodes resources in a binary format which preserves the number format 
+ * of each implementation. An encoded resource starts with a tag of its 
+ * implementation followed by its native lanes: the double quantities of 
+ * DOUBLE and SPARSE resources, the scale and scaled integers of 
+ * FIXED_POINT resources, the amount and round-off error pairs of 
+ * COMPENSATED resources, and the unscaled values and scales of 
+ * BIG_DECIMAL resources. Other resources are encoded by their double 
+ * quantities and decoded through the current context. Decoded resources 
+ * belong to the current context if it has the same implementation (and 
+ * scale), or else to the shared context of their implementation.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public abstract class ResourceCodec {
+	private static final byte ZERO = -1;
+	private static final byte QUANTITIES = -2;
+	
+	/**
+	 * Gets the tag of a resource.
+	 *
+	 * @param resource the resource
+	 * @return the tag
+	 */
+	private static byte getTag(Resource resource) {
+		if(resource == Resource.ZERO) {
+			return ZERO;
+		} else if(resource instanceof DoubleArrayResource) {
+			return (byte) Impl.DOUBLE.ordinal();
+		} else if(resource instanceof SparseArrayResource) {
+			return (byte) Impl.SPARSE.ordinal();
+		} else if(resource instanceof FixedPointArrayResource) {
+			return (byte) Impl.FIXED_POINT.ordinal();
+		} else if(resource instanceof CompensatedArrayResource) {
+			return (byte) Impl.COMPENSATED.ordinal();
+		} else if(resource instanceof BigDecimalArrayResource) {
+			return (byte) Impl.BIG_DECIMAL.ordinal();
+		}
+		return QUANTITIES;
+	}
+	
+	/**
+	 * Gets the number of bytes to encode a resource.
+	 *
+	 * @param resource the resource
+	 * @return the encoded size
+	 */
+	public static int getSize(Resource resource) {
+		int n = ResourceType.values().length;
+		byte tag = getTag(resource);
+		if(tag == ZERO) {
+			return 1;
+		} else if(tag == Impl.FIXED_POINT.ordinal()) {
+			return 1 + 4 + 8*n;
+		} else if(tag == Impl.COMPENSATED.ordinal()) {
+			return 1 + 16*n;
+		} else if(tag == Impl.BIG_DECIMAL.ordinal()) {
+			int size = 1;
+			for(ResourceType type : ResourceType.values()) {
+				size += 4 + 4 + ((BigDecimalArrayResource) resource)
+						.getDecimal(type).unscaledValue().toByteArray().length;
+			}
+			return size;
+		}
+		return 1 + 8*n;
+	}
+	
+	/**
+	 * Puts a resource into a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @param resource the resource
+	 */
+	public static void put(ByteBuffer buffer, Resource resource) {
+		byte tag = getTag(resource);
+		buffer.put(tag);
+		if(tag == ZERO) {
+			return;
+		} else if(tag == Impl.FIXED_POINT.ordinal()) {
+			FixedPointArrayResource fixed = (FixedPointArrayResource) resource;
+			buffer.putInt(fixed.getScale());
+			for(ResourceType type : ResourceType.values()) {
+				buffer.putLong(fixed.getScaled(type));
+			}
+		} else if(tag == Impl.COMPENSATED.ordinal()) {
+			CompensatedArrayResource compensated = (CompensatedArrayResource) resource;
+			for(ResourceType type : ResourceType.values()) {
+				buffer.putDouble(compensated.getAmount(type))
+						.putDouble(compensated.getError(type));
+			}
+		} else if(tag == Impl.BIG_DECIMAL.ordinal()) {
+			for(ResourceType type : ResourceType.values()) {
+				BigDecimal amount = ((BigDecimalArrayResource) resource).getDecimal(type);
+				byte[] unscaled = amount.unscaledValue().toByteArray();
+				buffer.putInt(amount.scale()).putInt(unscaled.length).put(unscaled);
+			}
+		} else {
+			for(ResourceType type : ResourceType.values()) {
+				buffer.putDouble(resource.getQuantity(type));
+			}
+		}
+	}
+	
+	/**
+	 * Gets a resource from a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @return the resource
+	 */
+	public static Resource get(ByteBuffer buffer) {
+		int n = ResourceType.values().length;
+		byte tag = buffer.get();
+		if(tag == ZERO) {
+			return Resource.ZERO;
+		} else if(tag == QUANTITIES) {
+			return ResourceContext.current().create(getDoubles(buffer, n));
+		} else if(tag < 0 || tag >= Impl.values().length) {
+			throw new IllegalArgumentException("Unknown resource tag " + tag + ".");
+		}
+		Impl impl = Impl.values()[tag];
+		if(impl == Impl.FIXED_POINT) {
+			int scale = buffer.getInt();
+			long[] scaled = new long[n];
+			for(int i = 0; i < n; i++) {
+				scaled[i] = buffer.getLong();
+			}
+			ResourceContext context = ResourceContext.current();
+			if(context.getImpl() != impl || context.getScale() != scale) {
+				context = ResourceContext.fixedPoint(scale);
+			}
+			return new FixedPointArrayResource(context, scale, scaled);
+		}
+		ResourceContext context = getContext(impl);
+		if(impl == Impl.COMPENSATED) {
+			double[] amounts = new double[n];
+			double[] errors = new double[n];
+			for(int i = 0; i < n; i++) {
+				amounts[i] = buffer.getDouble();
+				errors[i] = buffer.getDouble();
+			}
+			return new CompensatedArrayResource(context, amounts, errors);
+		} else if(impl == Impl.BIG_DECIMAL) {
+			BigDecimal[] amounts = new BigDecimal[n];
+			for(int i = 0; i < n; i++) {
+				int scale = buffer.getInt();
+				byte[] unscaled = new byte[buffer.getInt()];
+				buffer.get(unscaled);
+				amounts[i] = new BigDecimal(new BigInteger(unscaled), scale);
+			}
+			return new BigDecimalArrayResource(context, amounts);
+		}
+		return context.create(getDoubles(buffer, n));
+	}
+	
+	/**
+	 * Gets the context for decoded resources of an implementation.
+	 *
+	 * @param impl the implementation
+	 * @return the resource context
+	 */
+	private static ResourceContext getContext(Impl impl) {
+		ResourceContext context = ResourceContext.current();
+		if(context.getImpl() == impl) {
+			return context;
+		}
+		return ResourceContext.get(impl);
+	}
+	
+	/**
+	 * Gets double quantities from a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @param n the number of quantities
+	 * @return the quantities
+	 */
+	private static double[] getDoubles(ByteBuffer buffer, int n) {
+		double[] amounts = new double[n];
+		for(int i = 0; i < n; i++) {
+			amounts[i] = buffer.getDouble();
+		}
+		return amounts;
+	}
+}
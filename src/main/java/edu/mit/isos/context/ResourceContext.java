@@ -0,0 +1,731 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.mit.isos.context.ResourceFactory.Impl;
+
+/**
+ * A resource context owns the choice of {@link Resource} implementation,
+ * the zero tolerance, and cached constants used to create resources. A
+ * context is bound to the current thread (e.g. by a simulator executing a
+ * scenario) and {@link ResourceFactory} resolves through the bound context,
+ * so simulations with different implementations can execute concurrently
+ * in separate threads. Threads without a bound context use the context for
+ * the global {@link ResourceFactory#impl} selection. Resources keep a 
+ * reference to the context which created them and resolve the zero 
+ * tolerance through it, so contexts with different tolerances, 
+ * fixed point scales, or decimal precisions may be created and used 
+ * side by side.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public abstract class ResourceContext {
+	public static final double DEFAULT_EPSILON = 1e-12;
+	public static final int DEFAULT_SCALE = 6;
+	
+	private static final ThreadLocal<ResourceContext> current =
+			new ThreadLocal<ResourceContext>();
+	private static final ResourceContext doubleContext = new DoubleContext(DEFAULT_EPSILON);
+	private static final ResourceContext bigDecimalContext = new BigDecimalContext(MathContext.DECIMAL32, DEFAULT_EPSILON);
+	private static final ResourceContext sparseContext = new SparseContext(DEFAULT_EPSILON);
+	private static final ResourceContext compensatedContext = new CompensatedContext(DEFAULT_EPSILON);
+	private static final ConcurrentMap<Integer, ResourceContext> fixedPointContexts =
+			new ConcurrentHashMap<Integer, ResourceContext>();
+	
+	private final Impl impl;
+	private final double epsilon;
+	private final BigDecimal decimalEpsilon;
+	private final Resource[] units = new Resource[ResourceType.values().length];
+	
+	/**
+	 * Creates a new big decimal resource context with a number of 
+	 * significant digits and its own zero tolerance. Contexts with 
+	 * unlimited precision (0 digits) add, subtract, and multiply exactly, 
+	 * convert doubles without round-off, and create empty resources in 
+	 * their own number format so sums starting from an empty resource 
+	 * stay exact; quotients are rounded to 34 digits.
+	 *
+	 * @param precision the number of significant digits, or 0 for unlimited
+	 * @param epsilon the zero tolerance
+	 * @return the resource context
+	 */
+	public static ResourceContext bigDecimal(int precision, double epsilon) {
+		if(precision < 0) {
+			throw new IllegalArgumentException(
+					"Precision must be non-negative.");
+		}
+		return new BigDecimalContext(new MathContext(precision), epsilon);
+	}
+	
+	/**
+	 * Binds a resource context to the current thread.
+	 *
+	 * @param context the context, or null to unbind
+	 * @return the previously-bound context, or null if none
+	 */
+	public static ResourceContext bind(ResourceContext context) {
+		ResourceContext previous = current.get();
+		if(context == null) {
+			current.remove();
+		} else {
+			current.set(context);
+		}
+		return previous;
+	}
+	
+	/**
+	 * Creates a new resource context for an implementation with its own 
+	 * zero tolerance. The FIXED_POINT implementation keeps 
+	 * {@link #DEFAULT_SCALE} decimal places.
+	 *
+	 * @param impl the implementation
+	 * @param epsilon the zero tolerance
+	 * @return the resource context
+	 */
+	public static ResourceContext create(Impl impl, double epsilon) {
+		if(impl==Impl.DOUBLE) {
+			return new DoubleContext(epsilon);
+		} else if(impl==Impl.BIG_DECIMAL) {
+			return new BigDecimalContext(MathContext.DECIMAL32, epsilon);
+		} else if(impl==Impl.FIXED_POINT) {
+			return new FixedPointContext(DEFAULT_SCALE, epsilon);
+		} else if(impl==Impl.SPARSE) {
+			return new SparseContext(epsilon);
+		} else if(impl==Impl.COMPENSATED) {
+			return new CompensatedContext(epsilon);
+		} else throw new RuntimeException(
+				"Unknown resource implementation selected.");
+	}
+	
+	/**
+	 * Gets the resource context bound to the current thread, or the
+	 * context for the global {@link ResourceFactory#impl} selection if none.
+	 * The global FIXED_POINT selection keeps 
+	 * {@link ResourceFactory#fixedPointScale} decimal places.
+	 *
+	 * @return the resource context
+	 */
+	public static ResourceContext current() {
+		ResourceContext context = current.get();
+		if(context == null) {
+			if(ResourceFactory.impl == Impl.FIXED_POINT) {
+				return fixedPoint(ResourceFactory.fixedPointScale);
+			}
+			return get(ResourceFactory.impl);
+		}
+		return context;
+	}
+	
+	/**
+	 * Gets the shared fixed point resource context for a number of decimal 
+	 * places with exact comparison to zero.
+	 *
+	 * @param scale the number of decimal places
+	 * @return the resource context
+	 */
+	public static ResourceContext fixedPoint(int scale) {
+		ResourceContext context = fixedPointContexts.get(scale);
+		if(context == null) {
+			fixedPointContexts.putIfAbsent(scale, new FixedPointContext(scale, 0));
+			context = fixedPointContexts.get(scale);
+		}
+		return context;
+	}
+	
+	/**
+	 * Creates a new fixed point resource context for a number of decimal 
+	 * places with its own zero tolerance.
+	 *
+	 * @param scale the number of decimal places
+	 * @param epsilon the zero tolerance
+	 * @return the resource context
+	 */
+	public static ResourceContext fixedPoint(int scale, double epsilon) {
+		return new FixedPointContext(scale, epsilon);
+	}
+	
+	/**
+	 * Gets the shared resource context for an implementation with the 
+	 * default zero tolerance. The FIXED_POINT implementation keeps 
+	 * {@link #DEFAULT_SCALE} decimal places.
+	 *
+	 * @param impl the implementation
+	 * @return the resource context
+	 */
+	public static ResourceContext get(Impl impl) {
+		if(impl==Impl.DOUBLE) {
+			return doubleContext;
+		} else if(impl==Impl.BIG_DECIMAL) {
+			return bigDecimalContext;
+		} else if(impl==Impl.FIXED_POINT) {
+			return fixedPoint(DEFAULT_SCALE);
+		} else if(impl==Impl.SPARSE) {
+			return sparseContext;
+		} else if(impl==Impl.COMPENSATED) {
+			return compensatedContext;
+		} else throw new RuntimeException(
+				"Unknown resource implementation selected.");
+	}
+	
+	/**
+	 * Instantiates a new resource context.
+	 *
+	 * @param impl the implementation
+	 * @param epsilon the zero tolerance
+	 */
+	protected ResourceContext(Impl impl, double epsilon) {
+		if(!(epsilon >= 0)) {
+			throw new IllegalArgumentException(
+					"Zero tolerance must be non-negative.");
+		}
+		this.impl = impl;
+		this.epsilon = epsilon;
+		this.decimalEpsilon = BigDecimal.valueOf(epsilon);
+	}
+	
+	/**
+	 * Creates an empty resource.
+	 *
+	 * @return the resource
+	 */
+	public Resource create() {
+		return Resource.ZERO;
+	}
+	
+	/**
+	 * Creates a resource with specified amounts.
+	 *
+	 * @param amounts the amounts
+	 * @return the resource
+	 */
+	public abstract Resource create(double[] amounts);
+	
+	/**
+	 * Creates a resource with specified amounts and round-off errors, e.g. 
+	 * as split by {@link #getAmount(Resource, ResourceType)} and 
+	 * {@link #getError(Resource, ResourceType)}. Contexts which do not 
+	 * track round-off errors add them to the amounts.
+	 *
+	 * @param amounts the amounts
+	 * @param errors the round-off errors
+	 * @return the resource
+	 */
+	public Resource create(double[] amounts, double[] errors) {
+		if(errors.length != amounts.length) {
+			throw new IllegalArgumentException("Not enough errors. Expected "
+					+ amounts.length + ", received " + errors.length + ".");
+		}
+		double[] sums = new double[amounts.length];
+		for(int i = 0; i < amounts.length; i++) {
+			sums[i] = amounts[i] + errors[i];
+		}
+		return create(sums);
+	}
+	
+	/**
+	 * Creates a resource with a specified amount of a resource type.
+	 *
+	 * @param type the type
+	 * @param amount the amount
+	 * @return the resource
+	 */
+	public Resource create(ResourceType type, double amount) {
+		if(amount == 0) {
+			return Resource.ZERO;
+		} else if(amount == 1) {
+			return unit(type);
+		}
+		return createQuantity(type, amount);
+	}
+	
+	/**
+	 * Creates a resource with a specified amount of a resource type.
+	 * String amount argument avoids possible floating point round-off.
+	 *
+	 * @param type the type
+	 * @param amount the amount
+	 * @return the resource
+	 */
+	public abstract Resource create(ResourceType type, String amount);
+	
+	/**
+	 * Creates a resource with specified amounts.
+	 * String amount argument avoids possible floating point round-off.
+	 *
+	 * @param amounts the amounts
+	 * @return the resource
+	 */
+	public abstract Resource create(String[] amounts);
+	
+	/**
+	 * Creates an empty mutable resource to accumulate quantities in place.
+	 *
+	 * @return the mutable resource
+	 */
+	public MutableResource createMutable() {
+		return new DefaultMutableResource(Resource.ZERO);
+	}
+	
+	/**
+	 * Creates a resource with a specified non-zero, non-unit amount
+	 * of a resource type.
+	 *
+	 * @param type the type
+	 * @param amount the amount
+	 * @return the resource
+	 */
+	protected abstract Resource createQuantity(ResourceType type, double amount);
+	
+	/**
+	 * Gets the amount of a resource type without the round-off error 
+	 * tracked by compensated resources.
+	 *
+	 * @param resource the resource
+	 * @param type the type
+	 * @return the amount
+	 */
+	public double getAmount(Resource resource, ResourceType type) {
+		if(resource instanceof CompensatedArrayResource) {
+			return ((CompensatedArrayResource) resource).getAmount(type);
+		}
+		return resource.getQuantity(type);
+	}
+	
+	/**
+	 * Gets the zero tolerance of this context. Resources created by this 
+	 * context treat quantities within the tolerance as zero.
+	 *
+	 * @return the epsilon
+	 */
+	public double getEpsilon() {
+		return epsilon;
+	}
+	
+	/**
+	 * Gets the zero tolerance of this context as a decimal.
+	 *
+	 * @return the epsilon
+	 */
+	BigDecimal getDecimalEpsilon() {
+		return decimalEpsilon;
+	}
+	
+	/**
+	 * Gets the round-off error of a resource type tracked by 
+	 * compensated resources.
+	 *
+	 * @param resource the resource
+	 * @param type the type
+	 * @return the error, or 0 if not tracked
+	 */
+	public double getError(Resource resource, ResourceType type) {
+		if(resource instanceof CompensatedArrayResource) {
+			return ((CompensatedArrayResource) resource).getError(type);
+		}
+		return 0;
+	}
+	
+	/**
+	 * Gets the precision of big decimal resources created by this context.
+	 *
+	 * @return the math context
+	 */
+	MathContext getMathContext() {
+		return MathContext.DECIMAL32;
+	}
+	
+	/**
+	 * Gets the number of decimal places of fixed point resources 
+	 * created by this context.
+	 *
+	 * @return the scale, or -1 if not fixed point
+	 */
+	int getScale() {
+		return -1;
+	}
+	
+	/**
+	 * Gets the resource implementation of this context.
+	 *
+	 * @return the implementation
+	 */
+	public Impl getImpl() {
+		return impl;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return impl.toString();
+	}
+	
+	/**
+	 * Gets the cached resource with unit quantity of a resource type.
+	 *
+	 * @param type the type
+	 * @return the resource
+	 */
+	public Resource unit(ResourceType type) {
+		Resource unit = units[type.ordinal()];
+		if(unit == null) {
+			// benign race: resources are immutable
+			unit = createQuantity(type, 1);
+			units[type.ordinal()] = unit;
+		}
+		return unit;
+	}
+	
+	/**
+	 * Context for {@link CompensatedArrayResource} objects.
+	 */
+	private static final class CompensatedContext extends ResourceContext {
+		/**
+		 * Instantiates a new compensated context.
+		 *
+		 * @param epsilon the zero tolerance
+		 */
+		CompensatedContext(double epsilon) {
+			super(Impl.COMPENSATED, epsilon);
+		}
+		
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(double[])
+		 */
+		@Override
+		public Resource create(double[] amounts) {
+			return new CompensatedArrayResource(this, amounts);
+		}
+		
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(double[], double[])
+		 */
+		@Override
+		public Resource create(double[] amounts, double[] errors) {
+			return new CompensatedArrayResource(this, amounts, errors);
+		}
+		
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(edu.mit.isos.context.ResourceType, java.lang.String)
+		 */
+		@Override
+		public Resource create(ResourceType type, String amount) {
+			return new CompensatedArrayResource(this, type, amount);
+		}
+		
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(java.lang.String[])
+		 */
+		@Override
+		public Resource create(String[] amounts) {
+			return new CompensatedArrayResource(this, amounts);
+		}
+		
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#createQuantity(edu.mit.isos.context.ResourceType, double)
+		 */
+		@Override
+		protected Resource createQuantity(ResourceType type, double amount) {
+			return new CompensatedArrayResource(this, type, amount);
+		}
+	}
+	
+	/**
+	 * Context for {@link DoubleArrayResource} objects.
+	 */
+	private static final class DoubleContext extends ResourceContext {
+		/**
+		 * Instantiates a new double context.
+		 *
+		 * @param epsilon the zero tolerance
+		 */
+		DoubleContext(double epsilon) {
+			super(Impl.DOUBLE, epsilon);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(double[])
+		 */
+		@Override
+		public Resource create(double[] amounts) {
+			return new DoubleArrayResource(this, amounts);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(edu.mit.isos.context.ResourceType, java.lang.String)
+		 */
+		@Override
+		public Resource create(ResourceType type, String amount) {
+			return new DoubleArrayResource(this, type, amount);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(java.lang.String[])
+		 */
+		@Override
+		public Resource create(String[] amounts) {
+			return new DoubleArrayResource(this, amounts);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#createMutable()
+		 */
+		@Override
+		public MutableResource createMutable() {
+			return new ResourceAccumulator(this);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#createQuantity(edu.mit.isos.context.ResourceType, double)
+		 */
+		@Override
+		protected Resource createQuantity(ResourceType type, double amount) {
+			return new DoubleArrayResource(this, type, amount);
+		}
+	}
+	
+	/**
+	 * Context for {@link BigDecimalArrayResource} objects.
+	 */
+	private static final class BigDecimalContext extends ResourceContext {
+		private final MathContext mathContext;
+		
+		/**
+		 * Instantiates a new big decimal context.
+		 *
+		 * @param mathContext the precision
+		 * @param epsilon the zero tolerance
+		 */
+		BigDecimalContext(MathContext mathContext, double epsilon) {
+			super(Impl.BIG_DECIMAL, epsilon);
+			this.mathContext = mathContext;
+		}
+		
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create()
+		 */
+		@Override
+		public Resource create() {
+			if(isExact()) {
+				return new BigDecimalArrayResource(this);
+			}
+			return super.create();
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(double[])
+		 */
+		@Override
+		public Resource create(double[] amounts) {
+			if(isExact()) {
+				// same conversion as arithmetic with double operands
+				BigDecimal[] decimals = new BigDecimal[amounts.length];
+				for(int i = 0; i < amounts.length; i++) {
+					decimals[i] = new BigDecimal(amounts[i]);
+				}
+				return new BigDecimalArrayResource(this, decimals);
+			}
+			String[] strAmounts = new String[amounts.length];
+			for(int i = 0; i < amounts.length; i++) {
+				strAmounts[i] = String.valueOf(amounts[i]);
+			}
+			return create(strAmounts);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(edu.mit.isos.context.ResourceType, java.lang.String)
+		 */
+		@Override
+		public Resource create(ResourceType type, String amount) {
+			return new BigDecimalArrayResource(this, type, amount);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(java.lang.String[])
+		 */
+		@Override
+		public Resource create(String[] amounts) {
+			return new BigDecimalArrayResource(this, amounts);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#createQuantity(edu.mit.isos.context.ResourceType, double)
+		 */
+		@Override
+		protected Resource createQuantity(ResourceType type, double amount) {
+			if(isExact()) {
+				return new BigDecimalArrayResource(this, type, new BigDecimal(amount));
+			}
+			return create(type, String.valueOf(amount));
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#createMutable()
+		 */
+		@Override
+		public MutableResource createMutable() {
+			return new DefaultMutableResource(create());
+		}
+		
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#getMathContext()
+		 */
+		@Override
+		MathContext getMathContext() {
+			return mathContext;
+		}
+		
+		/**
+		 * Checks if this context has unlimited precision.
+		 *
+		 * @return true, if exact
+		 */
+		private boolean isExact() {
+			return mathContext.getPrecision() == 0;
+		}
+	
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			if(mathContext.equals(MathContext.DECIMAL32)) {
+				return super.toString();
+			}
+			return super.toString() + "(" + mathContext.getPrecision() + ")";
+		}
+	}
+	
+	/**
+	 * Context for {@link FixedPointArrayResource} objects.
+	 */
+	private static final class FixedPointContext extends ResourceContext {
+		private final int scale;
+	
+		/**
+		 * Instantiates a new fixed point context.
+		 *
+		 * @param scale the number of decimal places
+		 * @param epsilon the zero tolerance
+		 */
+		FixedPointContext(int scale, double epsilon) {
+			super(Impl.FIXED_POINT, epsilon);
+			this.scale = scale;
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(double[])
+		 */
+		@Override
+		public Resource create(double[] amounts) {
+			return new FixedPointArrayResource(this, scale, amounts);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(edu.mit.isos.context.ResourceType, java.lang.String)
+		 */
+		@Override
+		public Resource create(ResourceType type, String amount) {
+			return new FixedPointArrayResource(this, scale, type, amount);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(java.lang.String[])
+		 */
+		@Override
+		public Resource create(String[] amounts) {
+			return new FixedPointArrayResource(this, scale, amounts);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#createQuantity(edu.mit.isos.context.ResourceType, double)
+		 */
+		@Override
+		protected Resource createQuantity(ResourceType type, double amount) {
+			return new FixedPointArrayResource(this, scale, type, amount);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#getScale()
+		 */
+		@Override
+		int getScale() {
+			return scale;
+		}
+	
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return super.toString() + "(" + scale + ")";
+		}
+	}
+	
+	/**
+	 * Context for {@link SparseArrayResource} objects.
+	 */
+	private static final class SparseContext extends ResourceContext {
+		/**
+		 * Instantiates a new sparse context.
+		 *
+		 * @param epsilon the zero tolerance
+		 */
+		SparseContext(double epsilon) {
+			super(Impl.SPARSE, epsilon);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(double[])
+		 */
+		@Override
+		public Resource create(double[] amounts) {
+			return new SparseArrayResource(this, amounts);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(edu.mit.isos.context.ResourceType, java.lang.String)
+		 */
+		@Override
+		public Resource create(ResourceType type, String amount) {
+			return new SparseArrayResource(this, type, amount);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#create(java.lang.String[])
+		 */
+		@Override
+		public Resource create(String[] amounts) {
+			return new SparseArrayResource(this, amounts);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.context.ResourceContext#createQuantity(edu.mit.isos.context.ResourceType, double)
+		 */
+		@Override
+		protected Resource createQuantity(ResourceType type, double amount) {
+			return new SparseArrayResource(this, type, amount);
+		}
+	}
+}
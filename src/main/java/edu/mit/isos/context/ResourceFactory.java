@@ -19,29 +19,54 @@ package edu.mit.isos.context;
  * A factory for creating Resource objects. Defines both floating-point and 
  * text arguments for numerical quantities. String arguments avoid potential 
  * round-off errors and are used widely in high-performance number formats.
+ * All methods resolve through the {@link ResourceContext} bound to the 
+ * current thread, which defaults to the context for the global 
+ * {@link #impl} selection. The FIXED_POINT implementation keeps 
+ * {@link #fixedPointScale} decimal places with exact addition and the 
+ * SPARSE implementation stores only non-zero quantities. The COMPENSATED 
+ * implementation carries a round-off error term with each quantity through
+ * resource arithmetic; quantities read back as doubles are rounded.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public abstract class ResourceFactory {
-	public static enum Impl {DOUBLE, BIG_DECIMAL};
+	public static enum Impl {DOUBLE, BIG_DECIMAL, FIXED_POINT, SPARSE, COMPENSATED};
 	public static Impl impl = Impl.DOUBLE;
 	
+	// number of decimal places for the FIXED_POINT implementation
+	public static int fixedPointScale = 6;
+	
 	/**
-	 * Creates an empty resource.
+	 * Creates an empty resource. Returns the shared {@link Resource#ZERO} 
+	 * constant because resources are immutable.
 	 *
 	 * @return the resource
 	 */
 	public static Resource create() {
-		if(impl==Impl.DOUBLE) {
-			return new DoubleArrayResource();
-		} else if(impl==Impl.BIG_DECIMAL) {
-			return new BigDecimalArrayResource();
-		} else throw new RuntimeException(
-				"Unknown resource implementation selected.");
+		return ResourceContext.current().create();
+	}
+	
+	/**
+	 * Gets the cached resource with unit quantity of a resource type.
+	 *
+	 * @param type the type
+	 * @return the resource
+	 */
+	public static Resource unit(ResourceType type) {
+		return ResourceContext.current().unit(type);
 	}
 	
+	/**
+	 * Creates an empty mutable resource to accumulate quantities in place.
+	 *
+	 * @return the mutable resource
+	 */
+	public static MutableResource createMutable() {
+		return ResourceContext.current().createMutable();
+	}
+
 	/**
 	 * Creates a resource with specified amounts.
 	 *
@@ -49,11 +74,7 @@ public abstract class ResourceFactory {
 	 * @return the resource
 	 */
 	public static Resource create(double[] amounts) {
-		String[] strAmounts = new String[amounts.length];
-		for(int i = 0; i < amounts.length; i++) {
-			strAmounts[i] = String.valueOf(amounts[i]);
-		}
-		return create(strAmounts);
+		return ResourceContext.current().create(amounts);
 	}
 	
 	/**
@@ -64,7 +85,7 @@ public abstract class ResourceFactory {
 	 * @return the resource
 	 */
 	public static Resource create(ResourceType type, double amount) {
-		return create(type, String.valueOf(amount));
+		return ResourceContext.current().create(type, amount);
 	}
 	
 	/**
@@ -76,12 +97,7 @@ public abstract class ResourceFactory {
 	 * @return the resource
 	 */
 	public static Resource create(ResourceType type, String amount) {
-		if(impl==Impl.DOUBLE) {
-			return new DoubleArrayResource(type, amount);
-		} else if(impl==Impl.BIG_DECIMAL) {
-			return new BigDecimalArrayResource(type, amount);
-		} else throw new RuntimeException(
-				"Unknown resource implementation selected.");
+		return ResourceContext.current().create(type, amount);
 	}
 	
 	/**
@@ -96,11 +112,11 @@ public abstract class ResourceFactory {
 			throw new IllegalArgumentException("Unbalanced arguments. " 
 					+ types.length + "types, " + amounts.length + " amounts.");
 		} else {
-			Resource resource = create();
+			double[] allAmounts = new double[ResourceType.values().length];
 			for(int i = 0; i < types.length; i++) {
-				resource = resource.add(create(types[i], amounts[i]));
+				allAmounts[types[i].ordinal()] += amounts[i];
 			}
-			return resource;
+			return ResourceContext.current().create(allAmounts);
 		}
 	}
 	
@@ -117,9 +133,10 @@ public abstract class ResourceFactory {
 			throw new IllegalArgumentException("Unbalanced arguments. " 
 					+ types.length + "types, " + amounts.length + " amounts.");
 		} else {
-			Resource resource = create();
+			ResourceContext context = ResourceContext.current();
+			Resource resource = context.create();
 			for(int i = 0; i < types.length; i++) {
-				resource = resource.add(create(types[i], amounts[i]));
+				resource = resource.add(context.create(types[i], amounts[i]));
 			}
 			return resource;
 		}
@@ -133,11 +150,6 @@ public abstract class ResourceFactory {
 	 * @return the resource
 	 */
 	public static Resource create(String[] amounts) {
-		if(impl==Impl.DOUBLE) {
-			return new DoubleArrayResource(amounts);
-		} else if(impl==Impl.BIG_DECIMAL) {
-			return new BigDecimalArrayResource(amounts);
-		} else throw new RuntimeException(
-				"Unknown resource implementation selected.");
+		return ResourceContext.current().create(amounts);
 	}
 }
\ No newline at end of file
@@ -21,14 +21,23 @@ import java.util.Arrays;
 
 /**
  * Defines a square matrix of resource quantities indexed by resource types.
- * Useful for computing transformations.
+ * Useful for computing transformations. Rows are kept both as immutable 
+ * resources and as a flat row-major array of primitive quantities; 
+ * multiplication with double-precision resources is fused into a single 
+ * pass over the non-zero rows.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public final class ResourceMatrix {
-	private Resource[] resources = new Resource[ResourceType.values().length];
+	private static final ResourceType[] types = ResourceType.values();
+	private static final int n = types.length;
+	
+	private Resource[] resources = new Resource[n];
+	private final double[] values = new double[n*n];
+	private int[] nonZeroRows;
+	private boolean primitive;
 	
 	/**
 	 * Instantiates a new empty resource matrix.
@@ -37,6 +46,7 @@ public final class ResourceMatrix {
 		for(int i = 0; i < resources.length; i++) {
 			resources[i] = ResourceFactory.create();
 		}
+		initialize();
 	}
 	
 	/**
@@ -51,6 +61,7 @@ public final class ResourceMatrix {
 		} else {
 			this.resources = Arrays.copyOf(resources, resources.length);
 		}
+		initialize();
 	}
 	
 	/**
@@ -66,6 +77,7 @@ public final class ResourceMatrix {
 				resources[i] = ResourceFactory.create();
 			}
 		}
+		initialize();
 	}
 	
 	/**
@@ -82,12 +94,13 @@ public final class ResourceMatrix {
 			for(int i = 0; i < types.length; i++) {
 				this.resources[types[i].ordinal()] = resources[i].copy();
 			}
-			for(int i = 0; i < resources.length; i++) {
-				if(resources[i] == null) {
-					resources[i] = ResourceFactory.create();
+			for(int i = 0; i < this.resources.length; i++) {
+				if(this.resources[i] == null) {
+					this.resources[i] = ResourceFactory.create();
 				}
 			}
 		}
+		initialize();
 	}
 	
 	/**
@@ -126,13 +139,68 @@ public final class ResourceMatrix {
 	}
 	
 	/**
-	 * Gets the resource associated with a resource type.
+	 * Fused multiplication of a vector of quantities by this matrix, 
+	 * adding the product to an output vector of quantities.
+	 *
+	 * @param quantities the quantities
+	 * @param product the output vector to which the product is added
+	 */
+	private void fusedMultiply(double[] quantities, double[] product) {
+		for(int r : nonZeroRows) {
+			double quantity = quantities[r];
+			if(quantity != 0) {
+				int offset = r*n;
+				for(int c = 0; c < n; c++) {
+					product[c] += values[offset + c] * quantity;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the quantity of a resource type in a row.
+	 *
+	 * @param row the row type
+	 * @param column the column type
+	 * @return the quantity
+	 */
+	public double getQuantity(ResourceType row, ResourceType column) {
+		return values[row.ordinal()*n + column.ordinal()];
+	}
+	
+	/**
+	 * Gets the resource associated with a resource type. The returned 
+	 * resource is the immutable row of this matrix and is not copied.
 	 *
 	 * @param type the type
 	 * @return the resource
 	 */
 	public Resource getResource(ResourceType type) {
-		return resources[type.ordinal()].copy();
+		return resources[type.ordinal()];
+	}
+	
+	/**
+	 * Initializes the primitive quantities and non-zero rows.
+	 */
+	private void initialize() {
+		int[] rows = new int[n];
+		int count = 0;
+		primitive = true;
+		for(int r = 0; r < n; r++) {
+			Resource row = resources[r];
+			if(!(row instanceof DoubleArrayResource) && row != Resource.ZERO) {
+				primitive = false;
+			}
+			boolean nonZero = false;
+			for(int c = 0; c < n; c++) {
+				values[r*n + c] = row.getQuantity(types[c]);
+				nonZero = nonZero || values[r*n + c] != 0;
+			}
+			if(nonZero) {
+				rows[count++] = r;
+			}
+		}
+		nonZeroRows = Arrays.copyOf(rows, count);
 	}
 	
 	/**
@@ -171,11 +239,37 @@ public final class ResourceMatrix {
 	 * @return the resource
 	 */
 	public Resource multiply(Resource resource) {
-		Resource newResource = ResourceFactory.create();
-		for(ResourceType t : ResourceType.values()) {
-			newResource = newResource.add(getResource(t).multiply(resource.getQuantity(t)));
+		ResourceContext context = ResourceContext.current();
+		if(primitive && context.getImpl() == ResourceFactory.Impl.DOUBLE) {
+			double[] product = new double[n];
+			fusedMultiply(toQuantities(resource), product);
+			return context.create(product);
+		}
+		return multiply(resource, ResourceFactory.createMutable()).freeze();
+	}
+
+	/**
+	 * Multiplies this resource matrix by a resource
+	 * (e.g. vector multiplication) and adds the product to a
+	 * mutable resource.
+	 *
+	 * @param resource the resource
+	 * @param product the mutable resource to which the product is added
+	 * @return the mutable resource
+	 */
+	public MutableResource multiply(Resource resource, MutableResource product) {
+		if(primitive && product instanceof ResourceAccumulator) {
+			fusedMultiply(toQuantities(resource), 
+					((ResourceAccumulator) product).amount);
+			return product;
+		}
+		for(int r : nonZeroRows) {
+			double quantity = resource.getQuantity(types[r]);
+			if(quantity != 0) {
+				product.fma(resources[r], quantity);
+			}
 		}
-		return newResource;
+		return product;
 	}
 	
 	/**
@@ -201,6 +295,23 @@ public final class ResourceMatrix {
 		return add(matrix.negate());
 	}
 	
+	/**
+	 * Gets the quantities of a resource, without copying if possible.
+	 *
+	 * @param resource the resource
+	 * @return the quantities
+	 */
+	private static double[] toQuantities(Resource resource) {
+		if(resource instanceof DoubleArrayResource) {
+			return ((DoubleArrayResource) resource).amount;
+		}
+		double[] quantities = new double[n];
+		for(ResourceType t : ResourceType.values()) {
+			quantities[t.ordinal()] = resource.getQuantity(t);
+		}
+		return quantities;
+	}
+	
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
@@ -211,7 +322,7 @@ public final class ResourceMatrix {
 		for(ResourceType r : ResourceType.values()) {
 			b.append("[");
 			for(ResourceType c : ResourceType.values()) {
-				b.append(format.format(getResource(r).getQuantity(c)));
+				b.append(format.format(getQuantity(r, c)));
 				if(c.ordinal() < ResourceType.values().length - 1) {
 					b.append(", ");
 				}
@@ -20,13 +20,16 @@ import java.util.Collection;
 
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.state.Integrator;
 
 /**
  * A scenario is an immutable object which aggregates locations 
- * and elements to be executed in a simulator.
+ * and elements to be executed in a simulator. A scenario is bound to the 
+ * {@link ResourceContext} used to create its resources and may select the 
+ * {@link Integrator} used by element states integrating stored resources.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public class Scenario {
@@ -34,6 +37,8 @@ public class Scenario {
 	private final Collection<Location> locations = new ArrayList<Location>();
 	private final Collection<ElementImpl> elements = new ArrayList<ElementImpl>();
 	private final long initialTime;
+	private final ResourceContext resourceContext;
+	private final Integrator integrator;
 	
 	/**
 	 * Instantiates a new scenario.
@@ -41,6 +46,8 @@ public class Scenario {
 	protected Scenario() {
 		name = "";
 		initialTime = 0;
+		resourceContext = ResourceContext.current();
+		integrator = null;
 	}
 	
 	/**
@@ -54,10 +61,46 @@ public class Scenario {
 	public Scenario(String name, long initialTime,
 			Collection<Location> locations, 
 			Collection<? extends ElementImpl> elements) {
+		this(name, initialTime, locations, elements, ResourceContext.current());
+	}
+	
+	/**
+	 * Instantiates a new scenario with a resource context.
+	 *
+	 * @param name the name
+	 * @param initialTime the initial time
+	 * @param locations the locations
+	 * @param elements the elements
+	 * @param resourceContext the resource context
+	 */
+	public Scenario(String name, long initialTime,
+			Collection<Location> locations, 
+			Collection<? extends ElementImpl> elements,
+			ResourceContext resourceContext) {
+		this(name, initialTime, locations, elements, resourceContext, null);
+	}
+	
+	/**
+	 * Instantiates a new scenario with a resource context and an integrator.
+	 *
+	 * @param name the name
+	 * @param initialTime the initial time
+	 * @param locations the locations
+	 * @param elements the elements
+	 * @param resourceContext the resource context
+	 * @param integrator the integrator, or null to keep the 
+	 * integration of each element state
+	 */
+	public Scenario(String name, long initialTime,
+			Collection<Location> locations, 
+			Collection<? extends ElementImpl> elements,
+			ResourceContext resourceContext, Integrator integrator) {
 		this.name = name;
 		this.initialTime = initialTime;
 		this.locations.addAll(locations);
 		this.elements.addAll(elements);
+		this.resourceContext = resourceContext;
+		this.integrator = integrator;
 	}
 	
 	/**
@@ -93,6 +136,16 @@ public class Scenario {
 		return initialTime;
 	}
 	
+	/**
+	 * Gets the integrator.
+	 *
+	 * @return the integrator, or null to keep the 
+	 * integration of each element state
+	 */
+	public Integrator getIntegrator() {
+		return integrator;
+	}
+	
 	/**
 	 * Gets the locations.
 	 *
@@ -102,6 +155,15 @@ public class Scenario {
 		return new ArrayList<Location>(locations);
 	}
 	
+	/**
+	 * Gets the resource context.
+	 *
+	 * @return the resource context
+	 */
+	public ResourceContext getResourceContext() {
+		return resourceContext;
+	}
+	
 	/**
 	 * Gets the name.
 	 *
@@ -116,6 +178,8 @@ public class Scenario {
 	 */
 	public String toString() {
 		return new StringBuilder(getName()).append(" {initialTime: ")
-			.append(initialTime).append("}").toString();
+			.append(initialTime).append(", resourceContext: ")
+			.append(resourceContext).append(", integrator: ")
+			.append(integrator).append("}").toString();
 	}
 }
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+import java.util.Arrays;
+
+/**
+ * Immutable implementation of the {@link Resource} interface which stores
+ * only non-zero quantities. A bitmask indexed by resource type ordinal
+ * records the non-zero types and a packed array of primitive
+ * {@link double} values holds their quantities in ordinal order, so
+ * operations skip zero lanes and objects stay small for large catalogs
+ * of resource types.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class SparseArrayResource extends DefaultResource implements Resource {
+	private static final ResourceType[] types = ResourceType.values();
+	private static final double[] empty = new double[0];
+	
+	static {
+		if(types.length > Long.SIZE) {
+			throw new IllegalStateException("Sparse resources support at most "
+					+ Long.SIZE + " resource types, found " + types.length + ".");
+		}
+	}
+	
+	private final ResourceContext context;
+	private final long mask;
+	private final double[] amount;
+	
+	/**
+	 * Instantiates a new sparse array resource.
+	 *
+	 * @param context the resource context
+	 * @param mask the non-zero type mask
+	 * @param amount the packed non-zero amounts
+	 */
+	private SparseArrayResource(ResourceContext context, long mask, double[] amount) {
+		this.context = context;
+		this.mask = mask;
+		this.amount = amount;
+	}
+	
+	/**
+	 * Instantiates a new sparse array resource
+	 * with a specified amount of a resource type.
+	 *
+	 * @param context the resource context
+	 * @param type the type
+	 * @param amount the amount
+	 */
+	protected SparseArrayResource(ResourceContext context, 
+			ResourceType type, double amount) {
+		this(context, amount == 0 ? 0L : 1L << type.ordinal(),
+				amount == 0 ? empty : new double[] {amount});
+	}
+	
+	/**
+	 * Instantiates a new sparse array resource
+	 * with a specified amount of a resource type.
+	 *
+	 * @param context the resource context
+	 * @param type the type
+	 * @param amount the amount
+	 */
+	protected SparseArrayResource(ResourceContext context, 
+			ResourceType type, String amount) {
+		this(context, type, Double.parseDouble(amount));
+	}
+	
+	/**
+	 * Instantiates a new sparse array resource from dense amounts.
+	 *
+	 * @param context the resource context
+	 * @param amounts the amounts
+	 */
+	protected SparseArrayResource(ResourceContext context, double[] amounts) {
+		this(context, maskOf(checkLength(amounts)), pack(amounts));
+	}
+	
+	/**
+	 * Instantiates a new sparse array resource from dense amounts.
+	 *
+	 * @param context the resource context
+	 * @param amounts the amounts
+	 */
+	protected SparseArrayResource(ResourceContext context, String[] amounts) {
+		this(context, parse(amounts));
+	}
+	
+	/**
+	 * Checks the number of dense amounts.
+	 *
+	 * @param amounts the amounts
+	 * @return the amounts
+	 */
+	private static double[] checkLength(double[] amounts) {
+		if(amounts.length != types.length) {
+			throw new IllegalArgumentException("Not enough amounts. Expected "
+					+ types.length + ", received " + amounts.length + ".");
+		}
+		return amounts;
+	}
+	
+	/**
+	 * Gets the mask of non-zero dense amounts.
+	 *
+	 * @param amounts the amounts
+	 * @return the mask
+	 */
+	private static long maskOf(double[] amounts) {
+		long mask = 0L;
+		for(int i = 0; i < amounts.length; i++) {
+			if(amounts[i] != 0) {
+				mask |= 1L << i;
+			}
+		}
+		return mask;
+	}
+	
+	/**
+	 * Packs the non-zero dense amounts in ordinal order.
+	 *
+	 * @param amounts the amounts
+	 * @return the packed amounts
+	 */
+	private static double[] pack(double[] amounts) {
+		double[] packed = new double[Long.bitCount(maskOf(amounts))];
+		int j = 0;
+		for(int i = 0; i < amounts.length; i++) {
+			if(amounts[i] != 0) {
+				packed[j++] = amounts[i];
+			}
+		}
+		return packed;
+	}
+	
+	/**
+	 * Parses dense amounts.
+	 *
+	 * @param amounts the amounts
+	 * @return the parsed amounts
+	 */
+	private static double[] parse(String[] amounts) {
+		double[] values = new double[amounts.length];
+		for(int i = 0; i < amounts.length; i++) {
+			values[i] = Double.parseDouble(amounts[i]);
+		}
+		return values;
+	}
+	
+	/**
+	 * Creates a sparse array resource from dense amounts,
+	 * returning {@link Resource#ZERO} if all are zero.
+	 *
+	 * @param amounts the amounts
+	 * @return the resource
+	 */
+	private Resource of(double[] amounts) {
+		long mask = maskOf(amounts);
+		return mask == 0 ? ZERO : new SparseArrayResource(context, mask, pack(amounts));
+	}
+	
+	/**
+	 * Creates a sparse array resource from packed amounts,
+	 * returning {@link Resource#ZERO} if there are none.
+	 *
+	 * @param mask the non-zero type mask
+	 * @param amount the packed amounts
+	 * @param length the number of packed amounts
+	 * @return the resource
+	 */
+	private Resource of(long mask, double[] amount, int length) {
+		if(mask == 0) {
+			return ZERO;
+		}
+		return new SparseArrayResource(context, mask, length == amount.length 
+				? amount : Arrays.copyOf(amount, length));
+	}
+	
+	/**
+	 * Gets the dense amounts of this resource.
+	 *
+	 * @return the amounts
+	 */
+	private double[] toDense() {
+		double[] dense = new double[types.length];
+		long bits = mask;
+		for(int j = 0; bits != 0; j++) {
+			dense[Long.numberOfTrailingZeros(bits)] = amount[j];
+			bits &= bits - 1;
+		}
+		return dense;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#absoluteValue()
+	 */
+	public final Resource absoluteValue() {
+		double[] newAmount = new double[amount.length];
+		for(int j = 0; j < amount.length; j++) {
+			newAmount[j] = Math.abs(amount[j]);
+		}
+		return new SparseArrayResource(context, mask, newAmount);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#add(edu.mit.isos.context.Resource)
+	 */
+	public Resource add(Resource resource) {
+		return combine(resource, 1);
+	}
+	
+	/**
+	 * Adds a multiple of a resource and returns the sum, only visiting the
+	 * non-zero lanes of sparse operands.
+	 *
+	 * @param resource the resource
+	 * @param sign the sign of the resource (1 to add, -1 to subtract)
+	 * @return the sum
+	 */
+	private Resource combine(Resource resource, int sign) {
+		if(resource == ZERO) {
+			return this;
+		} else if(resource instanceof SparseArrayResource) {
+			SparseArrayResource other = (SparseArrayResource) resource;
+			long union = mask | other.mask;
+			double[] newAmount = new double[Long.bitCount(union)];
+			long newMask = 0L;
+			int i = 0, j = 0, k = 0;
+			for(long bits = union; bits != 0; bits &= bits - 1) {
+				long bit = bits & -bits;
+				double value = 0;
+				if((mask & bit) != 0) {
+					value += amount[i++];
+				}
+				if((other.mask & bit) != 0) {
+					value += sign*other.amount[j++];
+				}
+				if(value != 0) {
+					newAmount[k++] = value;
+					newMask |= bit;
+				}
+			}
+			return of(newMask, newAmount, k);
+		}
+		double[] dense = toDense();
+		for(ResourceType t : types) {
+			dense[t.ordinal()] += sign*resource.getQuantity(t);
+		}
+		return of(dense);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#copy()
+	 */
+	public SparseArrayResource copy() {
+		// immutable, no need to copy
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#get(edu.mit.isos.context.ResourceType)
+	 */
+	public Resource get(ResourceType type) {
+		if((mask & 1L << type.ordinal()) == 0) {
+			return ZERO;
+		}
+		return new SparseArrayResource(context, type, getQuantity(type));
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#getQuantity(edu.mit.isos.context.ResourceType)
+	 */
+	@Override
+	public double getQuantity(ResourceType type) {
+		long bit = 1L << type.ordinal();
+		if((mask & bit) == 0) {
+			return 0;
+		}
+		return amount[Long.bitCount(mask & (bit - 1))];
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#isZero()
+	 */
+	@Override
+	public boolean isZero() {
+		for(int j = 0; j < amount.length; j++) {
+			if(Math.abs(amount[j]) > context.getEpsilon()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#multiply(double)
+	 */
+	public Resource multiply(double scalar) {
+		if(scalar == 1) {
+			return this;
+		} else if(scalar == 0) {
+			return ZERO;
+		}
+		double[] newAmount = new double[amount.length];
+		for(int j = 0; j < amount.length; j++) {
+			newAmount[j] = amount[j] * scalar;
+		}
+		return new SparseArrayResource(context, mask, newAmount);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#multiply(edu.mit.isos.context.Resource)
+	 */
+	public Resource multiply(Resource resource) {
+		double[] dense = toDense();
+		long bits = mask;
+		while(bits != 0) {
+			int i = Long.numberOfTrailingZeros(bits);
+			dense[i] *= resource.getQuantity(types[i]);
+			bits &= bits - 1;
+		}
+		return of(dense);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#negate()
+	 */
+	public SparseArrayResource negate() {
+		double[] newAmount = new double[amount.length];
+		for(int j = 0; j < amount.length; j++) {
+			newAmount[j] = -amount[j];
+		}
+		return new SparseArrayResource(context, mask, newAmount);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#safeDivide(edu.mit.isos.context.Resource)
+	 */
+	public final Resource safeDivide(Resource resource) {
+		double[] dense = new double[types.length];
+		long bits = mask;
+		for(int j = 0; bits != 0; j++) {
+			int i = Long.numberOfTrailingZeros(bits);
+			double divisor = resource.getQuantity(types[i]);
+			if(Math.abs(divisor) > context.getEpsilon()) {
+				dense[i] = amount[j] / divisor;
+			}
+			bits &= bits - 1;
+		}
+		return of(dense);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.DefaultResource#subtract(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public Resource subtract(Resource resource) {
+		return combine(resource, -1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#swap(edu.mit.isos.context.ResourceType, edu.mit.isos.context.ResourceType)
+	 */
+	public Resource swap(ResourceType oldType, ResourceType newType) {
+		double[] dense = toDense();
+		double value = dense[oldType.ordinal()];
+		dense[oldType.ordinal()] = dense[newType.ordinal()];
+		dense[newType.ordinal()] = value;
+		return of(dense);
+	}
+	
+	/**
+	 * Truncates this resource to positive or negative values.
+	 *
+	 * @param sign the sign
+	 * @return the truncated resource
+	 */
+	private Resource truncate(int sign) {
+		double[] newAmount = new double[amount.length];
+		long newMask = 0L;
+		int k = 0;
+		long bits = mask;
+		for(int j = 0; bits != 0; j++) {
+			if(amount[j]*sign >= 0) {
+				newAmount[k++] = amount[j];
+				newMask |= bits & -bits;
+			}
+			bits &= bits - 1;
+		}
+		return of(newMask, newAmount, k);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.DefaultResource#truncateNegative()
+	 */
+	@Override
+	public Resource truncateNegative() {
+		return truncate(-1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.DefaultResource#truncatePositive()
+	 */
+	@Override
+	public Resource truncatePositive() {
+		return truncate(1);
+	}
+}
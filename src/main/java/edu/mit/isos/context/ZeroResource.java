@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.context;
+
+/**
+ * Immutable implementation of the {@link Resource} interface with zero
+ * quantity of all resource types. Shared by all resource implementations
+ * as the canonical {@link Resource#ZERO} constant, so arithmetic with it
+ * can return existing objects rather than allocating new ones.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+final class ZeroResource extends DefaultResource implements Resource {
+	
+	/**
+	 * Instantiates a new zero resource.
+	 */
+	ZeroResource() { }
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#absoluteValue()
+	 */
+	@Override
+	public Resource absoluteValue() {
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#add(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public Resource add(Resource resource) {
+		if(resource == this) {
+			return this;
+		}
+		// delegate so implementations may apply their own number format
+		return resource.add(this);
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#copy()
+	 */
+	@Override
+	public Resource copy() {
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#get(edu.mit.isos.context.ResourceType)
+	 */
+	@Override
+	public Resource get(ResourceType type) {
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#getQuantity(edu.mit.isos.context.ResourceType)
+	 */
+	@Override
+	public double getQuantity(ResourceType type) {
+		return 0;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#isZero()
+	 */
+	@Override
+	public boolean isZero() {
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#multiply(double)
+	 */
+	@Override
+	public Resource multiply(double scalar) {
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#multiply(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public Resource multiply(Resource resource) {
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#negate()
+	 */
+	@Override
+	public Resource negate() {
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#safeDivide(edu.mit.isos.context.Resource)
+	 */
+	@Override
+	public Resource safeDivide(Resource resource) {
+		return this;
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.context.Resource#swap(edu.mit.isos.context.ResourceType, edu.mit.isos.context.ResourceType)
+	 */
+	@Override
+	public Resource swap(ResourceType oldType, ResourceType newType) {
+		return this;
+	}
+}
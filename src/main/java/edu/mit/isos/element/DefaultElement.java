@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Set;
 
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.state.DefaultState;
@@ -30,7 +31,7 @@ import edu.mit.isos.state.State;
  * The default implementation of the {@link ElementImpl} interface.
  * 
  * @author Paul T. Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public class DefaultElement implements ElementImpl {
@@ -42,6 +43,10 @@ public class DefaultElement implements ElementImpl {
 	private State initialState, state, nextState;
 	private Location initialLocation, location, nextLocation;
 	
+	// optional store of current and next contents
+	private ElementStore store;
+	private int storeId = -1;
+	
 	/**
 	 * Instantiates a new default element.
 	 */
@@ -97,7 +102,11 @@ public class DefaultElement implements ElementImpl {
 	 * @see edu.mit.isos.element.ElementImpl#addContents(edu.mit.isos.context.Resource)
 	 */
 	public void addContents(Resource resource) {
-		nextContents = nextContents.add(resource);
+		if(store != null) {
+			store.addNextContents(storeId, resource);
+		} else {
+			nextContents = nextContents.add(resource);
+		}
 	}
 	
 	/* (non-Javadoc)
@@ -160,8 +169,19 @@ public class DefaultElement implements ElementImpl {
 		if(state != null) {
 			return state.getNetExchange(this, element, duration);
 		} else {
-			return ResourceFactory.create();
+			return Resource.ZERO;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.element.ElementImpl#getNetExchange(edu.mit.isos.element.Element, long, edu.mit.isos.context.MutableResource)
+	 */
+	public MutableResource getNetExchange(Element element, long duration, 
+			MutableResource netExchange) {
+		if(state != null) {
+			state.getNetExchange(this, element, duration, netExchange);
 		}
+		return netExchange;
 	}
 	
 	/* (non-Javadoc)
@@ -171,10 +191,21 @@ public class DefaultElement implements ElementImpl {
 		if(state != null) {
 			return state.getNetFlow(this, location, duration);
 		} else {
-			return ResourceFactory.create();
+			return Resource.ZERO;
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.element.ElementImpl#getNetFlow(edu.mit.isos.context.Location, long, edu.mit.isos.context.MutableResource)
+	 */
+	public MutableResource getNetFlow(Location location, long duration, 
+			MutableResource netFlow) {
+		if(state != null) {
+			state.getNetFlow(this, location, duration, netFlow);
+		}
+		return netFlow;
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.element.ElementImpl#getParent()
 	 */
@@ -196,6 +227,24 @@ public class DefaultElement implements ElementImpl {
 		return new HashSet<State>(states);
 	}
 	
+	/**
+	 * Gets the store of this element's contents.
+	 *
+	 * @return the element store, or null if contents are not stored
+	 */
+	public ElementStore getStore() {
+		return store;
+	}
+	
+	/**
+	 * Gets this element's id in its element store.
+	 *
+	 * @return the id, or -1 if contents are not stored
+	 */
+	public int getStoreId() {
+		return storeId;
+	}
+	
 	/**
 	 * Builder pattern to set initial resource contents.
 	 *
@@ -212,6 +261,9 @@ public class DefaultElement implements ElementImpl {
 	 */
 	public void initialize(long initialTime) {
 		contents = nextContents = initialContents;
+		if(store != null) {
+			store.setContents(storeId, initialContents);
+		}
 		state = nextState = initialState;
 		parent = nextParent = initialParent;
 		location = nextLocation = initialLocation;
@@ -267,7 +319,32 @@ public class DefaultElement implements ElementImpl {
 	 * @see edu.mit.isos.element.ElementImpl#removeContents(edu.mit.isos.context.Resource)
 	 */
 	public void removeContents(Resource resource) {
-		nextContents = nextContents.subtract(resource);
+		if(store != null) {
+			store.removeNextContents(storeId, resource);
+		} else {
+			nextContents = nextContents.subtract(resource);
+		}
+	}
+
+	/**
+	 * Restores the contents, state, parent, and location of this element 
+	 * between time steps, e.g. from a checkpoint. Sets both current 
+	 * and next values.
+	 *
+	 * @param contents the contents
+	 * @param state the state
+	 * @param parent the parent
+	 * @param location the location
+	 */
+	public void restore(Resource contents, State state, 
+			Element parent, Location location) {
+		this.contents = nextContents = contents;
+		if(store != null) {
+			store.setContents(storeId, contents);
+		}
+		this.state = nextState = state;
+		this.parent = nextParent = parent;
+		this.location = nextLocation = location;
 	}
 
 	/* (non-Javadoc)
@@ -303,11 +380,56 @@ public class DefaultElement implements ElementImpl {
 		nextState = state;
 	}
 
+	/**
+	 * Builder pattern to keep current and next contents in an element store. 
+	 * Must be called before initialization.
+	 *
+	 * @param store the element store
+	 * @return the default element
+	 */
+	public DefaultElement store(ElementStore store) {
+		if(this.store != null) {
+			throw new IllegalStateException(
+					"Contents are already stored for " + name);
+		}
+		this.store = store;
+		storeId = store.allocate();
+		return this;
+	}
+
+	/**
+	 * Copies current contents to next contents at the start of a time step. 
+	 * Stored contents are not copied if the store is swept in bulk.
+	 */
+	protected void tickContents() {
+		if(store == null) {
+			nextContents = contents.copy();
+		} else if(!store.isSwept()) {
+			store.tick(storeId);
+		}
+	}
+	
+	/**
+	 * Copies next contents to current contents at the end of a time step. 
+	 * Stored contents are not copied if the store is swept in bulk, 
+	 * but the current contents are read once from the store.
+	 */
+	protected void tockContents() {
+		if(store == null) {
+			contents = nextContents.copy();
+		} else {
+			if(!store.isSwept()) {
+				store.tock(storeId);
+			}
+			contents = store.getContents(storeId);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see edu.mit.isos.sim.SimEntity#tick(long)
 	 */
 	public void tick(long duration) {
-		nextContents = contents.copy();
+		tickContents();
 		for(State state : getStates()) {
 			state.tick(this, duration);
 		}
@@ -317,7 +439,7 @@ public class DefaultElement implements ElementImpl {
 	 * @see edu.mit.isos.sim.SimEntity#tock()
 	 */
 	public void tock() {
-		contents = nextContents.copy();
+		tockContents();
 		state = nextState;
 		parent = nextParent;
 		location = nextLocation;
@@ -330,6 +452,6 @@ public class DefaultElement implements ElementImpl {
 	 * @see java.lang.Object#toString()
 	 */
 	public String toString() {
-		return name + " " + " (" + state + " @ " + location + ", " + contents + ") ";
+		return name + " " + " (" + state + " @ " + location + ", " + getContents() + ") ";
 	}
 }
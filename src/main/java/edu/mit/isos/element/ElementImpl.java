@@ -18,6 +18,7 @@ package edu.mit.isos.element;
 import java.util.Collection;
 
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.sim.SimEntity;
 import edu.mit.isos.state.State;
@@ -135,4 +136,28 @@ public interface ElementImpl extends Element, SimEntity {
 	 * @return the net flow
 	 */
 	public Resource getNetFlow(Location location, long duration);
+	
+	/**
+	 * Adds the net flow of resources from this element to a location 
+	 * to a mutable resource.
+	 *
+	 * @param location the location
+	 * @param duration the duration
+	 * @param netFlow the mutable resource to which the net flow is added
+	 * @return the mutable resource
+	 */
+	public MutableResource getNetFlow(Location location, long duration, 
+			MutableResource netFlow);
+	
+	/**
+	 * Adds the net exchange of resources from this element to another 
+	 * element to a mutable resource.
+	 *
+	 * @param element the other element
+	 * @param duration the duration
+	 * @param netExchange the mutable resource to which the net exchange is added
+	 * @return the mutable resource
+	 */
+	public MutableResource getNetExchange(Element element, long duration, 
+			MutableResource netExchange);
 }
@@ -0,0 +1,523 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.element;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import edu.mit.isos.context.Resource;
+import edu.mit.isos.context.ResourceContext;
+import edu.mit.isos.context.ResourceFactory;
+import edu.mit.isos.context.ResourceFactory.Impl;
+import edu.mit.isos.context.ResourceType;
+
+/**
+ * Struct-of-arrays storage for the current and next resource contents of
+ * many elements. Quantities are kept in two contiguous primitive columns
+ * (current and next) indexed by element id and resource type ordinal, so
+ * the memory footprint is fixed at two doubles per element and resource
+ * type and tick/tock copies are contiguous array sweeps. Quantities are 
+ * stored with double precision regardless of the selected 
+ * {@link ResourceFactory} implementation; resources returned by the store 
+ * are created in the context bound when the store was instantiated. 
+ * Stores instantiated in a compensated context keep two more columns 
+ * with the round-off errors of the quantities and add and remove 
+ * contents with compensated summation, so exchanged quantities keep 
+ * their error terms across time steps.
+ * <p>
+ * Operations on different element ids may run concurrently, e.g. when a 
+ * parallel executor ticks elements, because they touch disjoint ranges of 
+ * the columns. Allocation and the bulk {@link #tick()} and {@link #tock()} 
+ * sweeps must not run concurrently with any other operation; elements are 
+ * allocated while the scenario is built and sweeps run on the simulation 
+ * thread between phases.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public abstract class ElementStore {
+	protected static final int CURRENT = 0, NEXT = 1, ERROR = 2;
+	protected static final int STRIDE = ResourceType.values().length;
+	
+	private int size = 0;
+	private int capacity;
+	private boolean swept = false;
+	private final ResourceContext resourceContext = ResourceContext.current();
+	private final boolean compensated = 
+			resourceContext.getImpl() == Impl.COMPENSATED;
+	
+	/**
+	 * Creates a new element store backed by on-heap arrays.
+	 *
+	 * @param capacity the initial number of elements
+	 * @return the element store
+	 */
+	public static ElementStore onHeap(int capacity) {
+		return new HeapElementStore(capacity);
+	}
+	
+	/**
+	 * Creates a new element store backed by off-heap (direct) buffers.
+	 *
+	 * @param capacity the initial number of elements
+	 * @return the element store
+	 */
+	public static ElementStore offHeap(int capacity) {
+		return new DirectElementStore(capacity);
+	}
+	
+	/**
+	 * Instantiates a new element store.
+	 *
+	 * @param capacity the initial number of elements
+	 */
+	protected ElementStore(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException(
+					"Capacity must be positive, received " + capacity + ".");
+		}
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * Adds a resource to the next contents of an element.
+	 *
+	 * @param id the element id
+	 * @param resource the resource
+	 */
+	public void addNextContents(int id, Resource resource) {
+		checkId(id);
+		if(compensated) {
+			setResource(NEXT, id, getResource(NEXT, id).add(resource));
+			return;
+		}
+		for(ResourceType t : ResourceType.values()) {
+			double quantity = resource.getQuantity(t);
+			if(quantity != 0) {
+				int index = id*STRIDE + t.ordinal();
+				set(NEXT, index, get(NEXT, index) + quantity);
+			}
+		}
+	}
+	
+	/**
+	 * Allocates storage for a new element with empty contents.
+	 *
+	 * @return the element id
+	 */
+	public int allocate() {
+		if(size == capacity) {
+			int newCapacity = Math.max(capacity + 1, 2*capacity);
+			grow(capacity*STRIDE, newCapacity*STRIDE);
+			capacity = newCapacity;
+		}
+		return size++;
+	}
+	
+	/**
+	 * Checks that an element id has been allocated.
+	 *
+	 * @param id the element id
+	 */
+	private void checkId(int id) {
+		if(id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException(
+					"Unknown element id " + id + ", size " + size + ".");
+		}
+	}
+	
+	/**
+	 * Copies a range of values between columns.
+	 *
+	 * @param fromColumn the source column
+	 * @param toColumn the destination column
+	 * @param index the first index
+	 * @param length the number of values
+	 */
+	protected abstract void copy(int fromColumn, int toColumn,
+			int index, int length);
+	
+	/**
+	 * Copies a range of quantities, and round-off errors if compensated, 
+	 * between current and next contents.
+	 *
+	 * @param fromColumn the source column
+	 * @param toColumn the destination column
+	 * @param index the first index
+	 * @param length the number of values
+	 */
+	private void copyContents(int fromColumn, int toColumn, 
+			int index, int length) {
+		copy(fromColumn, toColumn, index, length);
+		if(compensated) {
+			copy(ERROR + fromColumn, ERROR + toColumn, index, length);
+		}
+	}
+	
+	/**
+	 * Gets a value from a column.
+	 *
+	 * @param column the column
+	 * @param index the index
+	 * @return the value
+	 */
+	protected abstract double get(int column, int index);
+	
+	/**
+	 * Gets the number of elements this store can hold without growing.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Gets the number of columns, two for quantities and two more for 
+	 * round-off errors if compensated.
+	 *
+	 * @return the number of columns
+	 */
+	protected final int getColumnCount() {
+		return compensated ? 4 : 2;
+	}
+	
+	/**
+	 * Gets the current contents of an element.
+	 *
+	 * @param id the element id
+	 * @return the contents
+	 */
+	public Resource getContents(int id) {
+		return getResource(CURRENT, id);
+	}
+	
+	/**
+	 * Gets the next contents of an element.
+	 *
+	 * @param id the element id
+	 * @return the next contents
+	 */
+	public Resource getNextContents(int id) {
+		return getResource(NEXT, id);
+	}
+	
+	/**
+	 * Gets the current quantity of a resource type contained by an element.
+	 *
+	 * @param id the element id
+	 * @param type the resource type
+	 * @return the quantity
+	 */
+	public double getQuantity(int id, ResourceType type) {
+		checkId(id);
+		if(compensated) {
+			return get(CURRENT, id*STRIDE + type.ordinal()) 
+					+ get(ERROR + CURRENT, id*STRIDE + type.ordinal());
+		}
+		return get(CURRENT, id*STRIDE + type.ordinal());
+	}
+	
+	/**
+	 * Gets a resource from a column.
+	 *
+	 * @param column the column
+	 * @param id the element id
+	 * @return the resource
+	 */
+	private Resource getResource(int column, int id) {
+		checkId(id);
+		double[] amounts = new double[STRIDE];
+		for(int i = 0; i < STRIDE; i++) {
+			amounts[i] = get(column, id*STRIDE + i);
+		}
+		if(compensated) {
+			double[] errors = new double[STRIDE];
+			for(int i = 0; i < STRIDE; i++) {
+				errors[i] = get(ERROR + column, id*STRIDE + i);
+			}
+			return resourceContext.create(amounts, errors);
+		}
+		return resourceContext.create(amounts);
+	}
+	
+	/**
+	 * Gets the number of allocated elements.
+	 *
+	 * @return the size
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * Checks if contents are copied by bulk sweeps rather than per element.
+	 *
+	 * @return true, if contents are copied by bulk sweeps
+	 */
+	public boolean isSwept() {
+		return swept;
+	}
+	
+	/**
+	 * Grows both columns, preserving existing values.
+	 *
+	 * @param length the current length of each column
+	 * @param newLength the new length of each column
+	 */
+	protected abstract void grow(int length, int newLength);
+	
+	/**
+	 * Subtracts a resource from the next contents of an element.
+	 *
+	 * @param id the element id
+	 * @param resource the resource
+	 */
+	public void removeNextContents(int id, Resource resource) {
+		checkId(id);
+		if(compensated) {
+			setResource(NEXT, id, getResource(NEXT, id).subtract(resource));
+			return;
+		}
+		for(ResourceType t : ResourceType.values()) {
+			double quantity = resource.getQuantity(t);
+			if(quantity != 0) {
+				int index = id*STRIDE + t.ordinal();
+				set(NEXT, index, get(NEXT, index) - quantity);
+			}
+		}
+	}
+	
+	/**
+	 * Sets a value in a column.
+	 *
+	 * @param column the column
+	 * @param index the index
+	 * @param value the value
+	 */
+	protected abstract void set(int column, int index, double value);
+	
+	/**
+	 * Sets both the current and next contents of an element.
+	 *
+	 * @param id the element id
+	 * @param resource the contents
+	 */
+	public void setContents(int id, Resource resource) {
+		checkId(id);
+		setResource(CURRENT, id, resource);
+		copyContents(CURRENT, NEXT, id*STRIDE, STRIDE);
+	}
+	
+	/**
+	 * Sets a resource in a column.
+	 *
+	 * @param column the column
+	 * @param id the element id
+	 * @param resource the resource
+	 */
+	private void setResource(int column, int id, Resource resource) {
+		for(ResourceType t : ResourceType.values()) {
+			if(compensated) {
+				set(column, id*STRIDE + t.ordinal(), 
+						resourceContext.getAmount(resource, t));
+				set(ERROR + column, id*STRIDE + t.ordinal(), 
+						resourceContext.getError(resource, t));
+			} else {
+				set(column, id*STRIDE + t.ordinal(), resource.getQuantity(t));
+			}
+		}
+	}
+	
+	/**
+	 * Sets whether contents are copied by bulk {@link #tick()} and 
+	 * {@link #tock()} sweeps rather than per element. Elements which are 
+	 * not updated in a time step have equal current and next contents, 
+	 * so sweeping them as well is harmless.
+	 *
+	 * @param swept true, to copy contents by bulk sweeps
+	 */
+	public void setSwept(boolean swept) {
+		this.swept = swept;
+	}
+	
+	/**
+	 * Copies current contents to next contents for all elements.
+	 */
+	public void tick() {
+		copyContents(CURRENT, NEXT, 0, size*STRIDE);
+	}
+	
+	/**
+	 * Copies current contents to next contents for one element.
+	 *
+	 * @param id the element id
+	 */
+	public void tick(int id) {
+		checkId(id);
+		copyContents(CURRENT, NEXT, id*STRIDE, STRIDE);
+	}
+	
+	/**
+	 * Copies next contents to current contents for all elements.
+	 */
+	public void tock() {
+		copyContents(NEXT, CURRENT, 0, size*STRIDE);
+	}
+	
+	/**
+	 * Copies next contents to current contents for one element.
+	 *
+	 * @param id the element id
+	 */
+	public void tock(int id) {
+		checkId(id);
+		copyContents(NEXT, CURRENT, id*STRIDE, STRIDE);
+	}
+	
+	/**
+	 * Element store backed by on-heap primitive arrays.
+	 */
+	private static final class HeapElementStore extends ElementStore {
+		private double[][] columns;
+	
+		/**
+		 * Instantiates a new heap element store.
+		 *
+		 * @param capacity the initial number of elements
+		 */
+		HeapElementStore(int capacity) {
+			super(capacity);
+			columns = new double[getColumnCount()][capacity*STRIDE];
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.element.ElementStore#copy(int, int, int, int)
+		 */
+		@Override
+		protected void copy(int fromColumn, int toColumn, int index, int length) {
+			System.arraycopy(columns[fromColumn], index,
+					columns[toColumn], index, length);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.element.ElementStore#get(int, int)
+		 */
+		@Override
+		protected double get(int column, int index) {
+			return columns[column][index];
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.element.ElementStore#grow(int, int)
+		 */
+		@Override
+		protected void grow(int length, int newLength) {
+			double[][] newColumns = new double[columns.length][newLength];
+			for(int i = 0; i < columns.length; i++) {
+				System.arraycopy(columns[i], 0, newColumns[i], 0, length);
+			}
+			columns = newColumns;
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.element.ElementStore#set(int, int, double)
+		 */
+		@Override
+		protected void set(int column, int index, double value) {
+			columns[column][index] = value;
+		}
+	}
+	
+	/**
+	 * Element store backed by off-heap direct buffers in native byte order.
+	 */
+	private static final class DirectElementStore extends ElementStore {
+		private DoubleBuffer[] columns;
+	
+		/**
+		 * Instantiates a new direct element store.
+		 *
+		 * @param capacity the initial number of elements
+		 */
+		DirectElementStore(int capacity) {
+			super(capacity);
+			columns = new DoubleBuffer[getColumnCount()];
+			for(int i = 0; i < columns.length; i++) {
+				columns[i] = allocate(capacity*STRIDE);
+			}
+		}
+	
+		/**
+		 * Allocates a direct buffer.
+		 *
+		 * @param length the number of values
+		 * @return the buffer
+		 */
+		private static DoubleBuffer allocate(int length) {
+			return ByteBuffer.allocateDirect(length*8)
+					.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.element.ElementStore#copy(int, int, int, int)
+		 */
+		@Override
+		protected void copy(int fromColumn, int toColumn, int index, int length) {
+			DoubleBuffer from = columns[fromColumn].duplicate();
+			// cast to Buffer for Java 8 binary compatibility of covariant overrides
+			((Buffer) from).position(index).limit(index + length);
+			DoubleBuffer to = columns[toColumn].duplicate();
+			((Buffer) to).position(index);
+			to.put(from);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.element.ElementStore#get(int, int)
+		 */
+		@Override
+		protected double get(int column, int index) {
+			return columns[column].get(index);
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.element.ElementStore#grow(int, int)
+		 */
+		@Override
+		protected void grow(int length, int newLength) {
+			DoubleBuffer[] newColumns = new DoubleBuffer[columns.length];
+			for(int i = 0; i < columns.length; i++) {
+				DoubleBuffer from = columns[i].duplicate();
+				((Buffer) from).position(0).limit(length);
+				newColumns[i] = allocate(newLength);
+				newColumns[i].put(from);
+				((Buffer) newColumns[i]).clear();
+			}
+			columns = newColumns;
+		}
+	
+		/* (non-Javadoc)
+		 * @see edu.mit.isos.element.ElementStore#set(int, int, double)
+		 */
+		@Override
+		protected void set(int column, int index, double value) {
+			columns[column].put(index, value);
+		}
+	}
+}
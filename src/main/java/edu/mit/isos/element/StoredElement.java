@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.element;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.mit.isos.context.Location;
+import edu.mit.isos.state.State;
+
+/**
+ * A {@link DefaultElement} which keeps its current and next resource
+ * contents in a shared {@link ElementStore} rather than in separate
+ * resource objects.
+ * 
+ * @see DefaultElement#store(ElementStore)
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class StoredElement extends DefaultElement {
+	
+	/**
+	 * Instantiates a new stored element with a name, initial location,
+	 * and list of states. The first supplied state is set as the initial.
+	 *
+	 * @param store the element store
+	 * @param name the name
+	 * @param initialLocation the initial location
+	 * @param states the states
+	 */
+	public StoredElement(ElementStore store, String name,
+			Location initialLocation, List<State> states) {
+		super(name, initialLocation, states);
+		store(store);
+	}
+	
+	/**
+	 * Instantiates a new stored element with a name, initial location,
+	 * and initial operational state.
+	 *
+	 * @param store the element store
+	 * @param name the name
+	 * @param initialLocation the initial location
+	 * @param initialState the initial state
+	 */
+	public StoredElement(ElementStore store, String name,
+			Location initialLocation, State initialState) {
+		this(store, name, initialLocation, Arrays.asList(initialState));
+	}
+	
+	/**
+	 * Gets this element's id in the element store.
+	 *
+	 * @return the id
+	 */
+	public int getId() {
+		return getStoreId();
+	}
+}
@@ -16,9 +16,11 @@
 package edu.mit.isos.hla;
 
 import java.util.Collection;
+import java.util.Set;
 
 import edu.mit.isos.context.Scenario;
 import edu.mit.isos.element.Element;
+import edu.mit.isos.element.ElementImpl;
 
 /**
  * Ambassador interface. Defines required activities including connect,
@@ -58,9 +60,15 @@ public interface ISOSambassador {
 	public void initialize(Scenario scenario, int numIterations, long timeStep);
 			
 	/**
-	 * Advance a simulation execution by one time step.
+	 * Advance a simulation execution by one time step, iterating only 
+	 * active local elements (e.g. excluding dormant elements). Ambassadors 
+	 * synchronizing a fixed time step with other federates may reject 
+	 * durations other than the time step.
+	 *
+	 * @param duration the time step duration
+	 * @param active the active local elements
 	 */
-	public void advance();
+	public void advance(long duration, Set<? extends ElementImpl> active);
 	
 	/**
 	 * Disconnect from a federation.
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.state.ResourceIterating;
+
+/**
+ * Accelerates the fixed-point iteration of exchanged quantities within a
+ * time step with Anderson mixing. One iteration of all elements maps the
+ * vector of committed quantities x to g(x). After each iteration, the
+ * committed quantities are replaced by g(x) less a least-squares
+ * combination of the most recent changes in g(x), chosen to minimize
+ * the residual g(x) - x. A history depth of one reduces to a secant
+ * (Aitken-type) extrapolation. Only elements with states implementing
+ * {@link ResourceIterating} are accelerated. Accelerated values are 
+ * truncated at zero only for quantities a state reports as non-negative 
+ * by construction (see {@link ResourceIterating#isIterateNonNegative(int)}); 
+ * other quantities are left as mixed.
+ * <p>
+ * Accelerated values are written directly into the committed quantities 
+ * of each state. A quantity sent by one element and the corresponding 
+ * quantity received by another are separate components of the iterate 
+ * which only agree at the fixed point, so they may disagree while a time 
+ * step is iterating. Exchanges are therefore only consistent once the 
+ * iteration converges; callers should not accelerate after the final 
+ * iteration of a time step so committed quantities result from a plain 
+ * iteration. Sent and received pairs must report the same non-negativity 
+ * so truncation treats both sides alike.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class AndersonAccelerator {
+	private final int depth;
+	
+	private final List<ResourceIterating> states = new ArrayList<ResourceIterating>();
+	private int size;
+	private double[] iterate = new double[0];
+	private boolean[] nonNegative = new boolean[0];
+	private double[] previousResidual, previousValue;
+	private final LinkedList<double[]> residualChanges = new LinkedList<double[]>();
+	private final LinkedList<double[]> valueChanges = new LinkedList<double[]>();
+	private long accelerations, iterations;
+	
+	/**
+	 * Instantiates a new Anderson accelerator.
+	 *
+	 * @param depth the number of previous iterations used for mixing
+	 */
+	public AndersonAccelerator(int depth) {
+		if(depth < 1) {
+			throw new IllegalArgumentException(
+					"Depth must be at least one.");
+		}
+		this.depth = depth;
+	}
+	
+	/**
+	 * Accelerates the quantities committed by the last iteration.
+	 */
+	public void accelerate() {
+		iterations++;
+		if(size == 0) {
+			return;
+		}
+		double[] value = new double[size];
+		read(value);
+		double[] residual = new double[size];
+		for(int i = 0; i < size; i++) {
+			residual[i] = value[i] - iterate[i];
+		}
+		if(previousResidual != null) {
+			residualChanges.add(subtract(residual, previousResidual));
+			valueChanges.add(subtract(value, previousValue));
+			if(residualChanges.size() > Math.min(depth, size)) {
+				residualChanges.removeFirst();
+				valueChanges.removeFirst();
+			}
+		}
+		previousResidual = residual;
+		previousValue = value;
+	
+		double[] next = value.clone();
+		if(!residualChanges.isEmpty()) {
+			Array2DRowRealMatrix changes = new Array2DRowRealMatrix(
+					size, residualChanges.size());
+			for(int j = 0; j < residualChanges.size(); j++) {
+				changes.setColumn(j, residualChanges.get(j));
+			}
+			try {
+				double[] gamma = new QRDecomposition(changes).getSolver()
+						.solve(new ArrayRealVector(residual, false)).toArray();
+				for(int j = 0; j < gamma.length; j++) {
+					double[] change = valueChanges.get(j);
+					for(int i = 0; i < size; i++) {
+						next[i] -= gamma[j]*change[i];
+					}
+				}
+				for(int i = 0; i < size; i++) {
+					if(nonNegative[i]) {
+						next[i] = Math.max(0, next[i]);
+					}
+				}
+				accelerations++;
+			} catch(SingularMatrixException e) {
+				// restart mixing from the current iterate
+				residualChanges.clear();
+				valueChanges.clear();
+				next = value;
+			}
+		}
+		write(next);
+		iterate = next;
+	}
+	
+	/**
+	 * Starts accelerating a time step, recording the initial quantities.
+	 *
+	 * @param elements the iterated elements
+	 */
+	public void beginStep(Collection<? extends ElementImpl> elements) {
+		states.clear();
+		size = 0;
+		for(ElementImpl element : elements) {
+			if(element.getState() instanceof ResourceIterating) {
+				ResourceIterating state = (ResourceIterating) element.getState();
+				states.add(state);
+				size += state.getIterateSize();
+			}
+		}
+		if(iterate.length != size) {
+			iterate = new double[size];
+			nonNegative = new boolean[size];
+		}
+		int offset = 0;
+		for(ResourceIterating state : states) {
+			for(int i = 0; i < state.getIterateSize(); i++) {
+				nonNegative[offset + i] = state.isIterateNonNegative(i);
+			}
+			offset += state.getIterateSize();
+		}
+		read(iterate);
+		previousResidual = previousValue = null;
+		residualChanges.clear();
+		valueChanges.clear();
+	}
+	
+	/**
+	 * Gets the number of accelerated iterations.
+	 *
+	 * @return the number of accelerated iterations
+	 */
+	public long getAccelerations() {
+		return accelerations;
+	}
+	
+	/**
+	 * Gets the history depth.
+	 *
+	 * @return the depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * Gets the number of iterations offered for acceleration.
+	 *
+	 * @return the number of iterations
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * Reads the committed quantities of all states.
+	 *
+	 * @param quantities the array in which to store quantities
+	 */
+	private void read(double[] quantities) {
+		int offset = 0;
+		for(ResourceIterating state : states) {
+			state.getIterate(quantities, offset);
+			offset += state.getIterateSize();
+		}
+	}
+	
+	/**
+	 * Subtracts two vectors.
+	 *
+	 * @param a the minuend
+	 * @param b the subtrahend
+	 * @return the difference
+	 */
+	private static double[] subtract(double[] a, double[] b) {
+		double[] c = new double[a.length];
+		for(int i = 0; i < a.length; i++) {
+			c[i] = a[i] - b[i];
+		}
+		return c;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AndersonAccelerator(" + depth + ")";
+	}
+	
+	/**
+	 * Writes quantities to the committed quantities of all states.
+	 *
+	 * @param quantities the quantities
+	 */
+	private void write(double[] quantities) {
+		int offset = 0;
+		for(ResourceIterating state : states) {
+			state.setIterate(quantities, offset);
+			offset += state.getIterateSize();
+		}
+	}
+}
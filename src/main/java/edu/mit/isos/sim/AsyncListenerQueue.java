@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.event.EventListenerList;
+
+import org.apache.log4j.Logger;
+
+import edu.mit.isos.hla.ISOSambassador;
+
+/**
+ * Delivers simulation time events to listeners asynchronously. Registered 
+ * with a simulator as a listener, the queue captures an immutable 
+ * {@link SimulationSnapshot} of the source simulator's scenario on the 
+ * simulation thread and publishes it to a bounded lock-free ring buffer. 
+ * A consumer thread drains snapshots in batches and delivers them in order 
+ * to the listeners added to this queue, so file output and verification 
+ * do not stall the simulation. When the buffer is full, the backpressure 
+ * policy either blocks the simulation thread, drops the new snapshot, or 
+ * coalesces it with the newest undelivered snapshot. Each queue accepts 
+ * snapshots from one simulation thread; listeners are called on the 
+ * consumer thread.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class AsyncListenerQueue implements SimulationTimeListener {
+	private static Logger logger = Logger.getLogger(AsyncListenerQueue.class);
+	private static final long PARK_NANOS = 100000;
+	
+	/**
+	 * The policies for publishing to a full buffer.
+	 */
+	public static enum Backpressure {
+		/** Wait until the consumer frees a slot. */
+		BLOCK, 
+		/** Discard the new snapshot. */
+		DROP, 
+		/** Replace the newest undelivered snapshot with the new snapshot. */
+		COALESCE
+	};
+	
+	private final int capacity, batchSize;
+	private final Backpressure backpressure;
+	private final AtomicReferenceArray<SimulationSnapshot> slots;
+	private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+	private final EventListenerList listeners = new EventListenerList();
+	private ISOSambassador peers;
+	
+	private volatile boolean closed = false;
+	private Thread consumer;
+	private volatile long dropped, coalesced, delivered, batches;
+	
+	/**
+	 * Instantiates a new asynchronous listener queue.
+	 *
+	 * @param capacity the number of buffered snapshots
+	 * @param batchSize the maximum number of snapshots drained at once
+	 * @param backpressure the policy when the buffer is full
+	 */
+	public AsyncListenerQueue(int capacity, int batchSize, Backpressure backpressure) {
+		if(capacity < 1 || batchSize < 1) {
+			throw new IllegalArgumentException(
+					"Capacity and batch size must be at least one.");
+		}
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.backpressure = backpressure;
+		slots = new AtomicReferenceArray<SimulationSnapshot>(capacity);
+	}
+	
+	/**
+	 * Adds a listener called on the consumer thread.
+	 *
+	 * @param listener the listener
+	 */
+	public void addSimulationTimeListener(SimulationTimeListener listener) {
+		listeners.add(SimulationTimeListener.class, listener);
+	}
+	
+	/**
+	 * Stops accepting snapshots and waits until all buffered 
+	 * snapshots are delivered.
+	 *
+	 * @throws InterruptedException Signals that the wait was interrupted.
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		if(consumer != null) {
+			LockSupport.unpark(consumer);
+			consumer.join();
+			consumer = null;
+		}
+		logger.info("Delivered " + delivered + " snapshots in " + batches 
+				+ " batches, dropped " + dropped + ", coalesced " + coalesced + ".");
+	}
+	
+	/**
+	 * Delivers a batch of snapshots to all listeners.
+	 *
+	 * @param batch the snapshots
+	 */
+	private void deliver(List<SimulationSnapshot> batch) {
+		SimulationTimeListener[] targets = listeners.getListeners(
+				SimulationTimeListener.class);
+		for(SimulationSnapshot snapshot : batch) {
+			for(SimulationTimeListener listener : targets) {
+				try {
+					listener.timeAdvanced(snapshot);
+				} catch(RuntimeException e) {
+					logger.error("Listener failed at time " + snapshot.getTime(), e);
+				}
+			}
+		}
+		delivered += batch.size();
+		batches++;
+	}
+	
+	/**
+	 * Drains snapshots until closed and empty.
+	 */
+	private void drain() {
+		List<SimulationSnapshot> batch = new ArrayList<SimulationSnapshot>(batchSize);
+		while(true) {
+			long h = head.get();
+			long available = Math.min(batchSize, tail.get() - h);
+			if(available == 0) {
+				if(closed && tail.get() == h) {
+					return;
+				}
+				LockSupport.parkNanos(PARK_NANOS);
+				continue;
+			}
+			for(long i = h; i < h + available; i++) {
+				batch.add(slots.getAndSet((int) (i % capacity), null));
+			}
+			head.lazySet(h + available);
+			deliver(batch);
+			batch.clear();
+		}
+	}
+	
+	/**
+	 * Gets the backpressure policy.
+	 *
+	 * @return the backpressure policy
+	 */
+	public Backpressure getBackpressure() {
+		return backpressure;
+	}
+	
+	/**
+	 * Gets the number of snapshots coalesced into newer snapshots.
+	 *
+	 * @return the number of coalesced snapshots
+	 */
+	public long getCoalesced() {
+		return coalesced;
+	}
+	
+	/**
+	 * Gets the number of snapshots delivered to listeners.
+	 *
+	 * @return the number of delivered snapshots
+	 */
+	public long getDelivered() {
+		return delivered;
+	}
+	
+	/**
+	 * Gets the number of snapshots dropped.
+	 *
+	 * @return the number of dropped snapshots
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+	
+	/**
+	 * Publishes a snapshot to the buffer. 
+	 *
+	 * @param snapshot the snapshot
+	 */
+	private void publish(SimulationSnapshot snapshot) {
+		long t = tail.get();
+		while(t - head.get() >= capacity) {
+			if(backpressure == Backpressure.DROP) {
+				dropped++;
+				return;
+			} else if(backpressure == Backpressure.COALESCE) {
+				int newest = (int) ((t - 1) % capacity);
+				SimulationSnapshot previous = slots.get(newest);
+				// fails if the consumer took the newest snapshot meanwhile
+				if(previous != null && slots.compareAndSet(newest, previous, snapshot)) {
+					coalesced++;
+					return;
+				}
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+		slots.set((int) (t % capacity), snapshot);
+		tail.lazySet(t + 1);
+	}
+	
+	/**
+	 * Removes a listener.
+	 *
+	 * @param listener the listener
+	 */
+	public void removeSimulationTimeListener(SimulationTimeListener listener) {
+		listeners.remove(SimulationTimeListener.class, listener);
+	}
+	
+	/**
+	 * Sets the ambassador whose elements are verified for imbalanced 
+	 * exchanges in each snapshot.
+	 *
+	 * @param peers the ambassador, or null to not verify exchanges
+	 */
+	public void setExchangePeers(ISOSambassador peers) {
+		this.peers = peers;
+	}
+	
+	/**
+	 * Starts the consumer thread.
+	 */
+	public void start() {
+		if(consumer != null) {
+			throw new IllegalStateException("Queue has already started.");
+		}
+		closed = false;
+		consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "AsyncListenerQueue");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+	
+	/* (non-Javadoc)
+	 * @see edu.mit.isos.sim.SimulationTimeListener#timeAdvanced(edu.mit.isos.sim.SimulationTimeEvent)
+	 */
+	@Override
+	public void timeAdvanced(SimulationTimeEvent event) {
+		if(closed || consumer == null) {
+			throw new IllegalStateException("Queue is not started.");
+		}
+		Simulator simulator = (Simulator) event.getSource();
+		publish(SimulationSnapshot.capture(event, simulator.getScenario(), 
+				peers == null ? null : peers.getElements()));
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AsyncListenerQueue(" + capacity + ", " 
+				+ batchSize + ", " + backpressure + ")";
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import hla.rti1516e.exceptions.RTIexception;
+import edu.mit.isos.context.Scenario;
+import edu.mit.isos.hla.ISOSambassador;
+
+/**
+ * A what-if branch of a simulation forked from a common prefix. Each 
+ * branch builds an independent copy of the scenario with its own parameter 
+ * overrides (e.g. an earlier commissioning time or a different capacity). 
+ * Branch scenarios must have the same elements, states, and locations 
+ * as the forked scenario so its checkpoint can be restored.
+ *
+ * @see Simulator#branch(ISOSambassador, String, long, long, long, int, java.util.List, int)
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public interface Branch {
+	
+	/**
+	 * Builds a new scenario with this branch's parameter overrides.
+	 *
+	 * @return the scenario
+	 */
+	public Scenario buildScenario();
+	
+	/**
+	 * Gets a new ambassador to execute this branch.
+	 *
+	 * @return the ambassador
+	 * @throws RTIexception Signals that an RTI exception has occurred.
+	 */
+	public ISOSambassador getAmbassador() throws RTIexception;
+	
+	/**
+	 * Gets the name which tags this branch's outputs.
+	 *
+	 * @return the name
+	 */
+	public String getName();
+}
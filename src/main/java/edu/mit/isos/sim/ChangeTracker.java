@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.isos.element.Element;
+import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.state.ResourceIterating;
+
+/**
+ * Tracks changes to committed quantities between iterations within a time
+ * step so elements whose inputs are unchanged can skip iterative state
+ * updates. All elements update in the first iteration of a time step. In
+ * later iterations, an element updates only if it or an element on which
+ * it depends changed a committed quantity by more than the tolerance,
+ * relative to the magnitude of the quantity for magnitudes larger than
+ * one. Elements with states not implementing {@link ResourceIterating}
+ * and elements depending on untracked (e.g. remote) elements are always
+ * updated, and the former are always considered changed.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class ChangeTracker {
+	private final double tolerance;
+	
+	private List<ElementImpl> elements;
+	private final Set<ElementImpl> tracked = new HashSet<ElementImpl>();
+	private final Map<Element, List<ElementImpl>> dependents =
+			new HashMap<Element, List<ElementImpl>>();
+	private final Set<ElementImpl> untrackedDependencies = new HashSet<ElementImpl>();
+	private final Map<ElementImpl, double[]> quantities =
+			new HashMap<ElementImpl, double[]>();
+	private Set<ElementImpl> dirty = new HashSet<ElementImpl>();
+	private Set<ElementImpl> next = new HashSet<ElementImpl>();
+	private final List<ElementImpl> update = new ArrayList<ElementImpl>();
+	private double[] current = new double[0];
+	private long updates, skips;
+	
+	/**
+	 * Instantiates a new change tracker.
+	 *
+	 * @param tolerance the change tolerance
+	 */
+	public ChangeTracker(double tolerance) {
+		if(tolerance < 0) {
+			throw new IllegalArgumentException(
+					"Tolerance cannot be negative.");
+		}
+		this.tolerance = tolerance;
+	}
+	
+	/**
+	 * Starts tracking a time step, recording the initial quantities
+	 * and marking all elements to update.
+	 */
+	public void beginStep() {
+		if(elements == null) {
+			throw new IllegalStateException(
+					"Change tracker has not been initialized.");
+		}
+		for(ElementImpl element : elements) {
+			if(element.getState() instanceof ResourceIterating) {
+				ResourceIterating state = (ResourceIterating) element.getState();
+				double[] values = quantities.get(element);
+				if(values == null || values.length != state.getIterateSize()) {
+					values = new double[state.getIterateSize()];
+					quantities.put(element, values);
+				}
+				state.getIterate(values, 0);
+			} else {
+				quantities.remove(element);
+			}
+		}
+		dirty.clear();
+		dirty.addAll(elements);
+	}
+	
+	/**
+	 * Detects changes in committed quantities after an iteration
+	 * and marks the elements to update in the next iteration.
+	 */
+	public void endIteration() {
+		next.clear();
+		next.addAll(untrackedDependencies);
+		for(ElementImpl element : elements) {
+			double[] values = quantities.get(element);
+			if(values == null
+					|| !(element.getState() instanceof ResourceIterating)
+					|| ((ResourceIterating) element.getState()).getIterateSize() 
+							!= values.length) {
+				next.add(element);
+				next.addAll(getDependents(element));
+				continue;
+			}
+			ResourceIterating state = (ResourceIterating) element.getState();
+			if(current.length < values.length) {
+				current = new double[values.length];
+			}
+			state.getIterate(current, 0);
+			boolean changed = false;
+			for(int i = 0; i < values.length; i++) {
+				changed = changed || Math.abs(current[i] - values[i])
+						> tolerance*Math.max(1, Math.abs(current[i]));
+				values[i] = current[i];
+			}
+			if(changed) {
+				next.add(element);
+				next.addAll(getDependents(element));
+			}
+		}
+		Set<ElementImpl> swap = dirty;
+		dirty = next;
+		next = swap;
+	}
+	
+	/**
+	 * Gets the elements depending on an element.
+	 *
+	 * @param element the element
+	 * @return the dependents
+	 */
+	private List<ElementImpl> getDependents(Element element) {
+		if(dependents.containsKey(element)) {
+			return dependents.get(element);
+		}
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Gets the active elements to update in the current iteration. The 
+	 * returned list is reused by later calls.
+	 *
+	 * @param active the active elements
+	 * @return the elements to update
+	 */
+	public List<ElementImpl> getDirty(Set<? extends ElementImpl> active) {
+		update.clear();
+		int candidates = 0;
+		for(ElementImpl element : elements) {
+			if(active.contains(element)) {
+				candidates++;
+				if(dirty.contains(element)) {
+					update.add(element);
+				}
+			}
+		}
+		updates += update.size();
+		skips += candidates - update.size();
+		return update;
+	}
+	
+	/**
+	 * Gets the fraction of iterative state updates skipped.
+	 *
+	 * @return the skip rate
+	 */
+	public double getSkipRate() {
+		return updates + skips == 0 ? 0 : skips/((double) updates + skips);
+	}
+	
+	/**
+	 * Gets the number of iterative state updates skipped.
+	 *
+	 * @return the number of skipped updates
+	 */
+	public long getSkips() {
+		return skips;
+	}
+	
+	/**
+	 * Gets the change tolerance.
+	 *
+	 * @return the tolerance
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+	
+	/**
+	 * Gets the number of iterative state updates performed.
+	 *
+	 * @return the number of updates
+	 */
+	public long getUpdates() {
+		return updates;
+	}
+	
+	/**
+	 * Initializes this tracker for a set of elements.
+	 *
+	 * @param elements the iterated elements
+	 * @param scheduler the scheduler recording dependencies between elements
+	 */
+	public void initialize(Collection<? extends ElementImpl> elements,
+			GaussSeidelScheduler scheduler) {
+		this.elements = new ArrayList<ElementImpl>(elements);
+		tracked.clear();
+		tracked.addAll(this.elements);
+		quantities.clear();
+		dependents.clear();
+		untrackedDependencies.clear();
+		for(ElementImpl element : this.elements) {
+			for(Element dependency : scheduler.getDependencies(element)) {
+				if(!tracked.contains(dependency)) {
+					untrackedDependencies.add(element);
+				} else {
+					if(!dependents.containsKey(dependency)) {
+						dependents.put(dependency, new ArrayList<ElementImpl>());
+					}
+					dependents.get(dependency).add(element);
+				}
+			}
+		}
+		updates = skips = 0;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ChangeTracker(" + tolerance + ")";
+	}
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.isos.context.Location;
+import edu.mit.isos.context.Resource;
+import edu.mit.isos.context.ResourceCodec;
+import edu.mit.isos.context.Scenario;
+import edu.mit.isos.element.DefaultElement;
+import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.state.Checkpointing;
+import edu.mit.isos.state.ResourceIterating;
+import edu.mit.isos.state.State;
+import edu.mit.isos.state.TransitionScheduler;
+
+/**
+ * A checkpoint of a simulation between time steps in a versioned binary 
+ * format. A checkpoint records the contents, state, parent, and location 
+ * of each {@link DefaultElement} in a scenario, the committed quantities 
+ * of states implementing {@link ResourceIterating}, the internal fields 
+ * of states implementing {@link Checkpointing}, and the dormant and 
+ * multi-rate update times of each element, and the durations of the 
+ * time steps accepted so far. Between time steps, the next contents, 
+ * state, parent, and location of an element equal the current ones, so 
+ * only current values are recorded. Elements and locations are 
+ * identified by their order in the scenario and states by their order of 
+ * names, so a checkpoint must be restored to an identically-built 
+ * scenario after initialization. Resources are recorded in the native 
+ * number format of their implementation with {@link ResourceCodec}; 
+ * other fields of states not implementing {@link Checkpointing} are 
+ * not recorded.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class Checkpoint {
+	public static final int MAGIC = 0x49534F53;
+	public static final int VERSION = 3;
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final long NONE = Long.MIN_VALUE;
+	
+	private final long time, nextDuration;
+	private final long[] stepHistory;
+	
+	/**
+	 * Instantiates a new checkpoint.
+	 *
+	 * @param time the time
+	 * @param nextDuration the next time step duration
+	 * @param stepHistory the accepted time step durations
+	 */
+	Checkpoint(long time, long nextDuration, long[] stepHistory) {
+		this.time = time;
+		this.nextDuration = nextDuration;
+		this.stepHistory = stepHistory;
+	}
+	
+	/**
+	 * Gets a resource from a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @return the resource
+	 */
+	public static Resource getResource(ByteBuffer buffer) {
+		return ResourceCodec.get(buffer);
+	}
+	
+	/**
+	 * Gets the number of bytes to put a resource into a buffer.
+	 *
+	 * @param resource the resource
+	 * @return the resource size
+	 */
+	public static int getResourceSize(Resource resource) {
+		return ResourceCodec.getSize(resource);
+	}
+	
+	/**
+	 * Puts a resource into a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @param resource the resource
+	 */
+	public static void putResource(ByteBuffer buffer, Resource resource) {
+		ResourceCodec.put(buffer, resource);
+	}
+	
+	/**
+	 * Gets the states of an element in order of names.
+	 *
+	 * @param element the element
+	 * @return the ordered states
+	 */
+	private static List<State> getStates(ElementImpl element) {
+		List<State> states = new ArrayList<State>(element.getStates());
+		Collections.sort(states, new Comparator<State>() {
+			@Override
+			public int compare(State s1, State s2) {
+				return s1.getName().compareTo(s2.getName());
+			}
+		});
+		for(int i = 1; i < states.size(); i++) {
+			if(states.get(i).getName().equals(states.get(i - 1).getName())) {
+				throw new IllegalStateException("Element " + element.getName() 
+						+ " has multiple states named " + states.get(i).getName());
+			}
+		}
+		return states;
+	}
+	
+	/**
+	 * Gets the number of bytes to put the states of an element into a buffer.
+	 *
+	 * @param states the ordered states
+	 * @return the states size
+	 */
+	private static int getStatesSize(List<State> states) {
+		int size = 0;
+		for(State state : states) {
+			size += 4 + 4;
+			if(state instanceof ResourceIterating) {
+				size += 8*((ResourceIterating) state).getIterateSize();
+			}
+			if(state instanceof Checkpointing) {
+				size += ((Checkpointing) state).getCheckpointSize();
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Puts the committed quantities and internal fields of the states of 
+	 * an element into a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @param states the ordered states
+	 */
+	private static void putStates(ByteBuffer buffer, List<State> states) {
+		for(State state : states) {
+			if(state instanceof ResourceIterating) {
+				double[] iterate = new double[
+						((ResourceIterating) state).getIterateSize()];
+				((ResourceIterating) state).getIterate(iterate, 0);
+				buffer.putInt(iterate.length);
+				for(double value : iterate) {
+					buffer.putDouble(value);
+				}
+			} else {
+				buffer.putInt(0);
+			}
+			if(state instanceof Checkpointing) {
+				buffer.putInt(((Checkpointing) state).getCheckpointSize());
+				((Checkpointing) state).getCheckpoint(buffer);
+			} else {
+				buffer.putInt(0);
+			}
+		}
+	}
+	
+	/**
+	 * Reads a checkpoint and restores it to an initialized scenario.
+	 *
+	 * @param path the checkpoint path
+	 * @param scenario the scenario
+	 * @param transitions the scheduler of dormant elements
+	 * @param multiRate the scheduler of multi-rate elements
+	 * @return the checkpoint
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static Checkpoint read(Path path, Scenario scenario, 
+			TransitionScheduler transitions, MultiRateScheduler multiRate) 
+					throws IOException {
+		ByteBuffer buffer;
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			buffer = ByteBuffer.allocate((int) channel.size());
+			while(buffer.hasRemaining() && channel.read(buffer) >= 0) { }
+		} finally {
+			channel.close();
+		}
+		((Buffer) buffer).flip();
+		
+		if(buffer.getInt() != MAGIC) {
+			throw new IOException("Not a checkpoint: " + path);
+		}
+		int version = buffer.getInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported checkpoint version " + version 
+					+ ", expected " + VERSION + ".");
+		}
+		long time = buffer.getLong();
+		long nextDuration = buffer.getLong();
+		long[] stepHistory = new long[buffer.getInt()];
+		for(int i = 0; i < stepHistory.length; i++) {
+			stepHistory[i] = buffer.getLong();
+		}
+		List<ElementImpl> elements = new ArrayList<ElementImpl>(scenario.getElements());
+		List<Location> locations = new ArrayList<Location>(scenario.getLocations());
+		if(buffer.getInt() != elements.size()) {
+			throw new IOException("Checkpoint does not match scenario " + scenario);
+		}
+		
+		transitions.clear();
+		for(ElementImpl element : elements) {
+			byte[] name = new byte[buffer.getInt()];
+			buffer.get(name);
+			if(!element.getName().equals(new String(name, CHARSET))) {
+				throw new IOException("Checkpoint element " + new String(name, CHARSET) 
+						+ " does not match " + element.getName());
+			}
+			List<State> states = getStates(element);
+			Resource contents = getResource(buffer);
+			int state = buffer.getInt();
+			int parent = buffer.getInt();
+			int location = buffer.getInt();
+			if(!(element instanceof DefaultElement)) {
+				throw new IOException("Cannot restore element " + element.getName());
+			}
+			((DefaultElement) element).restore(contents, 
+					state < 0 ? null : states.get(state), 
+					parent < 0 ? null : elements.get(parent), 
+					location < 0 ? null : locations.get(location));
+			long updateTime = buffer.getLong();
+			if(updateTime != NONE) {
+				multiRate.setUpdated(element, updateTime);
+			}
+			setStates(buffer, states);
+		}
+		int dormant = buffer.getInt();
+		for(int i = 0; i < dormant; i++) {
+			ElementImpl element = elements.get(buffer.getInt());
+			long dormantTime = buffer.getLong();
+			long wakeTime = buffer.getLong();
+			transitions.restore(element, dormantTime, wakeTime);
+		}
+		return new Checkpoint(time, nextDuration, stepHistory);
+	}
+	
+	/**
+	 * Restores the committed quantities and internal fields of the states 
+	 * of an element from a buffer.
+	 *
+	 * @param buffer the buffer
+	 * @param states the ordered states
+	 */
+	private static void setStates(ByteBuffer buffer, List<State> states) {
+		for(State s : states) {
+			double[] iterate = new double[buffer.getInt()];
+			for(int i = 0; i < iterate.length; i++) {
+				iterate[i] = buffer.getDouble();
+			}
+			if(s instanceof ResourceIterating) {
+				((ResourceIterating) s).setIterate(iterate, 0);
+			}
+			int size = buffer.getInt();
+			if(s instanceof Checkpointing) {
+				int position = buffer.position();
+				((Checkpointing) s).setCheckpoint(buffer);
+				((Buffer) buffer).position(position + size);
+			} else {
+				((Buffer) buffer).position(buffer.position() + size);
+			}
+		}
+	}
+	
+	/**
+	 * Takes a snapshot of the committed quantities and internal fields of 
+	 * the states of an element, e.g. to roll back an iterated time step.
+	 *
+	 * @param element the element
+	 * @return the snapshot
+	 */
+	static ByteBuffer snapshot(ElementImpl element) {
+		List<State> states = getStates(element);
+		ByteBuffer buffer = ByteBuffer.allocate(getStatesSize(states));
+		putStates(buffer, states);
+		((Buffer) buffer).flip();
+		return buffer;
+	}
+	
+	/**
+	 * Restores the states of an element from a snapshot.
+	 *
+	 * @param element the element
+	 * @param snapshot the snapshot
+	 */
+	static void restore(ElementImpl element, ByteBuffer snapshot) {
+		setStates(snapshot.duplicate(), getStates(element));
+	}
+	
+	/**
+	 * Writes a checkpoint of a scenario between time steps.
+	 *
+	 * @param path the checkpoint path
+	 * @param scenario the scenario
+	 * @param time the time
+	 * @param nextDuration the next time step duration
+	 * @param stepHistory the accepted time step durations
+	 * @param numSteps the number of accepted time steps
+	 * @param transitions the scheduler of dormant elements
+	 * @param multiRate the scheduler of multi-rate elements
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void write(Path path, Scenario scenario, long time, 
+			long nextDuration, long[] stepHistory, int numSteps, 
+			TransitionScheduler transitions, MultiRateScheduler multiRate) 
+					throws IOException {
+		List<ElementImpl> elements = new ArrayList<ElementImpl>(scenario.getElements());
+		Map<Object, Integer> indices = getIndices(elements, 
+				new IdentityHashMap<Object, Integer>());
+		Map<Object, Integer> locationIndices = getIndices(scenario.getLocations(), 
+				new HashMap<Object, Integer>());
+		List<byte[]> names = new ArrayList<byte[]>(elements.size());
+		List<ElementImpl> dormant = transitions.getDormant();
+		
+		// size the buffer before writing
+		int size = 4 + 4 + 8 + 8 + 4 + 8*numSteps + 4 + 4 
+				+ dormant.size()*(4 + 8 + 8);
+		for(ElementImpl element : elements) {
+			names.add(element.getName().getBytes(CHARSET));
+			size += 4 + names.get(names.size() - 1).length 
+					+ getResourceSize(element.getContents()) + 4 + 4 + 4 + 8;
+			size += getStatesSize(getStates(element));
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(time)
+				.putLong(nextDuration).putInt(numSteps);
+		for(int i = 0; i < numSteps; i++) {
+			buffer.putLong(stepHistory[i]);
+		}
+		buffer.putInt(elements.size());
+		for(int e = 0; e < elements.size(); e++) {
+			ElementImpl element = elements.get(e);
+			List<State> states = getStates(element);
+			buffer.putInt(names.get(e).length).put(names.get(e));
+			putResource(buffer, element.getContents());
+			buffer.putInt(states.indexOf(element.getState()));
+			buffer.putInt(indexOf(indices, element.getParent()));
+			buffer.putInt(indexOf(locationIndices, element.getLocation()));
+			buffer.putLong(multiRate.getUpdateTime(element));
+			putStates(buffer, states);
+		}
+		buffer.putInt(dormant.size());
+		for(ElementImpl element : dormant) {
+			buffer.putInt(indexOf(indices, element))
+					.putLong(transitions.getDormantTime(element))
+					.putLong(transitions.getWakeTime(element));
+		}
+		((Buffer) buffer).flip();
+		
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, 
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Gets the indices of scenario elements or locations.
+	 *
+	 * @param objects the scenario elements or locations
+	 * @param indices the empty map of indices
+	 * @return the indices
+	 */
+	private static Map<Object, Integer> getIndices(Collection<?> objects, 
+			Map<Object, Integer> indices) {
+		int index = 0;
+		for(Object object : objects) {
+			if(!indices.containsKey(object)) {
+				indices.put(object, index);
+			}
+			index++;
+		}
+		return indices;
+	}
+	
+	/**
+	 * Gets the index of an element or location in a scenario.
+	 *
+	 * @param indices the indices of scenario elements or locations
+	 * @param object the element or location
+	 * @return the index, or -1 if null
+	 */
+	private static int indexOf(Map<Object, Integer> indices, Object object) {
+		if(object == null) {
+			return -1;
+		}
+		Integer index = indices.get(object);
+		if(index == null) {
+			throw new IllegalStateException("Cannot checkpoint " 
+					+ object + " outside of the scenario.");
+		}
+		return index;
+	}
+	
+	/**
+	 * Gets the duration of the next time step, which may differ 
+	 * from the base time step for adaptive time steps.
+	 *
+	 * @return the next time step duration
+	 */
+	public long getNextDuration() {
+		return nextDuration;
+	}
+	
+	/**
+	 * Gets the durations of the time steps accepted before the checkpoint.
+	 *
+	 * @return the accepted time step durations
+	 */
+	public long[] getStepHistory() {
+		return stepHistory.clone();
+	}
+	
+	/**
+	 * Gets the time of the next time step.
+	 *
+	 * @return the time
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Checkpoint(" + time + ")";
+	}
+}
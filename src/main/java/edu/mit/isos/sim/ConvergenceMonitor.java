@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import edu.mit.isos.element.Element;
+import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.state.ResourceIterating;
+
+/**
+ * Measures the convergence of iterations within a time step to stop 
+ * iterating once exchanged quantities have settled. The residual of an 
+ * iteration is the largest change in any iterated quantity (see 
+ * {@link ResourceIterating}) of the elements' states and of peers, 
+ * relative to the magnitude of the quantity for magnitudes larger than 
+ * one. A time step converges once the residual is no larger than the 
+ * tolerance after at least the minimum number of iterations. The number 
+ * of iterations and the residual history of each time step are recorded.
+ * <p>
+ * Distributed federates reach the same decision if each measures all 
+ * published element instances (local and remote) as peers, because every 
+ * federate then measures the same quantities after each time advance, 
+ * provided all federates use the same tolerance and iteration bounds.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class ConvergenceMonitor {
+	private final double tolerance;
+	private final int minIterations, maxIterations;
+	
+	private final List<ResourceIterating> iterating = new ArrayList<ResourceIterating>();
+	private double[] previous = new double[0], current = new double[0];
+	private double[] residuals;
+	private int iterations;
+	
+	private final List<Integer> iterationCounts = new ArrayList<Integer>();
+	private final List<double[]> residualHistories = new ArrayList<double[]>();
+	
+	/**
+	 * Instantiates a new convergence monitor.
+	 *
+	 * @param tolerance the residual tolerance
+	 * @param minIterations the minimum number of iterations per time step
+	 * @param maxIterations the maximum number of iterations per time step
+	 */
+	public ConvergenceMonitor(double tolerance, 
+			int minIterations, int maxIterations) {
+		if(tolerance < 0) {
+			throw new IllegalArgumentException(
+					"Tolerance cannot be negative.");
+		}
+		if(minIterations < 1 || maxIterations < minIterations) {
+			throw new IllegalArgumentException("Invalid iteration bounds [" 
+					+ minIterations + ", " + maxIterations + "].");
+		}
+		this.tolerance = tolerance;
+		this.minIterations = minIterations;
+		this.maxIterations = maxIterations;
+		residuals = new double[maxIterations];
+	}
+	
+	/**
+	 * Starts monitoring a time step, recording the initial quantities.
+	 *
+	 * @param elements the iterated elements
+	 * @param peers the other elements whose quantities are measured
+	 */
+	public void beginStep(Collection<? extends ElementImpl> elements, 
+			Collection<? extends Element> peers) {
+		iterating.clear();
+		int size = 0;
+		for(ElementImpl element : elements) {
+			if(element.getState() instanceof ResourceIterating) {
+				iterating.add((ResourceIterating) element.getState());
+				size += ((ResourceIterating) element.getState()).getIterateSize();
+			}
+		}
+		for(Element peer : peers) {
+			if(peer instanceof ResourceIterating) {
+				iterating.add((ResourceIterating) peer);
+				size += ((ResourceIterating) peer).getIterateSize();
+			}
+		}
+		if(previous.length != size) {
+			previous = new double[size];
+			current = new double[size];
+		}
+		measure(previous);
+		iterations = 0;
+	}
+	
+	/**
+	 * Clears the recorded iteration counts and residual histories.
+	 */
+	public void clear() {
+		iterationCounts.clear();
+		residualHistories.clear();
+	}
+	
+	/**
+	 * Ends monitoring a time step, recording its number of 
+	 * iterations and residual history.
+	 */
+	public void endStep() {
+		iterationCounts.add(iterations);
+		residualHistories.add(Arrays.copyOf(residuals, iterations));
+	}
+	
+	/**
+	 * Measures the residual after an iteration.
+	 *
+	 * @return true, if the time step has converged
+	 */
+	public boolean endIteration() {
+		measure(current);
+		double residual = 0;
+		for(int i = 0; i < current.length; i++) {
+			residual = Math.max(residual, Math.abs(current[i] - previous[i]) 
+					/ Math.max(1, Math.abs(current[i])));
+		}
+		double[] swap = previous;
+		previous = current;
+		current = swap;
+		if(iterations < residuals.length) {
+			residuals[iterations] = residual;
+		}
+		iterations++;
+		return iterations >= minIterations && residual <= tolerance;
+	}
+	
+	/**
+	 * Gets the number of iterations of each monitored time step.
+	 *
+	 * @return the iteration counts
+	 */
+	public List<Integer> getIterationCounts() {
+		return Collections.unmodifiableList(iterationCounts);
+	}
+	
+	/**
+	 * Gets the maximum number of iterations per time step.
+	 *
+	 * @return the maximum number of iterations
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+	
+	/**
+	 * Gets the minimum number of iterations per time step.
+	 *
+	 * @return the minimum number of iterations
+	 */
+	public int getMinIterations() {
+		return minIterations;
+	}
+	
+	/**
+	 * Gets the residual history of each monitored time step.
+	 *
+	 * @return the residual histories
+	 */
+	public List<double[]> getResidualHistories() {
+		return Collections.unmodifiableList(residualHistories);
+	}
+	
+	/**
+	 * Gets the residual tolerance.
+	 *
+	 * @return the tolerance
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+	
+	/**
+	 * Gets the total number of iterations of all monitored time steps.
+	 *
+	 * @return the total number of iterations
+	 */
+	public long getTotalIterations() {
+		long total = 0;
+		for(int count : iterationCounts) {
+			total += count;
+		}
+		return total;
+	}
+	
+	/**
+	 * Measures the iterated quantities of element states and peers.
+	 *
+	 * @param quantities the array in which to store quantities
+	 */
+	private void measure(double[] quantities) {
+		int offset = 0;
+		for(ResourceIterating state : iterating) {
+			state.getIterate(quantities, offset);
+			offset += state.getIterateSize();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ConvergenceMonitor(" + tolerance + ", [" 
+				+ minIterations + ", " + maxIterations + "])";
+	}
+}
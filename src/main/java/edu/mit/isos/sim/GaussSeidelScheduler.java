@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.isos.element.Element;
+import edu.mit.isos.element.ElementImpl;
+
+/**
+ * Schedules iterations in Gauss-Seidel order so values updated earlier
+ * in an iteration are visible to elements updated later in the same
+ * iteration. An element depends on another element if it reads the
+ * other element's values during an iterative state update (e.g. a
+ * supplier reads the quantity received by its customer). Elements are
+ * grouped into strongly-connected components of the dependency graph
+ * and components are ordered such that dependencies come first. Elements
+ * within a component are ordered as originally provided. Each element
+ * commits its iterative state update before the next element updates.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class GaussSeidelScheduler {
+	private final Map<Element, Set<Element>> dependencies =
+			new HashMap<Element, Set<Element>>();
+	private List<List<ElementImpl>> components =
+			new ArrayList<List<ElementImpl>>();
+	
+	// working variables for Tarjan's strongly-connected components algorithm
+	private Map<Element, Integer> index, lowLink, order;
+	private List<ElementImpl> stack, path;
+	private List<Iterator<Element>> pathDependencies;
+	private Set<ElementImpl> onStack;
+	
+	/**
+	 * Adds a dependency of an element on another element.
+	 *
+	 * @param element the dependent element
+	 * @param dependency the element on which it depends
+	 */
+	public void addDependency(Element element, Element dependency) {
+		if(element == null || dependency == null || element.equals(dependency)) {
+			return;
+		}
+		if(!dependencies.containsKey(element)) {
+			dependencies.put(element, new LinkedHashSet<Element>());
+		}
+		dependencies.get(element).add(dependency);
+	}
+	
+	/**
+	 * Clears all dependencies and the schedule.
+	 */
+	public void clear() {
+		dependencies.clear();
+		components = new ArrayList<List<ElementImpl>>();
+	}
+	
+	/**
+	 * Gets the scheduled strongly-connected components
+	 * in order of iteration.
+	 *
+	 * @return the components
+	 */
+	public List<List<ElementImpl>> getComponents() {
+		return Collections.unmodifiableList(components);
+	}
+	
+	/**
+	 * Gets the elements on which an element depends.
+	 *
+	 * @param element the element
+	 * @return the dependencies
+	 */
+	public Set<Element> getDependencies(Element element) {
+		if(dependencies.containsKey(element)) {
+			return Collections.unmodifiableSet(dependencies.get(element));
+		}
+		return Collections.emptySet();
+	}
+	
+	/**
+	 * Performs one iteration of all scheduled active elements.
+	 *
+	 * @param duration the duration
+	 * @param active the active elements
+	 */
+	public void iterate(long duration, Set<? extends ElementImpl> active) {
+		for(List<ElementImpl> component : components) {
+			for(ElementImpl element : component) {
+				if(active.contains(element)) {
+					element.iterateTick(duration);
+					element.iterateTock();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Schedules elements for iteration. Dependencies on
+	 * elements not provided (e.g. remote elements) are ignored.
+	 *
+	 * @param elements the elements
+	 */
+	public void schedule(Collection<? extends ElementImpl> elements) {
+		order = new HashMap<Element, Integer>();
+		for(ElementImpl element : elements) {
+			if(!order.containsKey(element)) {
+				order.put(element, order.size());
+			}
+		}
+		index = new HashMap<Element, Integer>();
+		lowLink = new HashMap<Element, Integer>();
+		stack = new ArrayList<ElementImpl>();
+		path = new ArrayList<ElementImpl>();
+		pathDependencies = new ArrayList<Iterator<Element>>();
+		onStack = new LinkedHashSet<ElementImpl>();
+		components = new ArrayList<List<ElementImpl>>();
+		for(ElementImpl element : elements) {
+			if(!index.containsKey(element)) {
+				connect(element);
+			}
+		}
+		index = lowLink = order = null;
+		stack = path = null;
+		pathDependencies = null;
+		onStack = null;
+	}
+	
+	/**
+	 * Visits an element in Tarjan's strongly-connected components algorithm.
+	 * Components are completed only after all components on which they
+	 * depend, so they are added in order of iteration. The depth-first 
+	 * search keeps an explicit path rather than recursing so long 
+	 * dependency chains cannot overflow the call stack.
+	 *
+	 * @param root the element
+	 */
+	private void connect(ElementImpl root) {
+		visit(root);
+		while(!path.isEmpty()) {
+			ElementImpl element = path.get(path.size() - 1);
+			Iterator<Element> dependencies = pathDependencies.get(path.size() - 1);
+			boolean descended = false;
+			while(dependencies.hasNext() && !descended) {
+				Element dependency = dependencies.next();
+				if(!order.containsKey(dependency)) {
+					continue; // not scheduled
+				}
+				if(!index.containsKey(dependency)) {
+					visit((ElementImpl) dependency);
+					descended = true;
+				} else if(onStack.contains(dependency)) {
+					lowLink.put(element, Math.min(lowLink.get(element),
+							index.get(dependency)));
+				}
+			}
+			if(descended) {
+				continue;
+			}
+			path.remove(path.size() - 1);
+			pathDependencies.remove(pathDependencies.size() - 1);
+			complete(element);
+			if(!path.isEmpty()) {
+				ElementImpl parent = path.get(path.size() - 1);
+				lowLink.put(parent, Math.min(lowLink.get(parent),
+						lowLink.get(element)));
+			}
+		}
+	}
+	
+	/**
+	 * Assigns an index to an element and adds it to the search path.
+	 *
+	 * @param element the element
+	 */
+	private void visit(ElementImpl element) {
+		index.put(element, index.size());
+		lowLink.put(element, index.get(element));
+		stack.add(element);
+		onStack.add(element);
+		path.add(element);
+		pathDependencies.add(getDependencies(element).iterator());
+	}
+	
+	/**
+	 * Adds the component rooted at an element once all of its 
+	 * dependencies have been visited.
+	 *
+	 * @param element the element
+	 */
+	private void complete(ElementImpl element) {
+		if(lowLink.get(element).equals(index.get(element))) {
+			List<ElementImpl> component = new ArrayList<ElementImpl>();
+			ElementImpl member;
+			do {
+				member = stack.remove(stack.size() - 1);
+				onStack.remove(member);
+				component.add(member);
+			} while(member != element);
+			Collections.sort(component, new Comparator<ElementImpl>() {
+				@Override
+				public int compare(ElementImpl e1, ElementImpl e2) {
+					return order.get(e1) - order.get(e2);
+				}
+			});
+			components.add(component);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "GaussSeidelScheduler(" + components + ")";
+	}
+}
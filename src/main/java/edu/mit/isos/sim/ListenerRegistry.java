@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.mit.isos.element.Element;
+
+/**
+ * A registry of simulation time listeners which dispatches events without 
+ * allocation. Registrations are held in a copy-on-write array, so listeners 
+ * can be added or removed from any thread while events are dispatched. 
+ * Each registration may declare an element filter, to receive only time 
+ * steps in which at least one of its elements is updated, and a sampling 
+ * period, to receive the first matching time step and every period-th 
+ * matching time step after it. Matching time steps are counted for each 
+ * registration; without a filter, every time step matches and the count 
+ * is the time step number. Time steps in which no registration is 
+ * interested are not dispatched at all.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class ListenerRegistry {
+	private static final Registration[] EMPTY = new Registration[0];
+	
+	private volatile Registration[] registrations = EMPTY;
+	
+	/**
+	 * Adds a listener to receive every time step.
+	 *
+	 * @param listener the listener
+	 */
+	public void add(SimulationTimeListener listener) {
+		add(listener, 1, null);
+	}
+	
+	/**
+	 * Adds a listener with a sampling period and element filter.
+	 *
+	 * @param listener the listener
+	 * @param period the number of matching time steps between dispatched events
+	 * @param elements the elements of interest, or null for all elements
+	 */
+	public synchronized void add(SimulationTimeListener listener, 
+			int period, Collection<? extends Element> elements) {
+		if(listener == null) {
+			throw new IllegalArgumentException("Listener cannot be null.");
+		}
+		if(period < 1) {
+			throw new IllegalArgumentException(
+					"Sampling period must be at least one.");
+		}
+		Registration[] next = Arrays.copyOf(registrations, registrations.length + 1);
+		next[registrations.length] = new Registration(listener, period, elements);
+		registrations = next;
+	}
+	
+	/**
+	 * Dispatches an event to each interested listener.
+	 *
+	 * @param event the event
+	 * @param step the one-based number of the time step
+	 * @param updated the elements updated in the time step
+	 */
+	public void fire(SimulationTimeEvent event, int step, 
+			Collection<? extends Element> updated) {
+		Registration[] registrations = this.registrations;
+		for(int i = 0; i < registrations.length; i++) {
+			if(registrations[i].accept(step, updated)) {
+				registrations[i].listener.timeAdvanced(event);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the current registrations.
+	 *
+	 * @return the registrations
+	 */
+	public Registration[] getRegistrations() {
+		return registrations.clone();
+	}
+	
+	/**
+	 * Removes the most recent registration of a listener.
+	 *
+	 * @param listener the listener
+	 */
+	public synchronized void remove(SimulationTimeListener listener) {
+		for(int i = registrations.length - 1; i >= 0; i--) {
+			if(registrations[i].listener == listener) {
+				Registration[] next = registrations.length == 1 ? EMPTY 
+						: new Registration[registrations.length - 1];
+				System.arraycopy(registrations, 0, next, 0, i);
+				System.arraycopy(registrations, i + 1, next, i, 
+						registrations.length - i - 1);
+				registrations = next;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of registrations.
+	 *
+	 * @return the number of registrations
+	 */
+	public int size() {
+		return registrations.length;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ListenerRegistry(" + registrations.length + ")";
+	}
+	
+	/**
+	 * A registration of a listener, which counts the time steps 
+	 * matching its element filter on the dispatching thread.
+	 */
+	public static final class Registration {
+		private final SimulationTimeListener listener;
+		private final int period;
+		private final Set<Element> elements;
+		private int matched;
+		
+		/**
+		 * Instantiates a new registration.
+		 *
+		 * @param listener the listener
+		 * @param period the sampling period
+		 * @param elements the elements of interest, or null for all elements
+		 */
+		private Registration(SimulationTimeListener listener, int period, 
+				Collection<? extends Element> elements) {
+			this.listener = listener;
+			this.period = period;
+			this.elements = elements == null ? null 
+					: Collections.unmodifiableSet(new HashSet<Element>(elements));
+		}
+		
+		/**
+		 * Gets the elements of interest.
+		 *
+		 * @return the elements, or null for all elements
+		 */
+		public Set<Element> getElements() {
+			return elements;
+		}
+		
+		/**
+		 * Gets the listener.
+		 *
+		 * @return the listener
+		 */
+		public SimulationTimeListener getListener() {
+			return listener;
+		}
+		
+		/**
+		 * Gets the sampling period.
+		 *
+		 * @return the sampling period
+		 */
+		public int getPeriod() {
+			return period;
+		}
+		
+		/**
+		 * Counts a time step if it matches the element filter and checks 
+		 * if it is sampled for this registration.
+		 *
+		 * @param step the one-based number of the time step
+		 * @param updated the elements updated in the time step
+		 * @return true, if the time step is dispatched to the listener
+		 */
+		private boolean accept(int step, Collection<? extends Element> updated) {
+			if(elements == null) {
+				return (step - 1) % period == 0;
+			}
+			if(updated != null && !matches(updated)) {
+				return false;
+			}
+			return matched++ % period == 0;
+		}
+		
+		/**
+		 * Checks if any updated element matches the element filter.
+		 *
+		 * @param updated the elements updated in the time step
+		 * @return true, if matched
+		 */
+		private boolean matches(Collection<? extends Element> updated) {
+			for(Element element : updated) {
+				if(elements.contains(element)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.isos.element.ElementImpl;
+
+/**
+ * Schedules state updates of elements at different rates. Each element 
+ * updates at an integer multiple of the base time step, by default one. 
+ * Between updates, an element is not ticked and holds its contents and 
+ * state, which are read by faster elements. An element updates in the 
+ * first time step ending at least its multiple of the base time step 
+ * after its last update, in one state update over the elapsed duration.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class MultiRateScheduler {
+	private final Map<ElementImpl, Integer> multiples = 
+			new HashMap<ElementImpl, Integer>();
+	private final Map<ElementImpl, Long> updateTimes = 
+			new HashMap<ElementImpl, Long>();
+	private long timeStep;
+	private long heldUpdates;
+	
+	/**
+	 * Catches up all elements with pending durations to a time.
+	 *
+	 * @param time the time
+	 * @return the elements caught up
+	 */
+	public List<ElementImpl> catchUp(long time) {
+		List<ElementImpl> caughtUp = new ArrayList<ElementImpl>();
+		for(ElementImpl element : updateTimes.keySet()) {
+			long updateTime = updateTimes.get(element);
+			if(time > updateTime) {
+				element.tick(time - updateTime);
+				element.tock();
+				updateTimes.put(element, time);
+				caughtUp.add(element);
+			}
+		}
+		return caughtUp;
+	}
+	
+	/**
+	 * Gets the number of element updates held during the last execution.
+	 *
+	 * @return the number of held updates
+	 */
+	public long getHeldUpdates() {
+		return heldUpdates;
+	}
+	
+	/**
+	 * Gets the step multiple of an element.
+	 *
+	 * @param element the element
+	 * @return the step multiple
+	 */
+	public int getStepMultiple(ElementImpl element) {
+		if(multiples.containsKey(element)) {
+			return multiples.get(element);
+		}
+		return 1;
+	}
+	
+	/**
+	 * Gets the time of the last update of a multi-rate element.
+	 *
+	 * @param element the element
+	 * @return the update time, or {@link Long#MIN_VALUE} if the 
+	 * element updates each base time step
+	 */
+	public long getUpdateTime(ElementImpl element) {
+		if(updateTimes.containsKey(element)) {
+			return updateTimes.get(element);
+		}
+		return Long.MIN_VALUE;
+	}
+	
+	/**
+	 * Gets the elements to update in a time step, grouped by the duration 
+	 * of their state updates, and records the update of each element. 
+	 *
+	 * @param elements the candidate elements
+	 * @param time the time
+	 * @param duration the time step duration
+	 * @return the elements to update by update duration
+	 */
+	public Map<Long, List<ElementImpl>> getUpdates(
+			Collection<? extends ElementImpl> elements, long time, long duration) {
+		Map<Long, List<ElementImpl>> updates = 
+				new LinkedHashMap<Long, List<ElementImpl>>();
+		for(ElementImpl element : elements) {
+			long updateTime = time;
+			if(updateTimes.containsKey(element)) {
+				updateTime = updateTimes.get(element);
+			}
+			long updateDuration = time + duration - updateTime;
+			if(updateDuration < getStepMultiple(element)*timeStep) {
+				heldUpdates++;
+				continue;
+			}
+			if(!updates.containsKey(updateDuration)) {
+				updates.put(updateDuration, new ArrayList<ElementImpl>());
+			}
+			updates.get(updateDuration).add(element);
+			if(updateTimes.containsKey(element)) {
+				updateTimes.put(element, time + duration);
+			}
+		}
+		return updates;
+	}
+	
+	/**
+	 * Initializes this scheduler for an execution.
+	 *
+	 * @param initialTime the initial time
+	 * @param timeStep the base time step duration
+	 */
+	public void initialize(long initialTime, long timeStep) {
+		this.timeStep = timeStep;
+		heldUpdates = 0;
+		updateTimes.clear();
+		for(ElementImpl element : multiples.keySet()) {
+			updateTimes.put(element, initialTime);
+		}
+	}
+	
+	/**
+	 * Checks if all elements update each base time step.
+	 *
+	 * @return true, if all elements update each base time step
+	 */
+	public boolean isEmpty() {
+		return multiples.isEmpty();
+	}
+	
+	/**
+	 * Sets the last update of an element updated outside of this scheduler.
+	 *
+	 * @param element the element
+	 * @param time the time of the update
+	 */
+	public void setUpdated(ElementImpl element, long time) {
+		if(updateTimes.containsKey(element)) {
+			updateTimes.put(element, time);
+		}
+	}
+	
+	/**
+	 * Sets the step multiple of a group of elements.
+	 *
+	 * @param elements the elements
+	 * @param multiple the step multiple
+	 */
+	public void setStepMultiple(Collection<? extends ElementImpl> elements, 
+			int multiple) {
+		for(ElementImpl element : elements) {
+			setStepMultiple(element, multiple);
+		}
+	}
+	
+	/**
+	 * Sets the step multiple of an element.
+	 *
+	 * @param element the element
+	 * @param multiple the step multiple
+	 */
+	public void setStepMultiple(ElementImpl element, int multiple) {
+		if(multiple < 1) {
+			throw new IllegalArgumentException(
+					"Step multiple must be at least one.");
+		}
+		if(multiple == 1) {
+			multiples.remove(element);
+		} else {
+			multiples.put(element, multiple);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MultiRateScheduler(" + multiples.size() + ")";
+	}
+}
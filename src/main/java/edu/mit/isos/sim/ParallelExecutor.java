@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import edu.mit.isos.context.ResourceContext;
+
+/**
+ * Executes simulation phases across entities on a fork-join pool. Each 
+ * phase returns only after all entities have completed it, providing a 
+ * barrier between phases. Entities are double-buffered (state updates 
+ * write next values and read current ones), so the results of a phase 
+ * do not depend on the order entities are visited. Entities implementing 
+ * {@link SerialEntity} run on the calling thread after the parallel batch. 
+ * Worker threads resolve resources through the calling thread's 
+ * {@link ResourceContext}.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class ParallelExecutor {
+	private final ForkJoinPool pool;
+	
+	/**
+	 * Instantiates a new parallel executor using all available processors.
+	 */
+	public ParallelExecutor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Instantiates a new parallel executor.
+	 *
+	 * @param parallelism the number of worker threads
+	 */
+	public ParallelExecutor(int parallelism) {
+		pool = new ForkJoinPool(parallelism);
+	}
+	
+	/**
+	 * Executes a phase across entities.
+	 *
+	 * @param entities the entities
+	 * @param phase the phase
+	 */
+	private void execute(Collection<? extends SimEntity> entities, Phase phase) {
+		List<SimEntity> parallel = new ArrayList<SimEntity>(entities.size());
+		List<SimEntity> serial = new ArrayList<SimEntity>();
+		for(SimEntity entity : entities) {
+			if(entity instanceof SerialEntity) {
+				serial.add(entity);
+			} else {
+				parallel.add(entity);
+			}
+		}
+		if(!parallel.isEmpty()) {
+			int grain = Math.max(1, parallel.size() / (4*pool.getParallelism()));
+			pool.invoke(new PhaseTask(parallel, 0, parallel.size(), grain, 
+					phase, ResourceContext.current()));
+		}
+		for(SimEntity entity : serial) {
+			phase.execute(entity);
+		}
+	}
+	
+	/**
+	 * Gets the number of worker threads.
+	 *
+	 * @return the parallelism
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+	
+	/**
+	 * Performs iterative state updates for entities.
+	 *
+	 * @param entities the entities
+	 * @param duration the duration
+	 */
+	public void iterateTick(Collection<? extends SimEntity> entities, 
+			final long duration) {
+		execute(entities, new Phase() {
+			public void execute(SimEntity entity) {
+				entity.iterateTick(duration);
+			}
+		});
+	}
+	
+	/**
+	 * Commits iterative state updates for entities.
+	 *
+	 * @param entities the entities
+	 */
+	public void iterateTock(Collection<? extends SimEntity> entities) {
+		execute(entities, new Phase() {
+			public void execute(SimEntity entity) {
+				entity.iterateTock();
+			}
+		});
+	}
+	
+	/**
+	 * Shuts down the worker threads.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+	/**
+	 * Performs state updates for entities.
+	 *
+	 * @param entities the entities
+	 * @param duration the duration
+	 */
+	public void tick(Collection<? extends SimEntity> entities, 
+			final long duration) {
+		execute(entities, new Phase() {
+			public void execute(SimEntity entity) {
+				entity.tick(duration);
+			}
+		});
+	}
+	
+	/**
+	 * Commits state updates for entities.
+	 *
+	 * @param entities the entities
+	 */
+	public void tock(Collection<? extends SimEntity> entities) {
+		execute(entities, new Phase() {
+			public void execute(SimEntity entity) {
+				entity.tock();
+			}
+		});
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ParallelExecutor(" + pool.getParallelism() + ")";
+	}
+	
+	/**
+	 * A phase of a simulation step applied to each entity.
+	 */
+	private static interface Phase {
+		
+		/**
+		 * Executes this phase for an entity.
+		 *
+		 * @param entity the entity
+		 */
+		public void execute(SimEntity entity);
+	}
+	
+	/**
+	 * Task which executes a phase for a range of entities, splitting 
+	 * the range in halves until it is no larger than the grain size.
+	 */
+	private static final class PhaseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final List<SimEntity> entities;
+		private final int start, end, grain;
+		private final Phase phase;
+		private final ResourceContext context;
+		
+		/**
+		 * Instantiates a new phase task.
+		 *
+		 * @param entities the entities
+		 * @param start the first index (inclusive)
+		 * @param end the last index (exclusive)
+		 * @param grain the grain size
+		 * @param phase the phase
+		 * @param context the resource context
+		 */
+		PhaseTask(List<SimEntity> entities, int start, int end, int grain, 
+				Phase phase, ResourceContext context) {
+			this.entities = entities;
+			this.start = start;
+			this.end = end;
+			this.grain = grain;
+			this.phase = phase;
+			this.context = context;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if(end - start > grain) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new PhaseTask(entities, start, middle, grain, phase, context), 
+						new PhaseTask(entities, middle, end, grain, phase, context));
+				return;
+			}
+			ResourceContext previous = ResourceContext.bind(context);
+			try {
+				for(int i = start; i < end; i++) {
+					phase.execute(entities.get(i));
+				}
+			} finally {
+				ResourceContext.bind(previous);
+			}
+		}
+	}
+}
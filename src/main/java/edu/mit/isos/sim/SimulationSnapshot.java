@@ -0,0 +1,377 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
+import edu.mit.isos.context.Node;
+import edu.mit.isos.context.Resource;
+import edu.mit.isos.context.ResourceFactory;
+import edu.mit.isos.context.Scenario;
+import edu.mit.isos.element.Element;
+import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.state.ResourceExchanging;
+import edu.mit.isos.state.ResourceTransforming;
+import edu.mit.isos.state.ResourceTransporting;
+
+/**
+ * An immutable simulation time event which captures the outputs of all 
+ * elements of a scenario at the end of a time step, so listeners can 
+ * process them after the simulation has advanced. Snapshots record the 
+ * net flow at each location and, optionally, the imbalanced resource 
+ * exchanges between scenario elements and peer (e.g. remote) elements. 
+ * Snapshots must be captured on the simulation thread. Net flows are 
+ * accumulated in linear time assuming, as for {@link 
+ * edu.mit.isos.state.DefaultState}, that an element only flows resources 
+ * at its location and at the static locations of its origin and 
+ * destination. Exchanges depend on the live states of each pair of 
+ * elements, so verifying exchanges remains proportional to the number 
+ * of element-peer pairs on the simulation thread.
+ * 
+ * @author Paul T. Grogan, ptgrogan@mit.edu
+ * @version 0.1.1
+ * @since 0.1.1
+ */
+public class SimulationSnapshot extends SimulationTimeEvent {
+	private static final long serialVersionUID = 3490528744385063174L;
+	
+	private final List<ElementSnapshot> elements;
+	private final Map<Location, Resource> netFlows;
+	private final List<ExchangeImbalance> imbalances;
+	
+	/**
+	 * Instantiates a new simulation snapshot.
+	 *
+	 * @param event the simulation time event
+	 * @param elements the element snapshots
+	 * @param netFlows the net flows by location
+	 * @param imbalances the imbalanced exchanges
+	 */
+	private SimulationSnapshot(SimulationTimeEvent event, List<ElementSnapshot> elements, 
+			Map<Location, Resource> netFlows, List<ExchangeImbalance> imbalances) {
+		super(event.getSource(), event.getTime(), event.getDuration(), 
+				event.getError(), event.getStepHistory(), event.getNumSteps());
+		this.elements = Collections.unmodifiableList(elements);
+		this.netFlows = Collections.unmodifiableMap(netFlows);
+		this.imbalances = Collections.unmodifiableList(imbalances);
+	}
+	
+	/**
+	 * Captures a snapshot of a scenario for a simulation time event.
+	 *
+	 * @param event the simulation time event
+	 * @param scenario the scenario
+	 * @param peers the elements with which to verify exchanges, 
+	 * or null to not verify exchanges
+	 * @return the snapshot
+	 */
+	public static SimulationSnapshot capture(SimulationTimeEvent event, 
+			Scenario scenario, Collection<? extends Element> peers) {
+		long duration = event.getDuration();
+		List<ElementSnapshot> elements = new ArrayList<ElementSnapshot>();
+		for(ElementImpl e : scenario.getElements()) {
+			elements.add(new ElementSnapshot(e, duration));
+		}
+		
+		// accumulate the net flow of each element only at the locations 
+		// to which it can contribute, in scenario order of elements
+		Map<Location, MutableResource> flows = new LinkedHashMap<Location, MutableResource>();
+		Map<Node, Location> staticLocations = new HashMap<Node, Location>();
+		for(Location l : scenario.getLocations()) {
+			if(!flows.containsKey(l)) {
+				flows.put(l, ResourceFactory.createMutable());
+				if(l.isStatic()) {
+					staticLocations.put(l.getOrigin(), l);
+				}
+			}
+		}
+		for(ElementImpl element : scenario.getElements()) {
+			Location l = element.getLocation();
+			if(flows.containsKey(l)) {
+				element.getNetFlow(l, duration, flows.get(l));
+			}
+			if(!l.isStatic()) {
+				Location origin = staticLocations.get(l.getOrigin());
+				if(origin != null) {
+					element.getNetFlow(origin, duration, flows.get(origin));
+				}
+				Location destination = staticLocations.get(l.getDestination());
+				if(destination != null) {
+					element.getNetFlow(destination, duration, flows.get(destination));
+				}
+			}
+		}
+		Map<Location, Resource> netFlows = new LinkedHashMap<Location, Resource>();
+		for(Location l : flows.keySet()) {
+			netFlows.put(l, flows.get(l).freeze());
+		}
+		
+		List<ExchangeImbalance> imbalances = new ArrayList<ExchangeImbalance>();
+		if(peers != null) {
+			for(Element e1 : scenario.getElements()) {
+				for(Element e2 : peers) {
+					Resource r12 = e1.getNetExchange(e2, duration);
+					Resource r21 = e2.getNetExchange(e1, duration);
+					if(!r12.add(r21).isZero()) {
+						imbalances.add(new ExchangeImbalance(
+								e1.getName(), e2.getName(), r12, r21));
+					}
+				}
+			}
+		}
+		return new SimulationSnapshot(event, elements, netFlows, imbalances);
+	}
+	
+	/**
+	 * Gets the element snapshots in scenario order.
+	 *
+	 * @return the element snapshots
+	 */
+	public List<ElementSnapshot> getElements() {
+		return elements;
+	}
+	
+	/**
+	 * Gets the imbalanced exchanges.
+	 *
+	 * @return the imbalanced exchanges
+	 */
+	public List<ExchangeImbalance> getImbalances() {
+		return imbalances;
+	}
+	
+	/**
+	 * Gets the net flows by location in scenario order.
+	 *
+	 * @return the net flows
+	 */
+	public Map<Location, Resource> getNetFlows() {
+		return netFlows;
+	}
+	
+	/**
+	 * An immutable snapshot of the outputs of one element. Outputs not 
+	 * defined by the element's state are null.
+	 */
+	public static final class ElementSnapshot {
+		private final String name, state, parentName;
+		private final Location location;
+		private final Resource contents, consumed, produced, 
+				input, output, sent, received;
+		
+		/**
+		 * Instantiates a new element snapshot.
+		 *
+		 * @param e the element
+		 * @param duration the time step duration
+		 */
+		private ElementSnapshot(ElementImpl e, long duration) {
+			name = e.getName();
+			state = String.valueOf(e.getState());
+			parentName = e.getParent().getName();
+			location = e.getLocation();
+			contents = e.getContents();
+			if(e.getState() instanceof ResourceTransforming) {
+				ResourceTransforming s = (ResourceTransforming) e.getState();
+				consumed = s.getConsumed(e, duration);
+				produced = s.getProduced(e, duration);
+			} else {
+				consumed = produced = null;
+			}
+			if(e.getState() instanceof ResourceTransporting) {
+				ResourceTransporting s = (ResourceTransporting) e.getState();
+				input = s.getInput(e, duration);
+				output = s.getOutput(e, duration);
+			} else {
+				input = output = null;
+			}
+			if(e.getState() instanceof ResourceExchanging) {
+				ResourceExchanging s = (ResourceExchanging) e.getState();
+				sent = s.getSent(e, duration);
+				received = s.getReceived(e, duration);
+			} else {
+				sent = received = null;
+			}
+		}
+		
+		/**
+		 * Gets the consumed resources.
+		 *
+		 * @return the consumed resources, or null if not transforming
+		 */
+		public Resource getConsumed() {
+			return consumed;
+		}
+		
+		/**
+		 * Gets the contents.
+		 *
+		 * @return the contents
+		 */
+		public Resource getContents() {
+			return contents;
+		}
+		
+		/**
+		 * Gets the input resources.
+		 *
+		 * @return the input resources, or null if not transporting
+		 */
+		public Resource getInput() {
+			return input;
+		}
+		
+		/**
+		 * Gets the location.
+		 *
+		 * @return the location
+		 */
+		public Location getLocation() {
+			return location;
+		}
+		
+		/**
+		 * Gets the element name.
+		 *
+		 * @return the element name
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Gets the output resources.
+		 *
+		 * @return the output resources, or null if not transporting
+		 */
+		public Resource getOutput() {
+			return output;
+		}
+		
+		/**
+		 * Gets the parent element name.
+		 *
+		 * @return the parent element name
+		 */
+		public String getParentName() {
+			return parentName;
+		}
+		
+		/**
+		 * Gets the produced resources.
+		 *
+		 * @return the produced resources, or null if not transforming
+		 */
+		public Resource getProduced() {
+			return produced;
+		}
+		
+		/**
+		 * Gets the received resources.
+		 *
+		 * @return the received resources, or null if not exchanging
+		 */
+		public Resource getReceived() {
+			return received;
+		}
+		
+		/**
+		 * Gets the sent resources.
+		 *
+		 * @return the sent resources, or null if not exchanging
+		 */
+		public Resource getSent() {
+			return sent;
+		}
+		
+		/**
+		 * Gets the state name.
+		 *
+		 * @return the state name
+		 */
+		public String getState() {
+			return state;
+		}
+	}
+	
+	/**
+	 * An immutable record of an imbalanced exchange between two elements.
+	 */
+	public static final class ExchangeImbalance {
+		private final String name1, name2;
+		private final Resource exchange12, exchange21;
+		
+		/**
+		 * Instantiates a new exchange imbalance.
+		 *
+		 * @param name1 the name of the first element
+		 * @param name2 the name of the second element
+		 * @param exchange12 the net exchange of the first element with the second
+		 * @param exchange21 the net exchange of the second element with the first
+		 */
+		private ExchangeImbalance(String name1, String name2, 
+				Resource exchange12, Resource exchange21) {
+			this.name1 = name1;
+			this.name2 = name2;
+			this.exchange12 = exchange12;
+			this.exchange21 = exchange21;
+		}
+		
+		/**
+		 * Gets the net exchange of the first element with the second.
+		 *
+		 * @return the net exchange of the first element with the second
+		 */
+		public Resource getExchange12() {
+			return exchange12;
+		}
+		
+		/**
+		 * Gets the net exchange of the second element with the first.
+		 *
+		 * @return the net exchange of the second element with the first
+		 */
+		public Resource getExchange21() {
+			return exchange21;
+		}
+		
+		/**
+		 * Gets the name of the first element.
+		 *
+		 * @return the name of the first element
+		 */
+		public String getName1() {
+			return name1;
+		}
+		
+		/**
+		 * Gets the name of the second element.
+		 *
+		 * @return the name of the second element
+		 */
+		public String getName2() {
+			return name2;
+		}
+	}
+}
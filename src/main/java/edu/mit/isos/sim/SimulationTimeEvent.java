@@ -15,19 +15,27 @@
  */
 package edu.mit.isos.sim;
 
+import java.util.Arrays;
 import java.util.EventObject;
 
 /**
- * An event object which notifies of a change in a simulation time.
+ * An event object which notifies of a change in a simulation time. 
+ * Time steps with adaptive durations also report the estimated local 
+ * error and the history of accepted time step durations. A simulator 
+ * reuses one event for all of its time steps, so listeners must copy 
+ * values (e.g. with a {@link SimulationSnapshot}) rather than retain it.
  * 
  * @author Paul T Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public class SimulationTimeEvent extends EventObject {
 	private static final long serialVersionUID = -5707468210897815237L;
 	
-	private final long time, duration;
+	private long time, duration;
+	private double error;
+	private long[] steps;
+	private int numSteps;
 	
 	/**
 	 * Instantiates a new execution control event.
@@ -36,9 +44,46 @@ public class SimulationTimeEvent extends EventObject {
 	 * @param time the time
 	 */
 	public SimulationTimeEvent(Object source, long time, long duration) {
+		this(source, time, duration, Double.NaN, new long[0], 0);
+	}
+	
+	/**
+	 * Instantiates a new execution control event for an adaptive time step. 
+	 * The accepted time step durations are shared with the source, which 
+	 * may only append durations after the first number of steps.
+	 *
+	 * @param source the source
+	 * @param time the time
+	 * @param duration the duration
+	 * @param error the estimated local error
+	 * @param steps the accepted time step durations
+	 * @param numSteps the number of accepted time steps
+	 */
+	public SimulationTimeEvent(Object source, long time, long duration, 
+			double error, long[] steps, int numSteps) {
 		super(source);
 		this.time = time;
 		this.duration = duration;
+		this.error = error;
+		this.steps = steps;
+		this.numSteps = numSteps;
+	}
+	
+	/**
+	 * Updates this event for the next time step.
+	 *
+	 * @param time the time
+	 * @param duration the duration
+	 * @param error the estimated local error
+	 * @param steps the accepted time step durations
+	 * @param numSteps the number of accepted time steps
+	 */
+	void update(long time, long duration, double error, long[] steps, int numSteps) {
+		this.time = time;
+		this.duration = duration;
+		this.error = error;
+		this.steps = steps;
+		this.numSteps = numSteps;
 	}
 	
 	/**
@@ -58,4 +103,31 @@ public class SimulationTimeEvent extends EventObject {
 	public long getDuration() {
 		return duration;
 	}
+	
+	/**
+	 * Gets the estimated local error of the time step.
+	 *
+	 * @return the estimated local error, or NaN if not estimated
+	 */
+	public double getError() {
+		return error;
+	}
+	
+	/**
+	 * Gets the number of accepted time steps, including this time step.
+	 *
+	 * @return the number of accepted time steps
+	 */
+	public int getNumSteps() {
+		return numSteps;
+	}
+	
+	/**
+	 * Gets the durations of accepted time steps, including this time step.
+	 *
+	 * @return the accepted time step durations
+	 */
+	public long[] getStepHistory() {
+		return Arrays.copyOf(steps, numSteps);
+	}
 }
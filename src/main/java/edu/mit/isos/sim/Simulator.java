@@ -17,32 +17,108 @@ package edu.mit.isos.sim;
 
 import hla.rti1516e.exceptions.RTIexception;
 
-import javax.swing.event.EventListenerList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
-import edu.mit.isos.context.ResourceFactory;
+import edu.mit.isos.context.ResourceContext;
 import edu.mit.isos.context.Scenario;
+import edu.mit.isos.element.DefaultElement;
+import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
+import edu.mit.isos.element.ElementStore;
 import edu.mit.isos.hla.ISOSambassador;
+import edu.mit.isos.state.DefaultState;
+import edu.mit.isos.state.ErrorEstimating;
+import edu.mit.isos.state.EventScheduling;
+import edu.mit.isos.state.IntervalUpdating;
+import edu.mit.isos.state.ResourceIntegrating;
+import edu.mit.isos.state.State;
+import edu.mit.isos.state.TransitionScheduler;
 
 /**
- * Manages simulation of a scenario.
+ * Manages simulation of a scenario. Resources are created through the 
+ * scenario's {@link ResourceContext} while initializing and executing, 
+ * except for time steps escalated to the exact context with adaptive 
+ * precision.
  * 
  * @author Paul T Grogan, ptgrogan@mit.edu
- * @version 0.1.0
+ * @version 0.1.1
  * @since 0.1.0
  */
 public class Simulator {
 	private static Logger logger = Logger.getLogger(Simulator.class);
 	
 	private final Scenario scenario;
-	private EventListenerList listeners = new EventListenerList();
+	private final ListenerRegistry listeners = new ListenerRegistry();
+	private final SimulationTimeEvent event = new SimulationTimeEvent(this, 0, 0);
 	
 	// TODO: verification options, should be moved to separate listeners
 	public boolean verifyFlow = false, verifyExchange = false;
+	
+	// optional executor to run tick and tock phases in parallel
+	private ParallelExecutor executor;
+	
+	// next-event time advance: merge time steps while all states are quiescent
+	public boolean nextEvent = false;
+	private long skippedSteps;
+	
+	// scheduled transitions: do not tick elements dormant until a state change
+	public boolean scheduledTransitions = false;
+	private final TransitionScheduler transitions = new TransitionScheduler();
+	private final Set<ElementImpl> active = new LinkedHashSet<ElementImpl>();
+	private long dormantUpdates;
+	
+	// adaptive time step: bound the estimated local error of each step
+	// (takes precedence over next-event time advance; the ambassador 
+	// iterates each step over its duration, so federated ambassadors 
+	// advancing in lock-step reject adaptive steps)
+	public boolean adaptiveTimeStep = false;
+	private double errorTolerance = 1e-3;
+	private long minTimeStep = 1, maxTimeStep = Long.MAX_VALUE;
+	private long[] stepHistory = new long[0];
+	private int numSteps, rejectedSteps;
+	
+	// multi-rate: update elements at multiples of the time step
+	private final MultiRateScheduler multiRate = new MultiRateScheduler();
+	
+	// periodic checkpoints between time steps
+	private Path checkpointDirectory;
+	private int checkpointPeriod, checkpoints;
+	
+	// what-if branch executed by this simulator, if forked
+	private Branch branch;
+	
+	// store shared by all elements, swept in bulk each time step
+	private ElementStore contentStore;
+	
+	// adaptive precision: recompute imbalanced steps with exact arithmetic
+	public boolean adaptivePrecision = false;
+	private ResourceContext exactContext = ResourceContext.bigDecimal(
+			0, ResourceContext.DEFAULT_EPSILON);
+	private int escalatedSteps, unresolvedSteps;
+	private long escalatedElements;
 
 	/**
 	 * Instantiates a new simulator for a scenario.
@@ -59,7 +135,117 @@ public class Simulator {
 	 * @param listener the listener
 	 */
 	public void addSimulationTimeListener(SimulationTimeListener listener) {
-		listeners.add(SimulationTimeListener.class, listener);
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Adds a simulation time listener which receives the first and every 
+	 * period-th matching time step after it, where a time step matches if 
+	 * at least one of the elements of interest is updated (i.e. neither 
+	 * dormant nor held).
+	 *
+	 * @param listener the listener
+	 * @param period the number of matching time steps between dispatched events
+	 * @param elements the elements of interest, or null for all elements
+	 */
+	public void addSimulationTimeListener(SimulationTimeListener listener, 
+			int period, Collection<? extends Element> elements) {
+		listeners.add(listener, period, elements);
+	}
+	
+	/**
+	 * Executes a common prefix of a simulation and forks it into what-if 
+	 * branches. The prefix executes until the branch time and is written 
+	 * to a temporary checkpoint. Each branch then builds its own scenario, 
+	 * restores the checkpoint, and continues to the final time in a new 
+	 * simulator with the options, multi-rate step multiples, and listeners 
+	 * of this simulator. Branches execute concurrently, so listeners must 
+	 * be thread-safe; the source of each event is the branch simulator, 
+	 * whose branch tags its outputs.
+	 *
+	 * @param amb the federate ambassador for the prefix
+	 * @param federateName the federate name
+	 * @param branchTime the time at which to fork the branches
+	 * @param duration the simulation duration from the initial time
+	 * @param timeStep the time step duration
+	 * @param iterations the number of iterations per time step
+	 * @param branches the branches
+	 * @param parallelism the maximum number of concurrent branches
+	 * @return the branch simulators by branch name, in branch order
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws RTIexception Signals that an RTI exception has occurred.
+	 */
+	public Map<String, Simulator> branch(ISOSambassador amb, String federateName, 
+			long branchTime, long duration, long timeStep, int iterations, 
+			List<? extends Branch> branches, int parallelism) 
+					throws IOException, RTIexception {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException(
+					"Parallelism must be at least one.");
+		}
+		final Map<String, Simulator> simulators = new LinkedHashMap<String, Simulator>();
+		for(Branch branch : branches) {
+			if(simulators.containsKey(branch.getName())) {
+				throw new IllegalArgumentException(
+						"Duplicate branch name " + branch.getName() + ".");
+			}
+			simulators.put(branch.getName(), null);
+		}
+		
+		transitions.clear();
+		multiRate.initialize(scenario.getInitialTime(), timeStep);
+		Checkpoint fork = execute(amb, scenario.getInitialTime(), 
+				Math.max(minTimeStep, Math.min(maxTimeStep, timeStep)), 
+				new long[0], duration, timeStep, iterations, branchTime);
+		
+		final Path path = Files.createTempFile("branch-" + fork.getTime() + "-", ".bin");
+		ExecutorService pool = Executors.newFixedThreadPool(
+				Math.min(parallelism, Math.max(1, branches.size())));
+		try {
+			Checkpoint.write(path, scenario, fork.getTime(), fork.getNextDuration(), 
+					stepHistory, numSteps, transitions, multiRate);
+			logger.info("Forking " + branches.size() + " branches at time " 
+					+ fork.getTime() + ".");
+			
+			List<Future<Simulator>> futures = new ArrayList<Future<Simulator>>();
+			for(final Branch branch : branches) {
+				final Simulator simulator = fork(branch);
+				simulators.put(branch.getName(), simulator);
+				futures.add(pool.submit(new Callable<Simulator>() {
+					@Override
+					public Simulator call() throws Exception {
+						ISOSambassador branchAmb = branch.getAmbassador();
+						simulator.initialize(branchAmb, federateName, timeStep, iterations);
+						simulator.resume(branchAmb, federateName, path, 
+								duration, timeStep, iterations);
+						return simulator;
+					}
+				}));
+			}
+			for(Future<Simulator> future : futures) {
+				try {
+					future.get();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while executing branches.", e);
+				} catch(ExecutionException e) {
+					if(e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					} else if(e.getCause() instanceof RTIexception) {
+						throw (RTIexception) e.getCause();
+					} else if(e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					} else if(e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+			Files.deleteIfExists(path);
+		}
+		return simulators;
 	}
 	
 	/**
@@ -74,60 +260,672 @@ public class Simulator {
 	 */
 	public void execute(ISOSambassador amb, String federateName, 
 			long duration, long timeStep, int iterations) throws RTIexception {
-		long time = scenario.getInitialTime();
-		
+		transitions.clear();
+		multiRate.initialize(scenario.getInitialTime(), timeStep);
+		execute(amb, scenario.getInitialTime(), 
+				Math.max(minTimeStep, Math.min(maxTimeStep, timeStep)), 
+				new long[0], duration, timeStep, iterations, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Executes a simulation from a time. Stopping before the final time 
+	 * leaves dormant and held elements as they are, so the execution 
+	 * can be checkpointed and continued.
+	 *
+	 * @param amb the federate ambassador
+	 * @param time the time of the first time step
+	 * @param nextStepDuration the trial duration of the first adaptive time step
+	 * @param history the durations of time steps accepted before the time
+	 * @param duration the simulation duration from the initial time
+	 * @param timeStep the time step duration
+	 * @param iterations the number of iterations per time step
+	 * @param stopTime the time at or after which to stop between time steps
+	 * @return the time and trial duration of the next time step
+	 * @throws RTIexception Signals that an RTI exception has occurred.
+	 */
+	private Checkpoint execute(ISOSambassador amb, long time, long nextStepDuration, 
+			long[] history, long duration, long timeStep, int iterations, long stopTime) 
+					throws RTIexception {
 		logger.info("Executing scenario " + scenario 
 				+ " for duration " + duration 
 				+ " with a timestep of " + timeStep 
 				+ " and " + iterations + " iterations" 
 				+ " and options {" 
 				+ "verifyFlow: " + verifyFlow 
-				+ ", verifyExchange: " + verifyExchange + "}.");
+				+ ", verifyExchange: " + verifyExchange 
+				+ ", executor: " + executor 
+				+ ", nextEvent: " + nextEvent 
+				+ ", scheduledTransitions: " + scheduledTransitions 
+				+ ", adaptiveTimeStep: " + adaptiveTimeStep 
+				+ ", multiRate: " + multiRate 
+				+ ", checkpointPeriod: " + checkpointPeriod 
+				+ ", adaptivePrecision: " + adaptivePrecision + "}.");
 		
-		while(time <= scenario.getInitialTime() + duration) {
-			// advance the federate ambassador
-			amb.advance();
-			
-			if(verifyFlow) {
-				verifyFlow(scenario, time, timeStep);
+		skippedSteps = 0;
+		escalatedSteps = unresolvedSteps = 0;
+		escalatedElements = 0;
+		dormantUpdates = 0;
+		stepHistory = Arrays.copyOf(history, Math.max(16, history.length));
+		numSteps = history.length;
+		rejectedSteps = 0;
+		checkpoints = 0;
+		active.clear();
+		for(ElementImpl element : scenario.getElements()) {
+			if(!transitions.isDormant(element)) {
+				active.add(element);
 			}
-			if(verifyExchange) {
-				verifyExchange(scenario, time, timeStep);
+		}
+		
+		// resolve resources through the scenario's context on this thread
+		ResourceContext previous = ResourceContext.bind(scenario.getResourceContext());
+		try {
+			while(time <= scenario.getInitialTime() + duration && time < stopTime) {
+				long stepDuration = timeStep;
+				double stepError = Double.NaN;
+				if(adaptiveTimeStep) {
+					// shrink the trial step until its estimated error is tolerable
+					stepDuration = getBoundedDuration(time, 
+							scenario.getInitialTime() + duration, nextStepDuration);
+					stepError = getLocalError(stepDuration);
+					while(stepError > errorTolerance && stepDuration > minTimeStep) {
+						rejectedSteps++;
+						stepDuration = Math.max(minTimeStep, (long) Math.floor(
+								stepDuration*getStepFactor(stepError)));
+						stepError = getLocalError(stepDuration);
+					}
+					nextStepDuration = Math.max(minTimeStep, Math.min(maxTimeStep, 
+							Math.round(stepDuration*getStepFactor(stepError))));
+				} else if(nextEvent) {
+					stepDuration = getQuiescentDuration(time, 
+							scenario.getInitialTime() + duration, timeStep);
+					skippedSteps += stepDuration/timeStep - 1;
+				}
+				
+				// wake dormant elements to update
+				if(scheduledTransitions) {
+					for(ElementImpl element : transitions.wake(time)) {
+						multiRate.setUpdated(element, time);
+						active.add(element);
+					}
+					dormantUpdates += scenario.getElements().size() - active.size();
+				}
+				
+				// snapshot states to roll back imbalanced iterations
+				Map<ElementImpl, ByteBuffer> snapshots = null;
+				if(adaptivePrecision) {
+					snapshots = new HashMap<ElementImpl, ByteBuffer>();
+					for(ElementImpl element : active) {
+						snapshots.put(element, Checkpoint.snapshot(element));
+					}
+				}
+				
+				// advance the federate ambassador
+				amb.advance(stepDuration, active);
+				
+				if(adaptivePrecision) {
+					escalate(snapshots, time, stepDuration, iterations);
+				}
+				if(verifyFlow) {
+					verifyFlow(scenario, time, stepDuration);
+				}
+				if(verifyExchange) {
+					verifyExchange(scenario, time, stepDuration);
+				}
+				logger.trace("Simulation time is " + time + ".");
+				
+				// tick entities, holding multi-rate elements between updates
+				Collection<ElementImpl> updated = active;
+				Map<Long, List<ElementImpl>> updates = null;
+				if(!multiRate.isEmpty()) {
+					updates = multiRate.getUpdates(active, time, stepDuration);
+					updated = new ArrayList<ElementImpl>();
+					for(List<ElementImpl> elements : updates.values()) {
+						updated.addAll(elements);
+					}
+				}
+				// sweep stored contents in bulk if all elements update
+				if(contentStore != null) {
+					contentStore.setSwept(
+							updated.size() == scenario.getElements().size());
+					if(contentStore.isSwept()) {
+						contentStore.tick();
+					}
+				}
+				if(updates == null) {
+					tick(updated, stepDuration);
+				} else {
+					for(Long updateDuration : updates.keySet()) {
+						tick(updates.get(updateDuration), updateDuration);
+					}
+				}
+				
+				// signal the end of the current time step
+				if(numSteps == stepHistory.length) {
+					stepHistory = Arrays.copyOf(stepHistory, 2*numSteps);
+				}
+				stepHistory[numSteps++] = stepDuration;
+				fireTimeAdvanced(time, stepDuration, stepError, updated);
+				
+				// tock entities
+				if(contentStore != null && contentStore.isSwept()) {
+					contentStore.tock();
+				}
+				if(executor != null) {
+					executor.tock(updated);
+				} else {
+					for(SimEntity entity : updated) {
+						entity.tock();
+					}
+				}
+				
+				// advance time to next time step
+				time = time + stepDuration;
+				
+				// put elements to sleep until their next state change
+				if(scheduledTransitions) {
+					for(Iterator<ElementImpl> i = updated.iterator(); i.hasNext(); ) {
+						ElementImpl element = i.next();
+						if(transitions.schedule(element, time, timeStep)) {
+							if(updated == active) {
+								i.remove();
+							} else {
+								active.remove(element);
+							}
+						}
+					}
+				}
+				
+				// checkpoint between time steps
+				if(checkpointPeriod > 0 && numSteps % checkpointPeriod == 0) {
+					checkpoint(time, nextStepDuration);
+				}
 			}
-			logger.trace("Simulation time is " + time + ".");
 			
-			// tick entities
-			for(SimEntity entity : scenario.getElements()) {
-				entity.tick(timeStep);
+			// catch up dormant and held elements to the final time
+			if(time >= stopTime) {
+				logger.info("Stopped at time " + time + ".");
+			} else {
+				for(ElementImpl element : transitions.wakeAll(time)) {
+					multiRate.setUpdated(element, time);
+					active.add(element);
+				}
+				multiRate.catchUp(time);
 			}
-			
-			// signal the end of the current time step
-			fireTimeAdvanced(time, timeStep);
-			
-			// tock entities
-			for(SimEntity entity : scenario.getElements()) {
-				entity.tock();
+		} finally {
+			ResourceContext.bind(previous);
+		}
+		
+		if(nextEvent) {
+			logger.info("Skipped " + skippedSteps + " quiescent steps.");
+		}
+		if(scheduledTransitions) {
+			logger.info("Skipped " + dormantUpdates + " dormant element updates.");
+		}
+		if(checkpointPeriod > 0) {
+			logger.info("Wrote " + checkpoints + " checkpoints to " 
+					+ checkpointDirectory + ".");
+		}
+		if(!multiRate.isEmpty()) {
+			logger.info("Held " + multiRate.getHeldUpdates() 
+					+ " multi-rate element updates.");
+		}
+		if(adaptiveTimeStep) {
+			logger.info("Accepted " + numSteps + " adaptive steps, rejected " 
+					+ rejectedSteps + " trial steps.");
+		}
+		if(adaptivePrecision) {
+			logger.info("Escalated " + escalatedSteps + " steps (" 
+					+ escalatedElements + " elements) to " + exactContext 
+					+ ", " + unresolvedSteps + " remained imbalanced.");
+		}
+		return new Checkpoint(time, nextStepDuration, getStepHistory());
+	}
+	
+	/**
+	 * Writes a checkpoint to the checkpoint directory. Failures are logged 
+	 * rather than interrupting the execution.
+	 *
+	 * @param time the time of the next time step
+	 * @param nextStepDuration the trial duration of the next adaptive time step
+	 */
+	private void checkpoint(long time, long nextStepDuration) {
+		Path path = checkpointDirectory.resolve("checkpoint-" + time + ".bin");
+		try {
+			Checkpoint.write(path, scenario, time, nextStepDuration, 
+					stepHistory, numSteps, transitions, multiRate);
+			checkpoints++;
+		} catch(IOException e) {
+			logger.error("Failed to write checkpoint " + path, e);
+		}
+	}
+	
+	/**
+	 * Rolls back the iterations of a time step for elements with imbalanced 
+	 * resource flows or exchanges and recomputes them with the exact 
+	 * resource context bound and used by their states. Other elements keep 
+	 * their iterated quantities, so only the affected elements pay for 
+	 * exact arithmetic. Quantities recomputed exactly keep their number 
+	 * format until replaced in a later time step.
+	 *
+	 * @param snapshots the snapshots of element states before iterating
+	 * @param time the time
+	 * @param duration the time step duration
+	 * @param iterations the number of iterations per time step
+	 */
+	private void escalate(Map<ElementImpl, ByteBuffer> snapshots, 
+			long time, long duration, int iterations) {
+		Set<ElementImpl> imbalanced = getImbalanced(
+				scenario.getResourceContext(), duration);
+		// dormant elements were not iterated
+		imbalanced.retainAll(snapshots.keySet());
+		if(imbalanced.isEmpty()) {
+			return;
+		}
+		logger.trace("@ t = " + time + ": Escalating " 
+				+ imbalanced.size() + " elements to " + exactContext + ".");
+		escalatedSteps++;
+		escalatedElements += imbalanced.size();
+		
+		for(ElementImpl element : imbalanced) {
+			Checkpoint.restore(element, snapshots.get(element));
+		}
+		ResourceContext previous = ResourceContext.bind(exactContext);
+		try {
+			setResourceContext(imbalanced, exactContext);
+			for(int i = 0; i < iterations; i++) {
+				for(SimEntity entity : imbalanced) {
+					entity.iterateTick(duration);
+				}
+				for(SimEntity entity : imbalanced) {
+					entity.iterateTock();
+				}
 			}
-			
-			// advance time to next time step
-			time = time + timeStep;
+			if(!getImbalanced(exactContext, duration).isEmpty()) {
+				unresolvedSteps++;
+			}
+		} finally {
+			setResourceContext(imbalanced, scenario.getResourceContext());
+			ResourceContext.bind(previous);
 		}
 	}
 	
+	/**
+	 * Creates a simulator for a what-if branch with the options, 
+	 * multi-rate step multiples, and listeners of this simulator. 
+	 * Step multiples are matched to branch elements by name.
+	 *
+	 * @param branch the branch
+	 * @return the branch simulator
+	 */
+	private Simulator fork(Branch branch) {
+		Simulator simulator = new Simulator(branch.buildScenario());
+		simulator.branch = branch;
+		simulator.verifyFlow = verifyFlow;
+		simulator.verifyExchange = verifyExchange;
+		simulator.executor = executor;
+		simulator.nextEvent = nextEvent;
+		simulator.scheduledTransitions = scheduledTransitions;
+		simulator.adaptiveTimeStep = adaptiveTimeStep;
+		simulator.errorTolerance = errorTolerance;
+		simulator.minTimeStep = minTimeStep;
+		simulator.maxTimeStep = maxTimeStep;
+		simulator.adaptivePrecision = adaptivePrecision;
+		simulator.exactContext = exactContext;
+		for(ElementImpl element : scenario.getElements()) {
+			int multiple = multiRate.getStepMultiple(element);
+			if(multiple > 1) {
+				for(ElementImpl branchElement : simulator.scenario.getElements()) {
+					if(branchElement.getName().equals(element.getName())) {
+						simulator.multiRate.setStepMultiple(branchElement, multiple);
+					}
+				}
+			}
+		}
+		for(ListenerRegistry.Registration registration : listeners.getRegistrations()) {
+			List<ElementImpl> elements = null;
+			if(registration.getElements() != null) {
+				elements = new ArrayList<ElementImpl>();
+				for(ElementImpl branchElement : simulator.scenario.getElements()) {
+					for(Element element : registration.getElements()) {
+						if(branchElement.getName().equals(element.getName())) {
+							elements.add(branchElement);
+						}
+					}
+				}
+			}
+			simulator.listeners.add(registration.getListener(), 
+					registration.getPeriod(), elements);
+		}
+		return simulator;
+	}
+	
 	/**
 	 * Fires a time advanced event.
 	 *
 	 * @param time the time
 	 * @param duration the duration
+	 * @param error the estimated local error
+	 * @param updated the elements updated in the time step
 	 */
-	private void fireTimeAdvanced(long time, long duration) {
-		SimulationTimeListener[] listeners = this.listeners.getListeners(
-				SimulationTimeListener.class);
-		for(int i = 0; i < listeners.length; i++) {
-			listeners[i].timeAdvanced(new SimulationTimeEvent(this, time, duration));
-		}
+	private void fireTimeAdvanced(long time, long duration, double error, 
+			Collection<? extends Element> updated) {
+		event.update(time, duration, error, stepHistory, numSteps);
+		listeners.fire(event, numSteps, updated);
 	} 
 	
+	/**
+	 * Gets a trial duration bounded such that the time step ends no later 
+	 * than the next scheduled event or the final time step. Bounded 
+	 * durations may be shorter than the minimum time step.
+	 *
+	 * @param time the time
+	 * @param endTime the final time step
+	 * @param trialDuration the trial duration
+	 * @return the bounded duration
+	 */
+	private long getBoundedDuration(long time, long endTime, long trialDuration) {
+		long boundedDuration = trialDuration;
+		if(time < endTime) {
+			boundedDuration = Math.min(boundedDuration, endTime - time);
+		}
+		for(ElementImpl element : scenario.getElements()) {
+			if(element.getState() instanceof EventScheduling) {
+				long nextEventTime = ((EventScheduling) element.getState())
+						.getNextEventTime(element, time);
+				if(nextEventTime > time && nextEventTime != Long.MAX_VALUE) {
+					boundedDuration = Math.min(boundedDuration, nextEventTime - time);
+				}
+			}
+		}
+		return boundedDuration;
+	}
+	
+	/**
+	 * Gets the what-if branch executed by this simulator.
+	 *
+	 * @return the branch, or null if this simulator was not forked
+	 */
+	public Branch getBranch() {
+		return branch;
+	}
+	
+	/**
+	 * Gets the element store shared by all elements of a scenario.
+	 *
+	 * @param scenario the scenario
+	 * @return the element store, or null if elements do not share a store
+	 */
+	private static ElementStore getContentStore(Scenario scenario) {
+		ElementStore store = null;
+		for(ElementImpl element : scenario.getElements()) {
+			if(!(element instanceof DefaultElement) 
+					|| ((DefaultElement) element).getStore() == null 
+					|| (store != null && store != ((DefaultElement) element).getStore())) {
+				return null;
+			}
+			store = ((DefaultElement) element).getStore();
+		}
+		return store;
+	}
+	
+	/**
+	 * Gets the directory in which checkpoints are written.
+	 *
+	 * @return the checkpoint directory, or null if checkpoints are not written
+	 */
+	public Path getCheckpointDirectory() {
+		return checkpointDirectory;
+	}
+	
+	/**
+	 * Gets the number of time steps between checkpoints.
+	 *
+	 * @return the checkpoint period, or 0 if checkpoints are not written
+	 */
+	public int getCheckpointPeriod() {
+		return checkpointPeriod;
+	}
+	
+	/**
+	 * Gets the number of checkpoints written during the last execution.
+	 *
+	 * @return the number of checkpoints
+	 */
+	public int getCheckpoints() {
+		return checkpoints;
+	}
+	
+	/**
+	 * Gets the number of elements recomputed in escalated time steps 
+	 * during the last execution.
+	 *
+	 * @return the number of escalated elements
+	 */
+	public long getEscalatedElements() {
+		return escalatedElements;
+	}
+	
+	/**
+	 * Gets the number of time steps escalated to exact arithmetic 
+	 * during the last execution.
+	 *
+	 * @return the number of escalated steps
+	 */
+	public int getEscalatedSteps() {
+		return escalatedSteps;
+	}
+	
+	/**
+	 * Gets the error tolerance for adaptive time steps.
+	 *
+	 * @return the error tolerance
+	 */
+	public double getErrorTolerance() {
+		return errorTolerance;
+	}
+	
+	/**
+	 * Gets the estimated local error over a time step as the largest error 
+	 * estimated by element states. Errors are estimated from the current 
+	 * state of each element without updating it, so time steps with 
+	 * excessive errors can be rejected without rolling back. Elements with 
+	 * states not implementing {@link ErrorEstimating} are assumed exact.
+	 *
+	 * @param duration the duration
+	 * @return the estimated local error
+	 */
+	private double getLocalError(long duration) {
+		double error = 0;
+		for(ElementImpl element : scenario.getElements()) {
+			if(element.getState() instanceof ErrorEstimating) {
+				error = Math.max(error, ((ErrorEstimating) element.getState())
+						.getLocalError(element, duration));
+			}
+		}
+		return error;
+	}
+	
+	/**
+	 * Gets the resource context used to recompute imbalanced time steps.
+	 *
+	 * @return the exact resource context
+	 */
+	public ResourceContext getExactContext() {
+		return exactContext;
+	}
+	
+	/**
+	 * Gets the elements with imbalanced resource flows or exchanges using 
+	 * the same validity constraints as flow and exchange verification. 
+	 * Elements conserving resources contribute no net flow to a location, 
+	 * so the elements affected by a flow imbalance are those contributing 
+	 * a net flow to the location, e.g. transporting elements or elements 
+	 * whose own quantities do not balance.
+	 *
+	 * @param context the resource context to accumulate quantities
+	 * @param duration the time step duration
+	 * @return the imbalanced elements
+	 */
+	private Set<ElementImpl> getImbalanced(ResourceContext context, long duration) {
+		Set<ElementImpl> imbalanced = new LinkedHashSet<ElementImpl>();
+		MutableResource delta = context.createMutable();
+		MutableResource flow = context.createMutable();
+		for(Location location : scenario.getLocations()) {
+			delta.clear();
+			for(ElementImpl element : scenario.getElements()) {
+				element.getNetFlow(location, duration, delta);
+			}
+			if(!delta.isZero()) {
+				for(ElementImpl element : scenario.getElements()) {
+					flow.clear();
+					if(!element.getNetFlow(location, duration, flow).isZero()) {
+						imbalanced.add(element);
+					}
+				}
+			}
+		}
+		for(ElementImpl e1 : scenario.getElements()) {
+			for(ElementImpl e2 : scenario.getElements()) {
+				delta.clear();
+				e1.getNetExchange(e2, duration, delta);
+				e2.getNetExchange(e1, duration, delta);
+				if(!delta.isZero()) {
+					imbalanced.add(e1);
+					imbalanced.add(e2);
+				}
+			}
+		}
+		return imbalanced;
+	}
+	
+	/**
+	 * Gets the maximum adaptive time step duration.
+	 *
+	 * @return the maximum time step
+	 */
+	public long getMaxTimeStep() {
+		return maxTimeStep;
+	}
+	
+	/**
+	 * Gets the minimum adaptive time step duration.
+	 *
+	 * @return the minimum time step
+	 */
+	public long getMinTimeStep() {
+		return minTimeStep;
+	}
+	
+	/**
+	 * Gets the scheduler for element updates at multiples of the time step. 
+	 * Step multiples must be set before executing.
+	 *
+	 * @return the multi-rate scheduler
+	 */
+	public MultiRateScheduler getMultiRateScheduler() {
+		return multiRate;
+	}
+	
+	/**
+	 * Gets the number of trial steps rejected for excessive 
+	 * estimated errors during the last execution.
+	 *
+	 * @return the number of rejected steps
+	 */
+	public int getRejectedSteps() {
+		return rejectedSteps;
+	}
+	
+	/**
+	 * Gets the durations of time steps accepted during the last execution, 
+	 * including those restored from a checkpoint.
+	 *
+	 * @return the accepted time step durations
+	 */
+	public long[] getStepHistory() {
+		return Arrays.copyOf(stepHistory, numSteps);
+	}
+	
+	/**
+	 * Gets the factor by which to scale a time step duration to meet the 
+	 * error tolerance. Estimated errors are relative to the change over 
+	 * a time step, so are assumed proportional to the duration. Factors 
+	 * include a safety margin and are limited to between 0.2 and 2.
+	 *
+	 * @param error the estimated local error
+	 * @return the step factor
+	 */
+	private double getStepFactor(double error) {
+		if(error <= 0) {
+			return 2;
+		}
+		return Math.max(0.2, Math.min(2, 0.9*errorTolerance/error));
+	}
+	
+	/**
+	 * Gets the executor for tick and tock phases.
+	 *
+	 * @return the executor, or null if phases run sequentially
+	 */
+	public ParallelExecutor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Gets the duration until the next event, as a whole number of time 
+	 * steps, over which all elements are quiescent. Elements are quiescent 
+	 * if their current state schedules its events or updates in closed 
+	 * form over an interval, such that a single state update over any 
+	 * duration until the next event (or the end of the interval) is 
+	 * equivalent to several shorter updates. The duration ends before the 
+	 * time step in which the next event occurs, which therefore executes as 
+	 * in fixed time stepping, and does not extend past the end of the 
+	 * simulation.
+	 *
+	 * @param time the time
+	 * @param endTime the final time step
+	 * @param timeStep the time step duration
+	 * @return the quiescent duration, or the time step if 
+	 * any element is not quiescent
+	 */
+	private long getQuiescentDuration(long time, long endTime, long timeStep) {
+		long nextEventTime = Long.MAX_VALUE;
+		for(ElementImpl element : scenario.getElements()) {
+			if(element.getState() == null) {
+				continue;
+			} else if(element.getState() instanceof EventScheduling) {
+				nextEventTime = Math.min(nextEventTime, 
+						((EventScheduling) element.getState())
+						.getNextEventTime(element, time));
+			} else if(element.getState() instanceof IntervalUpdating) {
+				nextEventTime = Math.min(nextEventTime, 
+						((IntervalUpdating) element.getState())
+						.getIntervalEndTime(element, time));
+			} else {
+				return timeStep;
+			}
+			if(nextEventTime <= time + timeStep) {
+				return timeStep;
+			}
+		}
+		// steps ending before the next event, at most all remaining steps
+		long steps = (endTime - time)/timeStep + 1;
+		if(nextEventTime != Long.MAX_VALUE) {
+			steps = Math.min(steps, (nextEventTime - time - 1)/timeStep);
+		}
+		return Math.max(1, steps)*timeStep;
+	}
+	
+	/**
+	 * Gets the number of element updates skipped while 
+	 * dormant during the last execution.
+	 *
+	 * @return the number of dormant updates
+	 */
+	public long getDormantUpdates() {
+		return dormantUpdates;
+	}
+	
 	/**
 	 * Gets the scenario.
 	 *
@@ -138,7 +936,8 @@ public class Simulator {
 	}
 	
 	/**
-	 * Initializes the simulation.
+	 * Initializes the simulation. Element states integrating stored 
+	 * resources use the scenario's integrator, if specified.
 	 *
 	 * @param amb the federate ambassador
 	 * @param federateName the federate name
@@ -148,19 +947,194 @@ public class Simulator {
 	 */
 	public void initialize(ISOSambassador amb, String federateName, 
 			long timeStep, int iterations) throws RTIexception {
-		for(SimEntity entity : scenario.getElements()) {
-			entity.initialize(scenario.getInitialTime());
+		ResourceContext previous = ResourceContext.bind(scenario.getResourceContext());
+		try {
+			if(scenario.getIntegrator() != null) {
+				for(ElementImpl element : scenario.getElements()) {
+					for(State state : element.getStates()) {
+						if(state instanceof ResourceIntegrating) {
+							((ResourceIntegrating) state).setIntegrator(
+									scenario.getIntegrator());
+						}
+					}
+				}
+			}
+			for(SimEntity entity : scenario.getElements()) {
+				entity.initialize(scenario.getInitialTime());
+			}
+			contentStore = getContentStore(scenario);
+			amb.initialize(scenario, iterations, timeStep);
+		} finally {
+			ResourceContext.bind(previous);
 		}
-		amb.initialize(scenario, iterations, timeStep);
 	}
 
+	/**
+	 * Sets the resource context used by the states of elements.
+	 *
+	 * @param elements the elements
+	 * @param context the resource context
+	 */
+	private static void setResourceContext(Collection<ElementImpl> elements, 
+			ResourceContext context) {
+		for(ElementImpl element : elements) {
+			for(State state : element.getStates()) {
+				if(state instanceof DefaultState) {
+					((DefaultState) state).setResourceContext(context);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Ticks entities over a duration, in parallel if an executor is set.
+	 *
+	 * @param entities the entities
+	 * @param duration the duration
+	 */
+	private void tick(Collection<? extends SimEntity> entities, long duration) {
+		if(executor != null) {
+			executor.tick(entities, duration);
+		} else {
+			for(SimEntity entity : entities) {
+				entity.tick(duration);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of time steps merged into longer quiescent 
+	 * steps during the last execution.
+	 *
+	 * @return the number of skipped steps
+	 */
+	public long getSkippedSteps() {
+		return skippedSteps;
+	}
+	
+	/**
+	 * Resumes a simulation from a checkpoint. The simulation must be 
+	 * initialized first and use the same options and multi-rate step 
+	 * multiples as the checkpointed execution. The resumed execution 
+	 * continues to the same final time with the step history of the 
+	 * checkpointed execution, so step numbers, checkpoint periods, and 
+	 * the periods of listeners without element filters continue where 
+	 * they left off. Dormant elements 
+	 * are re-scheduled against their restored states, which may change 
+	 * event times if the scenario differs from the checkpointed one, 
+	 * as for what-if branches.
+	 *
+	 * @param amb the federate ambassador
+	 * @param federateName the federate name
+	 * @param checkpoint the checkpoint path
+	 * @param duration the simulation duration from the initial time
+	 * @param timeStep the time step duration
+	 * @param iterations the number of iterations per time step
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws RTIexception Signals that an RTI exception has occurred.
+	 */
+	public void resume(ISOSambassador amb, String federateName, Path checkpoint, 
+			long duration, long timeStep, int iterations) 
+					throws IOException, RTIexception {
+		multiRate.initialize(scenario.getInitialTime(), timeStep);
+		Checkpoint restored;
+		ResourceContext previous = ResourceContext.bind(scenario.getResourceContext());
+		try {
+			restored = Checkpoint.read(checkpoint, scenario, transitions, multiRate);
+			transitions.reschedule(restored.getTime(), timeStep);
+		} finally {
+			ResourceContext.bind(previous);
+		}
+		logger.info("Resuming from " + restored + ".");
+		execute(amb, restored.getTime(), restored.getNextDuration(), 
+				restored.getStepHistory(), duration, timeStep, iterations, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Sets the directory and period to write checkpoints between time 
+	 * steps. Checkpoint files are named by the time of the next time step.
+	 *
+	 * @param checkpointDirectory the checkpoint directory
+	 * @param checkpointPeriod the number of time steps between 
+	 * checkpoints, or 0 to not write checkpoints
+	 */
+	public void setCheckpoints(Path checkpointDirectory, int checkpointPeriod) {
+		if(checkpointPeriod < 0 || (checkpointPeriod > 0 && checkpointDirectory == null)) {
+			throw new IllegalArgumentException(
+					"Invalid checkpoint directory or period.");
+		}
+		this.checkpointDirectory = checkpointDirectory;
+		this.checkpointPeriod = checkpointPeriod;
+	}
+	
+	/**
+	 * Sets the resource context used to recompute imbalanced time steps.
+	 *
+	 * @param exactContext the exact resource context
+	 */
+	public void setExactContext(ResourceContext exactContext) {
+		if(exactContext == null) {
+			throw new IllegalArgumentException(
+					"Exact context cannot be null.");
+		}
+		this.exactContext = exactContext;
+	}
+	
+	/**
+	 * Sets the error tolerance for adaptive time steps.
+	 *
+	 * @param errorTolerance the error tolerance
+	 */
+	public void setErrorTolerance(double errorTolerance) {
+		if(errorTolerance <= 0) {
+			throw new IllegalArgumentException(
+					"Error tolerance must be positive.");
+		}
+		this.errorTolerance = errorTolerance;
+	}
+	
+	/**
+	 * Sets the executor for tick and tock phases.
+	 *
+	 * @param executor the executor, or null to run phases sequentially
+	 */
+	public void setExecutor(ParallelExecutor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Sets the bounds of adaptive time step durations.
+	 *
+	 * @param minTimeStep the minimum time step
+	 * @param maxTimeStep the maximum time step
+	 */
+	public void setTimeStepBounds(long minTimeStep, long maxTimeStep) {
+		if(minTimeStep < 1 || maxTimeStep < minTimeStep) {
+			throw new IllegalArgumentException(
+					"Invalid time step bounds.");
+		}
+		this.minTimeStep = minTimeStep;
+		this.maxTimeStep = maxTimeStep;
+	}
+	
+	/**
+	 * Gets the number of escalated time steps which remained imbalanced 
+	 * after recomputation during the last execution, e.g. because the 
+	 * iterations did not converge.
+	 *
+	 * @return the number of unresolved steps
+	 */
+	public int getUnresolvedSteps() {
+		return unresolvedSteps;
+	}
+	
 	/**
 	 * Removes a simulation time listener.
 	 *
 	 * @param listener the listener
 	 */
 	public void removeSimulationTimeListener(SimulationTimeListener listener) {
-		listeners.remove(SimulationTimeListener.class, listener);
+		listeners.remove(listener);
 	}
 	
 	/**
@@ -171,12 +1145,16 @@ public class Simulator {
 	 * @param timeStep the time step
 	 */
 	private void verifyExchange(Scenario scenario, long time, long timeStep) {
+		MutableResource delta = scenario.getResourceContext().createMutable();
 		for(ElementImpl e1 : scenario.getElements()) {
 			for(ElementImpl e2 : scenario.getElements()) {
-				Resource e12 = e1.getNetExchange(e2, timeStep);
-				Resource e21 = e2.getNetExchange(e1, timeStep);
+				delta.clear();
+				e1.getNetExchange(e2, timeStep, delta);
+				e2.getNetExchange(e1, timeStep, delta);
 
-				if(!e12.equals(e21.negate())) {
+				if(!delta.isZero()) {
+					Resource e12 = e1.getNetExchange(e2, timeStep);
+					Resource e21 = e2.getNetExchange(e1, timeStep);
 					logger.warn("@ t = " + time + ": Unbalanced resource exchange: " + 
 							e1.getName() + "<->"  + e2.getName() + ", delta=" +
 							e12.add(e21) + ", error=" + (e12.add(e21)).safeDivide(e12));
@@ -193,10 +1171,11 @@ public class Simulator {
 	 * @param timeStep the time step
 	 */
 	private void verifyFlow(Scenario scenario, long time, long timeStep) {
+		MutableResource flowRate = scenario.getResourceContext().createMutable();
 		for(Location location : scenario.getLocations()) {
-			Resource flowRate = ResourceFactory.create();
+			flowRate.clear();
 			for(ElementImpl element : scenario.getElements()) {
-				flowRate = flowRate.add(element.getNetFlow(location, timeStep));
+				element.getNetFlow(location, timeStep, flowRate);
 			}
 			if(!flowRate.isZero()) {
 				logger.warn(location + " @ t = " + time + 
@@ -16,13 +16,17 @@
 package edu.mit.isos.state;
 
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
-import edu.mit.isos.context.ResourceFactory;
+import edu.mit.isos.context.ResourceContext;
+import edu.mit.isos.context.ResourceType;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
 
 public class DefaultState implements State, ResourceStoring, ResourceTransforming, ResourceTransporting, ElementTransforming {
 	private final String name;
+	// resolved once per scenario on initialization
+	protected ResourceContext resourceContext = ResourceContext.current();
 	
 	protected DefaultState() {
 		this.name = "";
@@ -39,29 +43,38 @@ public class DefaultState implements State, ResourceStoring, ResourceTransformin
 	public String toString() {
 		return name;
 	}
+	
+	public ResourceContext getResourceContext() {
+		return resourceContext;
+	}
+	
+	public void setResourceContext(ResourceContext resourceContext) {
+		// e.g. to recompute a time step with exact arithmetic
+		this.resourceContext = resourceContext;
+	}
 
 	public Resource getInput(ElementImpl element, long duration) {
-		return ResourceFactory.create();
+		return resourceContext.create();
 	}
 
 	public Resource getOutput(ElementImpl element, long duration) {
-		return ResourceFactory.create();
+		return resourceContext.create();
 	}
 
 	public Resource getProduced(ElementImpl element, long duration) {
-		return ResourceFactory.create();
+		return resourceContext.create();
 	}
 
 	public Resource getConsumed(ElementImpl element, long duration) {
-		return ResourceFactory.create();
+		return resourceContext.create();
 	}
 
 	public Resource getStored(ElementImpl element, long duration) {
-		return ResourceFactory.create();
+		return resourceContext.create();
 	}
 
 	public Resource getRetrieved(ElementImpl element, long duration) {
-		return ResourceFactory.create();
+		return resourceContext.create();
 	}
 
 	@Override
@@ -76,6 +89,7 @@ public class DefaultState implements State, ResourceStoring, ResourceTransformin
 			throw new IllegalStateException(
 					"Element does not contain state " + this);
 		}
+		resourceContext = ResourceContext.current();
 	}
 
 	@Override
@@ -112,17 +126,23 @@ public class DefaultState implements State, ResourceStoring, ResourceTransformin
 
 	@Override
 	public Resource getNetFlow(ElementImpl element, Location location, long duration) {
-		Resource netFlow = ResourceFactory.create();
+		return getNetFlow(element, location, duration, 
+				resourceContext.createMutable()).freeze();
+	}
+
+	@Override
+	public MutableResource getNetFlow(ElementImpl element, Location location, 
+			long duration, MutableResource netFlow) {
 		if(element.getLocation().equals(location)) {
-			netFlow = netFlow.add(getRetrieved(element, duration)).subtract(getStored(element, duration))
-					.add(getProduced(element, duration)).subtract(getConsumed(element, duration))
-					.add(getInput(element, duration)).subtract(getOutput(element, duration));
+			netFlow.addInPlace(getRetrieved(element, duration)).subtractInPlace(getStored(element, duration))
+					.addInPlace(getProduced(element, duration)).subtractInPlace(getConsumed(element, duration))
+					.addInPlace(getInput(element, duration)).subtractInPlace(getOutput(element, duration));
 		}
 		if(location.isStatic() && location.getOrigin().equals(element.getLocation().getOrigin())) {
-			netFlow = netFlow.subtract(getInput(element, duration));
+			netFlow.subtractInPlace(getInput(element, duration));
 		}
 		if(location.isStatic() && location.getOrigin().equals(element.getLocation().getDestination())) {
-			netFlow = netFlow.add(getOutput(element, duration));
+			netFlow.addInPlace(getOutput(element, duration));
 		}
 		return netFlow;
 	}
@@ -130,11 +150,26 @@ public class DefaultState implements State, ResourceStoring, ResourceTransformin
 	@Override
 	public Resource getNetExchange(ElementImpl element1, Element element2,
 			long duration) {
-		return ResourceFactory.create();
+		return getNetExchange(element1, element2, duration, 
+				resourceContext.createMutable()).freeze();
+	}
+
+	@Override
+	public MutableResource getNetExchange(ElementImpl element1, Element element2,
+			long duration, MutableResource netExchange) {
+		return netExchange;
 	}
 	
 	@Override
 	public void transform(ElementImpl element, State nextState) {
 		element.setState(nextState);
 	}
+	
+	protected Resource setQuantity(Resource resource, ResourceType type, double quantity) {
+		// keeps the number format of the resource unless the quantity changed
+		if(resource.getQuantity(type) == quantity) {
+			return resource;
+		}
+		return resourceContext.create(type, quantity);
+	}
 }
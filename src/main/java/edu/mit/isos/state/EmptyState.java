@@ -15,13 +15,15 @@
  */
 package edu.mit.isos.state;
 
+import java.nio.ByteBuffer;
+
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
-import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
 
-public class EmptyState implements State, ElementTransforming {
+public class EmptyState implements State, Checkpointing, ElementTransforming, EventScheduling {
 	private long stateChangeTime;
 	private State nextState;
 	
@@ -49,6 +51,29 @@ public class EmptyState implements State, ElementTransforming {
 		return nextState;
 	}
 	
+	@Override
+	public int getCheckpointSize() {
+		return 8;
+	}
+	
+	@Override
+	public void getCheckpoint(ByteBuffer buffer) {
+		buffer.putLong(time);
+	}
+	
+	@Override
+	public void setCheckpoint(ByteBuffer buffer) {
+		time = nextTime = buffer.getLong();
+	}
+	
+	@Override
+	public long getNextEventTime(ElementImpl element, long time) {
+		if(element.getState().equals(this)) {
+			return Math.max(time, stateChangeTime);
+		}
+		return Long.MAX_VALUE;
+	}
+	
 	public void initialize(ElementImpl element, long initialTime) {
 		if(!element.getStates().contains(this)) {
 			throw new IllegalStateException(
@@ -87,12 +112,24 @@ public class EmptyState implements State, ElementTransforming {
 
 	@Override
 	public Resource getNetFlow(ElementImpl element, Location location, long duration) {
-		return ResourceFactory.create();
+		return Resource.ZERO;
 	}
 
 	@Override
 	public Resource getNetExchange(ElementImpl element1, Element element2,
 			long duration) {
-		return ResourceFactory.create();
+		return Resource.ZERO;
+	}
+
+	@Override
+	public MutableResource getNetFlow(ElementImpl element, Location location,
+			long duration, MutableResource netFlow) {
+		return netFlow;
+	}
+
+	@Override
+	public MutableResource getNetExchange(ElementImpl element1, Element element2,
+			long duration, MutableResource netExchange) {
+		return netExchange;
 	}
 }
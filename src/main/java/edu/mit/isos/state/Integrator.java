@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.state;
+
+import edu.mit.isos.context.Resource;
+import edu.mit.isos.context.ResourceType;
+import edu.mit.isos.element.ElementImpl;
+
+public enum Integrator {
+	EULER {
+		@Override
+		public Resource integrate(ResourceIntegrating state, 
+				ElementImpl element, Resource contents, long duration) {
+			return state.getStoredRate(element, contents).multiply(duration);
+		}
+
+		@Override
+		public Resource getAverage(ResourceIntegrating state, 
+				ElementImpl element, Resource contents, long duration) {
+			return contents;
+		}
+	},
+	HEUN {
+		@Override
+		public Resource integrate(ResourceIntegrating state, 
+				ElementImpl element, Resource contents, long duration) {
+			Resource k1 = state.getStoredRate(element, contents);
+			Resource k2 = state.getStoredRate(element, 
+					contents.add(k1.multiply(duration)));
+			return k1.add(k2).multiply(duration/2d);
+		}
+
+		@Override
+		public Resource getAverage(ResourceIntegrating state, 
+				ElementImpl element, Resource contents, long duration) {
+			// trapezoidal rule
+			return contents.add(integrate(state, element, 
+					contents, duration).multiply(0.5));
+		}
+	},
+	RK4 {
+		@Override
+		public Resource integrate(ResourceIntegrating state, 
+				ElementImpl element, Resource contents, long duration) {
+			Resource k1 = state.getStoredRate(element, contents);
+			Resource k2 = state.getStoredRate(element, 
+					contents.add(k1.multiply(duration/2d)));
+			Resource k3 = state.getStoredRate(element, 
+					contents.add(k2.multiply(duration/2d)));
+			Resource k4 = state.getStoredRate(element, 
+					contents.add(k3.multiply(duration)));
+			return k1.add(k2.multiply(2)).add(k3.multiply(2)).add(k4)
+					.multiply(duration/6d);
+		}
+
+		@Override
+		public Resource getAverage(ResourceIntegrating state, 
+				ElementImpl element, Resource contents, long duration) {
+			// trapezoidal rule with end corrections (cubic Hermite)
+			Resource change = integrate(state, element, contents, duration);
+			Resource k1 = state.getStoredRate(element, contents);
+			Resource k4 = state.getStoredRate(element, contents.add(change));
+			return contents.add(change.multiply(0.5))
+					.add(k1.subtract(k4).multiply(duration/12d));
+		}
+	},
+	EXPONENTIAL {
+		@Override
+		public Resource integrate(ResourceIntegrating state, 
+				ElementImpl element, Resource contents, long duration) {
+			// exact for rates proportional to contents
+			Resource rate = state.getStoredRate(element, contents);
+			double[] amounts = new double[ResourceType.values().length];
+			for(ResourceType type : ResourceType.values()) {
+				double quantity = contents.getQuantity(type);
+				double growth = quantity == 0 ? 0 : rate.getQuantity(type)/quantity;
+				if(growth == 0) {
+					amounts[type.ordinal()] = rate.getQuantity(type)*duration;
+				} else {
+					amounts[type.ordinal()] = quantity*Math.expm1(growth*duration);
+				}
+			}
+			return state.getResourceContext().create(amounts);
+		}
+
+		@Override
+		public Resource getAverage(ResourceIntegrating state, 
+				ElementImpl element, Resource contents, long duration) {
+			Resource rate = state.getStoredRate(element, contents);
+			double[] amounts = new double[ResourceType.values().length];
+			for(ResourceType type : ResourceType.values()) {
+				double quantity = contents.getQuantity(type);
+				double growth = quantity == 0 ? 0 : rate.getQuantity(type)/quantity;
+				if(growth*duration == 0) {
+					amounts[type.ordinal()] = quantity + rate.getQuantity(type)*duration/2d;
+				} else {
+					amounts[type.ordinal()] = quantity*Math.expm1(growth*duration)
+							/(growth*duration);
+				}
+			}
+			return state.getResourceContext().create(amounts);
+		}
+	};
+	
+	public abstract Resource integrate(ResourceIntegrating state, 
+			ElementImpl element, Resource contents, long duration);
+	
+	public abstract Resource getAverage(ResourceIntegrating state, 
+			ElementImpl element, Resource contents, long duration);
+}
@@ -16,12 +16,12 @@
 package edu.mit.isos.state;
 
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
-import edu.mit.isos.context.ResourceFactory;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
 
-public class NullState implements State {
+public class NullState implements State, IntervalUpdating {
 	
 	public NullState() { }
 	
@@ -36,6 +36,11 @@ public class NullState implements State {
 	@Override
 	public void initialize(ElementImpl element, long initialTime) { }
 
+	@Override
+	public long getIntervalEndTime(ElementImpl element, long time) {
+		return Long.MAX_VALUE;
+	}
+
 	@Override
 	public void tick(ElementImpl element, long duration) { }
 
@@ -50,12 +55,24 @@ public class NullState implements State {
 
 	@Override
 	public Resource getNetFlow(ElementImpl element, Location location, long duration) {
-		return ResourceFactory.create();
+		return Resource.ZERO;
 	}
 
 	@Override
 	public Resource getNetExchange(ElementImpl element1, Element element2,
 			long duration) {
-		return ResourceFactory.create();
+		return Resource.ZERO;
+	}
+
+	@Override
+	public MutableResource getNetFlow(ElementImpl element, Location location,
+			long duration, MutableResource netFlow) {
+		return netFlow;
+	}
+
+	@Override
+	public MutableResource getNetExchange(ElementImpl element1, Element element2,
+			long duration, MutableResource netExchange) {
+		return netExchange;
 	}
 }
@@ -16,6 +16,7 @@
 package edu.mit.isos.state;
 
 import edu.mit.isos.context.Location;
+import edu.mit.isos.context.MutableResource;
 import edu.mit.isos.context.Resource;
 import edu.mit.isos.element.Element;
 import edu.mit.isos.element.ElementImpl;
@@ -31,4 +32,6 @@ public interface State {
 	
 	public Resource getNetFlow(ElementImpl element, Location location, long duration);
 	public Resource getNetExchange(ElementImpl element1, Element element2, long duration);
+	public MutableResource getNetFlow(ElementImpl element, Location location, long duration, MutableResource netFlow);
+	public MutableResource getNetExchange(ElementImpl element1, Element element2, long duration, MutableResource netExchange);
 }
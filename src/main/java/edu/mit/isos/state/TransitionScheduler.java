@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Paul T. Grogan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mit.isos.state;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import edu.mit.isos.element.ElementImpl;
+
+public class TransitionScheduler {
+	private final PriorityQueue<Transition> queue = new PriorityQueue<Transition>();
+	private final Map<ElementImpl, Transition> dormant = new HashMap<ElementImpl, Transition>();
+	private long sequence;
+	
+	public void clear() {
+		queue.clear();
+		dormant.clear();
+		sequence = 0;
+	}
+	
+	public List<ElementImpl> getDormant() {
+		List<Transition> ordered = new ArrayList<Transition>(dormant.values());
+		Collections.sort(ordered);
+		List<ElementImpl> elements = new ArrayList<ElementImpl>();
+		for(Transition transition : ordered) {
+			elements.add(transition.element);
+		}
+		return elements;
+	}
+	
+	public long getDormantTime(ElementImpl element) {
+		if(!isDormant(element)) {
+			return Long.MIN_VALUE;
+		}
+		return dormant.get(element).dormantTime;
+	}
+	
+	public long getNextWakeTime() {
+		if(queue.isEmpty()) {
+			return Long.MAX_VALUE;
+		}
+		return queue.peek().wakeTime;
+	}
+	
+	public boolean isDormant(ElementImpl element) {
+		return dormant.containsKey(element);
+	}
+	
+	public boolean schedule(ElementImpl element, long time, long timeStep) {
+		if(isDormant(element) || !(element.getState() instanceof EventScheduling)) {
+			return false;
+		}
+		long eventTime = ((EventScheduling) element.getState())
+				.getNextEventTime(element, time);
+		long wakeTime = Long.MAX_VALUE;
+		if(eventTime != Long.MAX_VALUE) {
+			// wake at the start of the time step in which the event occurs
+			long steps = (eventTime - time - 1)/timeStep;
+			if(steps < 1) {
+				return false;
+			}
+			wakeTime = time + steps*timeStep;
+		}
+		Transition transition = new Transition(element, time, wakeTime, sequence++);
+		queue.add(transition);
+		dormant.put(element, transition);
+		return true;
+	}
+	
+	public void restore(ElementImpl element, long dormantTime, long wakeTime) {
+		if(isDormant(element)) {
+			queue.remove(dormant.get(element));
+		}
+		Transition transition = new Transition(element, dormantTime, wakeTime, sequence++);
+		queue.add(transition);
+		dormant.put(element, transition);
+	}
+	
+	public void reschedule(long time, long timeStep) {
+		List<ElementImpl> elements = getDormant();
+		queue.clear();
+		for(ElementImpl element : elements) {
+			Transition transition = dormant.get(element);
+			// wake at the start of the time step in which the event of the 
+			// current state occurs, but no earlier than the current time
+			long wakeTime = time;
+			if(element.getState() instanceof EventScheduling) {
+				long eventTime = ((EventScheduling) element.getState())
+						.getNextEventTime(element, transition.dormantTime);
+				if(eventTime == Long.MAX_VALUE) {
+					wakeTime = Long.MAX_VALUE;
+				} else {
+					long steps = (eventTime - transition.dormantTime - 1)/timeStep;
+					wakeTime = Math.max(time, transition.dormantTime + steps*timeStep);
+				}
+			}
+			Transition rescheduled = new Transition(element, 
+					transition.dormantTime, wakeTime, transition.sequence);
+			queue.add(rescheduled);
+			dormant.put(element, rescheduled);
+		}
+	}
+	
+	public int size() {
+		return dormant.size();
+	}
+	
+	public long getWakeTime(ElementImpl element) {
+		if(!isDormant(element)) {
+			return Long.MIN_VALUE;
+		}
+		return dormant.get(element).wakeTime;
+	}
+	
+	public List<ElementImpl> wake(long time) {
+		List<ElementImpl> woken = new ArrayList<ElementImpl>();
+		while(!queue.isEmpty() && queue.peek().wakeTime <= time) {
+			woken.add(wake(queue.poll(), time));
+		}
+		return woken;
+	}
+	
+	private ElementImpl wake(Transition transition, long time) {
+		dormant.remove(transition.element);
+		if(time > transition.dormantTime) {
+			// catch up over the dormant interval in one state update
+			transition.element.tick(time - transition.dormantTime);
+			transition.element.tock();
+		}
+		return transition.element;
+	}
+	
+	public List<ElementImpl> wakeAll(long time) {
+		List<ElementImpl> woken = new ArrayList<ElementImpl>();
+		while(!queue.isEmpty()) {
+			woken.add(wake(queue.poll(), time));
+		}
+		return woken;
+	}
+	
+	private static class Transition implements Comparable<Transition> {
+		private final ElementImpl element;
+		private final long dormantTime, wakeTime, sequence;
+		
+		public Transition(ElementImpl element, long dormantTime, 
+				long wakeTime, long sequence) {
+			this.element = element;
+			this.dormantTime = dormantTime;
+			this.wakeTime = wakeTime;
+			this.sequence = sequence;
+		}
+		
+		@Override
+		public int compareTo(Transition other) {
+			if(wakeTime != other.wakeTime) {
+				return wakeTime < other.wakeTime ? -1 : 1;
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}